@@ -0,0 +1,212 @@
+package com.umnvd.sensetestapp.views;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.umnvd.sensetestapp.R;
+import com.umnvd.sensetestapp.metrics.Metrics;
+import com.umnvd.sensetestapp.models.PointSeries;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class PlotRendererAllocationTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+    private static final int POINTS_COUNT = 1_000_000;
+    private static final int FRAMES_COUNT = 120;
+    private static final int GESTURE_STEPS = 30;
+    private static final long EVENT_INTERVAL_MS = 16;
+    // Longer than the metrics report interval and the debug overlay window, so that both
+    // happen while allocations are counted.
+    private static final long VIEW_PHASE_NANOS = 1_500_000_000L;
+
+    @Test
+    public void drawDoesNotAllocateAfterWarmUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PlotRenderer renderer = new PlotRenderer(
+                context, null, R.attr.plotViewStyle, R.style.PlotViewDefaultStyle
+        );
+        renderer.setPoints(createPoints());
+        renderer.setSize(WIDTH, HEIGHT, 0, 0, 0, 0);
+        renderer.scaleBy(4f, WIDTH / 2f, HEIGHT / 2f);
+
+        Canvas canvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+        drawFrames(renderer, canvas, true);
+        drawFrames(renderer, canvas, true);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        drawFrames(renderer, canvas, false);
+        Debug.stopAllocCounting();
+
+        assertEquals(0, Debug.getThreadAllocCount());
+    }
+
+    /**
+     * Frames of {@link PlotView} as the UI thread produces them: a touch event of a pinch
+     * and a pan, then a draw with the frame metrics and the debug overlay. The view isn't
+     * attached, so the tile rendering it posts never runs and the frames draw the graph
+     * themselves, the tiles are covered by {@link #drawDoesNotAllocateAfterWarmUp()}.
+     */
+    @Test
+    public void viewFramesDoNotAllocateAfterWarmUp() {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        Context context = instrumentation.getTargetContext();
+        MotionEvent[] gesture = createPinchAndPan();
+        long[] allocCount = new long[1];
+        Metrics.Listener listener = metrics -> {
+        };
+        Metrics.getInstance().addListener(listener);
+        try {
+            instrumentation.runOnMainSync(() -> {
+                PlotView view = new PlotView(context);
+                view.setDebugOverlayShown(true);
+                view.setPoints(createPoints());
+                view.measure(
+                        View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY)
+                );
+                view.layout(0, 0, WIDTH, HEIGHT);
+
+                Canvas canvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+                drawGestureFrames(view, canvas, gesture);
+                drawGestureFrames(view, canvas, gesture);
+
+                Debug.resetThreadAllocCount();
+                Debug.startAllocCounting();
+                drawGestureFrames(view, canvas, gesture);
+                Debug.stopAllocCounting();
+                allocCount[0] = Debug.getThreadAllocCount();
+            });
+        } finally {
+            Metrics.getInstance().removeListener(listener);
+            for (MotionEvent event : gesture) event.recycle();
+        }
+
+        assertEquals(0, allocCount[0]);
+    }
+
+    private static PointSeries createPoints() {
+        PointSeries points = new PointSeries(POINTS_COUNT);
+        for (int i = 0; i < POINTS_COUNT; i++) points.add(i - POINTS_COUNT / 2, (i * 7919) % 2001 - 1000);
+        return points;
+    }
+
+    private void drawFrames(PlotRenderer renderer, Canvas canvas, boolean renderTiles) {
+        for (int i = 0; i < FRAMES_COUNT; i++) {
+            float direction = i < FRAMES_COUNT / 2 ? 1f : -1f;
+            renderer.translateBy(direction * 4f, direction * 2f);
+            renderer.draw(canvas);
+            if (renderTiles) renderer.renderPendingTiles(Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Replays the gesture, one event and one draw per frame, for {@link #VIEW_PHASE_NANOS}.
+     */
+    private static void drawGestureFrames(PlotView view, Canvas canvas, MotionEvent[] gesture) {
+        long endNanos = System.nanoTime() + VIEW_PHASE_NANOS;
+        while (System.nanoTime() < endNanos) {
+            for (MotionEvent event : gesture) {
+                view.onTouchEvent(event);
+                view.draw(canvas);
+            }
+        }
+    }
+
+    /**
+     * A vertical pinch out, a horizontal pan with one finger and a pinch back in, so that
+     * the gesture can be repeated. The spans are wider than the minimal scaling span.
+     */
+    private static MotionEvent[] createPinchAndPan() {
+        float centerX = WIDTH / 2f;
+        float centerY = HEIGHT / 2f;
+        float minHalfSpan = HEIGHT * 0.15f;
+        float maxHalfSpan = HEIGHT * 0.4f;
+        int secondPointerDown = MotionEvent.ACTION_POINTER_DOWN | (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+        int secondPointerUp = MotionEvent.ACTION_POINTER_UP | (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+        List<MotionEvent> events = new ArrayList<>();
+        long time = 0;
+
+        events.add(obtainEvent(time, MotionEvent.ACTION_DOWN, centerX, centerY - minHalfSpan));
+        events.add(obtainEvent(
+                time += EVENT_INTERVAL_MS, secondPointerDown,
+                centerX, centerY - minHalfSpan, centerX, centerY + minHalfSpan
+        ));
+        for (int i = 1; i <= GESTURE_STEPS; i++) {
+            float halfSpan = minHalfSpan + (maxHalfSpan - minHalfSpan) * i / GESTURE_STEPS;
+            events.add(obtainEvent(
+                    time += EVENT_INTERVAL_MS, MotionEvent.ACTION_MOVE,
+                    centerX, centerY - halfSpan, centerX, centerY + halfSpan
+            ));
+        }
+        events.add(obtainEvent(
+                time += EVENT_INTERVAL_MS, secondPointerUp,
+                centerX, centerY - maxHalfSpan, centerX, centerY + maxHalfSpan
+        ));
+
+        for (int i = 1; i <= GESTURE_STEPS; i++) {
+            float offset = 20f * (i <= GESTURE_STEPS / 2 ? i : GESTURE_STEPS - i);
+            events.add(obtainEvent(
+                    time += EVENT_INTERVAL_MS, MotionEvent.ACTION_MOVE, centerX + offset, centerY - maxHalfSpan
+            ));
+        }
+
+        events.add(obtainEvent(
+                time += EVENT_INTERVAL_MS, secondPointerDown,
+                centerX, centerY - maxHalfSpan, centerX, centerY + maxHalfSpan
+        ));
+        for (int i = GESTURE_STEPS - 1; i >= 0; i--) {
+            float halfSpan = minHalfSpan + (maxHalfSpan - minHalfSpan) * i / GESTURE_STEPS;
+            events.add(obtainEvent(
+                    time += EVENT_INTERVAL_MS, MotionEvent.ACTION_MOVE,
+                    centerX, centerY - halfSpan, centerX, centerY + halfSpan
+            ));
+        }
+        events.add(obtainEvent(
+                time += EVENT_INTERVAL_MS, secondPointerUp,
+                centerX, centerY - minHalfSpan, centerX, centerY + minHalfSpan
+        ));
+        events.add(obtainEvent(time + EVENT_INTERVAL_MS, MotionEvent.ACTION_UP, centerX, centerY - minHalfSpan));
+        return events.toArray(new MotionEvent[0]);
+    }
+
+    /**
+     * @param coordinates x and y of every pointer, the pointer ids are their indices
+     */
+    private static MotionEvent obtainEvent(long eventTime, int action, float... coordinates) {
+        int pointerCount = coordinates.length / 2;
+        MotionEvent.PointerProperties[] properties = new MotionEvent.PointerProperties[pointerCount];
+        MotionEvent.PointerCoords[] pointerCoords = new MotionEvent.PointerCoords[pointerCount];
+        for (int i = 0; i < pointerCount; i++) {
+            properties[i] = new MotionEvent.PointerProperties();
+            properties[i].id = i;
+            properties[i].toolType = MotionEvent.TOOL_TYPE_FINGER;
+            pointerCoords[i] = new MotionEvent.PointerCoords();
+            pointerCoords[i].x = coordinates[i * 2];
+            pointerCoords[i].y = coordinates[i * 2 + 1];
+        }
+        return MotionEvent.obtain(
+                0, eventTime, action, pointerCount, properties, pointerCoords,
+                0, 0, 1f, 1f, 0, 0, InputDevice.SOURCE_TOUCHSCREEN, 0
+        );
+    }
+
+}
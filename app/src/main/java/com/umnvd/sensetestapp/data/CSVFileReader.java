@@ -1,34 +1,97 @@
 package com.umnvd.sensetestapp.data;
 
+import android.app.ActivityManager;
 import android.content.ContentResolver;
 import android.content.Context;
+import android.database.ContentObserver;
 import android.net.Uri;
 import android.os.Handler;
+import android.os.ParcelFileDescriptor;
+import android.os.Trace;
+import android.view.Choreographer;
 
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
 import androidx.annotation.StringRes;
 
 import com.umnvd.sensetestapp.R;
-import com.umnvd.sensetestapp.models.DataPoint;
+import com.umnvd.sensetestapp.metrics.Counter;
+import com.umnvd.sensetestapp.metrics.Histogram;
+import com.umnvd.sensetestapp.metrics.Metrics;
+import com.umnvd.sensetestapp.models.PointSeries;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class CSVFileReader {
 
+    private static final long MAPPED_WINDOW_SIZE = 16 * 1024 * 1024;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final long PARALLEL_PARSE_THRESHOLD = 8 * 1024 * 1024;
+    private static final int BATCH_SIZE = 64 * 1024;
+    private static final int MEMORY_CLASS_FRACTION = 4;
+    private static final int OUT_OF_CORE_MEMORY_CLASS_FRACTION = 8;
+    private static final int BYTES_PER_VALUE = 8;
+    private static final int MIN_FILE_BYTES_PER_VALUE = 2;
+    private static final long FOLLOW_POLL_INTERVAL_MS = 500;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private static final LoadHandle COMPLETED_LOAD = new LoadHandle() {
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return true;
+        }
+    };
+
     private static volatile CSVFileReader instance;
 
     private final ContentResolver contentResolver;
     private final ExecutorService executor;
+    private final ExecutorService inflateExecutor;
+    private final ParallelCSVParser parallelParser;
+    private final ParseCache parseCache;
+    private final SeriesMemoryCache memoryCache;
+    private final ColumnFileStore columnFileStore;
+    private final long outOfCoreThreshold;
     private final Handler mainHandler;
+    private final Map<Uri, Load> inFlightLoads = new HashMap<>();
 
-    private Uri cachedUri;
-    private List<DataPoint> cachedPoints;
+    private final Metrics metrics = Metrics.getInstance();
+    private final Counter bytesReadCounter = metrics.getCounter(Metrics.LOAD_BYTES_READ);
+    private final Counter rowsCounter = metrics.getCounter(Metrics.LOAD_ROWS);
+    private final Counter badRowsCounter = metrics.getCounter(Metrics.LOAD_BAD_ROWS);
+    private final Counter memoryCacheHitsCounter = metrics.getCounter(Metrics.LOAD_MEMORY_CACHE_HITS);
+    private final Counter parseCacheHitsCounter = metrics.getCounter(Metrics.LOAD_PARSE_CACHE_HITS);
+    private final Counter parseCacheMissesCounter = metrics.getCounter(Metrics.LOAD_PARSE_CACHE_MISSES);
+    private final Histogram readTimeHistogram = metrics.getHistogram(Metrics.LOAD_READ_TIME_NANOS);
+    private final Histogram parseTimeHistogram = metrics.getHistogram(Metrics.LOAD_PARSE_TIME_NANOS);
+    private final Histogram rowsPerSecondHistogram = metrics.getHistogram(Metrics.LOAD_ROWS_PER_SECOND);
 
     public static CSVFileReader getInstance(Context applicationContext) {
         if (instance == null) {
@@ -39,64 +102,912 @@ public class CSVFileReader {
         return instance;
     }
 
-    public void read(Uri uri, SuccessCallback successCallback, ErrorCallback errorCallBack) {
-        if (uri.equals(cachedUri) && cachedPoints != null && !cachedPoints.isEmpty()) {
-            successCallback.onSuccess(cachedPoints);
-        } else {
-            executor.submit(() -> {
+    @MainThread
+    public LoadHandle read(Uri uri, SuccessCallback successCallback, ErrorCallback errorCallBack) {
+        return readProgressively(uri, null, successCallback, errorCallBack);
+    }
+
+    @MainThread
+    public LoadHandle readProgressively(
+            Uri uri,
+            BatchCallback batchCallback,
+            SuccessCallback successCallback,
+            ErrorCallback errorCallBack
+    ) {
+        return readProgressively(uri, batchCallback, successCallback, null, errorCallBack);
+    }
+
+    /**
+     * Starts loading {@code uri} or joins the load of the same Uri which is already running.
+     * The returned handle detaches the callbacks, the load itself is cancelled once
+     * it has no callbacks left.
+     * <p>
+     * A file too large for the heap is converted into a {@link ColumnFile} which is passed
+     * to {@code columnFileCallback} instead of the batch and success callbacks, subscribers
+     * without it get an error.
+     */
+    @MainThread
+    public LoadHandle readProgressively(
+            Uri uri,
+            BatchCallback batchCallback,
+            SuccessCallback successCallback,
+            ColumnFileCallback columnFileCallback,
+            ErrorCallback errorCallBack
+    ) {
+        return readProgressively(
+                uri, CSVParser.BadRowPolicy.FAIL, batchCallback, successCallback, columnFileCallback, errorCallBack
+        );
+    }
+
+    /**
+     * Same as {@link #readProgressively(Uri, BatchCallback, SuccessCallback, ColumnFileCallback, ErrorCallback)}
+     * with rows which can't be parsed handled by {@code badRowPolicy}: the load fails on them
+     * with {@link CSVParser.BadRowPolicy#FAIL FAIL}, otherwise the subscribers get a warning
+     * with the count of such rows. Data cached by a load with another policy is only reused
+     * if it has no such rows.
+     */
+    @MainThread
+    public LoadHandle readProgressively(
+            Uri uri,
+            CSVParser.BadRowPolicy badRowPolicy,
+            BatchCallback batchCallback,
+            SuccessCallback successCallback,
+            ColumnFileCallback columnFileCallback,
+            ErrorCallback errorCallBack
+    ) {
+        BadRowReport cachedBadRowReport = new BadRowReport();
+        PointSeries cachedPoints = memoryCache.get(uri, badRowPolicy, cachedBadRowReport);
+        if (cachedPoints != null && !cachedPoints.isEmpty()) {
+            memoryCacheHitsCounter.increment();
+            metrics.report();
+            if (batchCallback != null) batchCallback.onBatch(cachedPoints);
+            if (successCallback != null) successCallback.onSuccess(cachedPoints);
+            notifyBadRows(cachedBadRowReport, errorCallBack);
+            return COMPLETED_LOAD;
+        }
+
+        Load load = inFlightLoads.get(uri);
+        if (load == null || load.badRowPolicy != badRowPolicy) {
+            // A load with another policy keeps running for its own subscribers.
+            load = new Load(uri, badRowPolicy);
+            inFlightLoads.put(uri, load);
+            load.start();
+        }
+        return load.subscribe(batchCallback, successCallback, columnFileCallback, errorCallBack);
+    }
+
+    /**
+     * Reads {@code uri} and then keeps reading the bytes appended to it until the handle
+     * is cancelled. Growth is detected by a content observer and by polling, only the new
+     * bytes are parsed and an unterminated last line is kept until it is completed.
+     */
+    @MainThread
+    public LoadHandle follow(Uri uri, BatchCallback batchCallback, ErrorCallback errorCallback) {
+        return follow(uri, CSVParser.BadRowPolicy.FAIL, batchCallback, errorCallback);
+    }
+
+    /**
+     * Same as {@link #follow(Uri, BatchCallback, ErrorCallback)} with rows which can't be
+     * parsed handled by {@code badRowPolicy}.
+     */
+    @MainThread
+    public LoadHandle follow(
+            Uri uri,
+            CSVParser.BadRowPolicy badRowPolicy,
+            BatchCallback batchCallback,
+            ErrorCallback errorCallback
+    ) {
+        FollowSession session = new FollowSession(uri, badRowPolicy, batchCallback, errorCallback);
+        session.start();
+        return session;
+    }
+
+    /**
+     * Rows which can't be parsed are handled by {@code badRowPolicy} and added to
+     * {@code badRowReport}.
+     */
+    private PointSeries readCSVFile(
+            Uri uri,
+            CSVParser.BadRowPolicy badRowPolicy,
+            CSVParser.BatchListener batchListener,
+            CSVParser.CancellationCheck cancellationCheck,
+            BadRowReport badRowReport
+    ) throws IOException {
+        PointSeries result;
+        long readStartNanos = System.nanoTime();
+        Trace.beginSection("CSVFileReader.read");
+        try (ParcelFileDescriptor descriptor = contentResolver.openFileDescriptor(uri, "r")) {
+            if (descriptor == null) throw new FileNotFoundException(uri.toString());
+            FileChannel channel = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+            long size = descriptor.getStatSize();
+            ByteBuffer sample = readSample(channel, size);
+            if (PipelinedInflater.isGzip(sample.array(), sample.limit())) {
+                // The sample of an unseekable file was consumed, the rest is counted as it's inflated.
+                if (size < 0) bytesReadCounter.add(sample.limit());
+                InputStream compressed = openCompressed(channel, size, sample);
+                result = readCompressed(
+                        compressed, badRowPolicy, batchListener, cancellationCheck, badRowReport, readStartNanos
+                );
+            } else {
+                result = readUncompressed(
+                        channel, size, sample, badRowPolicy, batchListener, cancellationCheck, badRowReport,
+                        readStartNanos
+                );
+            }
+        } finally {
+            Trace.endSection();
+        }
+
+        // Sorted once here, so that the cached series don't need it.
+        result.sortByX();
+        memoryCache.put(uri, result, badRowPolicy, badRowReport);
+        return result;
+    }
+
+    private PointSeries readUncompressed(
+            FileChannel channel,
+            long size,
+            ByteBuffer sample,
+            CSVParser.BadRowPolicy badRowPolicy,
+            CSVParser.BatchListener batchListener,
+            CSVParser.CancellationCheck cancellationCheck,
+            BadRowReport badRowReport,
+            long readStartNanos
+    ) throws IOException {
+        boolean isWholeFile = size >= 0 ? sample.limit() == size : sample.limit() < sample.capacity();
+        CSVSchema schema = CSVSchema.infer(sample.array(), sample.limit(), isWholeFile, true);
+        long parseStartNanos = System.nanoTime();
+        readTimeHistogram.record(parseStartNanos - readStartNanos);
+
+        PointSeries result;
+        Trace.beginSection("CSVFileReader.parse");
+        try {
+            if (size >= PARALLEL_PARSE_THRESHOLD) {
+                result = parallelParser.parse(
+                        channel, size, schema, batchListener, cancellationCheck, badRowPolicy, badRowReport
+                );
+                bytesReadCounter.add(size);
+            } else {
+                CSVParser parser = new CSVParser(schema);
+                if (batchListener != null) parser.setBatchListener(BATCH_SIZE, batchListener);
+                parser.setBadRowPolicy(badRowPolicy, badRowReport);
+                parser.setCancellationCheck(cancellationCheck);
+                if (size >= 0) {
+                    readMapped(channel, size, parser);
+                    bytesReadCounter.add(size);
+                } else {
+                    bytesReadCounter.add(sample.limit());
+                    parser.parse(sample);
+                    readStreamed(channel, parser);
+                }
+                parser.finish();
+                result = parser.getSeries();
+                result.trimToSize();
+            }
+        } finally {
+            Trace.endSection();
+        }
+        recordParse(result.size(), System.nanoTime() - parseStartNanos);
+        return result;
+    }
+
+    /**
+     * Parses a gzip file while the next part of it is inflated on the inflate thread.
+     * A gzip stream can't be split, so it is parsed by one thread however large it is.
+     */
+    private PointSeries readCompressed(
+            InputStream compressed,
+            CSVParser.BadRowPolicy badRowPolicy,
+            CSVParser.BatchListener batchListener,
+            CSVParser.CancellationCheck cancellationCheck,
+            BadRowReport badRowReport,
+            long readStartNanos
+    ) throws IOException {
+        try (PipelinedInflater inflater = new PipelinedInflater(compressed, inflateExecutor)) {
+            ByteBuffer buffer = inflater.take();
+            ByteBuffer sample = buffer != null ? buffer : ByteBuffer.allocate(0);
+            boolean isWholeFile = sample.limit() < PipelinedInflater.BUFFER_SIZE;
+            CSVSchema schema = CSVSchema.infer(sample.array(), sample.limit(), isWholeFile, true);
+            long parseStartNanos = System.nanoTime();
+            readTimeHistogram.record(parseStartNanos - readStartNanos);
+
+            PointSeries result;
+            Trace.beginSection("CSVFileReader.parse");
+            try {
+                CSVParser parser = new CSVParser(schema);
+                if (batchListener != null) parser.setBatchListener(BATCH_SIZE, batchListener);
+                parser.setBadRowPolicy(badRowPolicy, badRowReport);
+                parser.setCancellationCheck(cancellationCheck);
+                while (buffer != null) {
+                    parser.parse(buffer);
+                    inflater.recycle(buffer);
+                    buffer = inflater.take();
+                }
+                parser.finish();
+                result = parser.getSeries();
+                result.trimToSize();
+            } finally {
+                Trace.endSection();
+            }
+            recordParse(result.size(), System.nanoTime() - parseStartNanos);
+            return result;
+        }
+    }
+
+    /**
+     * Stream of the whole file from its start, including the sample if reading it
+     * consumed the channel. The bytes read from the channel are counted.
+     */
+    private InputStream openCompressed(FileChannel channel, long size, ByteBuffer sample) {
+        InputStream rest = new CountingInputStream(Channels.newInputStream(channel), bytesReadCounter);
+        if (size >= 0) return rest;
+        return new SequenceInputStream(new ByteArrayInputStream(sample.array(), 0, sample.limit()), rest);
+    }
+
+    /**
+     * Converts a file whose rows don't fit in the heap into a column file with a single
+     * pass of the parallel parser, so that the heap only holds the chunks being parsed and
+     * the pages being written.
+     *
+     * @return null if the file has to be read into the heap: its rows are estimated to fit
+     * in it, its size is unknown or it's compressed
+     * @throws ColumnFileWriter.UnsortedException if the rows aren't sorted by x
+     */
+    @Nullable
+    private ColumnFile convertCSVFile(
+            Uri uri,
+            ParseCache.Key key,
+            CSVParser.BadRowPolicy badRowPolicy,
+            CSVParser.CancellationCheck cancellationCheck,
+            BadRowReport badRowReport
+    ) throws IOException {
+        long readStartNanos = System.nanoTime();
+        Trace.beginSection("CSVFileReader.convert");
+        try (ParcelFileDescriptor descriptor = contentResolver.openFileDescriptor(uri, "r")) {
+            if (descriptor == null) throw new FileNotFoundException(uri.toString());
+            FileChannel channel = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+            long size = descriptor.getStatSize();
+            if (size < 0) return null;
+            ByteBuffer sample = readSample(channel, size);
+            if (PipelinedInflater.isGzip(sample.array(), sample.limit())) return null;
+
+            CSVSchema schema = CSVSchema.infer(sample.array(), sample.limit(), sample.limit() == size, true);
+            if (!isTooLargeForHeap(size, sample.limit(), schema)) return null;
+            long parseStartNanos = System.nanoTime();
+            readTimeHistogram.record(parseStartNanos - readStartNanos);
+            while (true) {
                 try {
-                    List<DataPoint> points = readCSVFile(uri);
-                    postSuccess(points, successCallback);
-                } catch (FileNotFoundException e) {
-                    postError(R.string.file_not_found_error, errorCallBack);
-                } catch (IOException e) {
-                    postError(R.string.file_read_error, errorCallBack);
-                } catch (NumberFormatException e) {
-                    postError(R.string.csv_parse_error, errorCallBack);
+                    writeColumnFile(channel, size, key, schema, badRowPolicy, cancellationCheck, badRowReport);
+                    break;
+                } catch (ColumnFileWriter.FormatsWidenedException e) {
+                    // Rows past the first batch needed wider formats than the sample, the file is
+                    // converted again with them.
+                    schema = schema.withFormats(e.getXFormat(), e.getYFormat());
+                    badRowReport.clear();
                 }
-            });
+            }
+            bytesReadCounter.add(size);
+
+            columnFileStore.trim(key);
+            // The report already holds all bad rows, not just the summary stored in the file.
+            ColumnFile columnFile = columnFileStore.open(key, badRowPolicy, new BadRowReport());
+            if (columnFile == null) throw new IOException("Can't open the converted file");
+            recordParse(columnFile.getRowsCount(), System.nanoTime() - parseStartNanos);
+            return columnFile;
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    private void writeColumnFile(
+            FileChannel channel,
+            long size,
+            ParseCache.Key key,
+            CSVSchema schema,
+            CSVParser.BadRowPolicy badRowPolicy,
+            CSVParser.CancellationCheck cancellationCheck,
+            BadRowReport badRowReport
+    ) throws IOException {
+        try (ColumnFileWriter writer = columnFileStore.createWriter(
+                key, schema.getColumnsCount() - 1, schema.getXFormat(), schema.getYFormat()
+        )) {
+            writer.setBadRowReport(badRowPolicy, badRowReport);
+            try {
+                parallelParser.parseStreaming(
+                        channel, size, schema, writer,
+                        () -> cancellationCheck.isCancelled() || writer.hasFailed(),
+                        badRowPolicy, badRowReport
+                );
+            } catch (CancellationException e) {
+                // The parse was stopped by a write error, finish() rethrows it.
+                if (writer.hasFailed()) writer.finish();
+                throw e;
+            }
+            writer.finish();
         }
     }
 
-    private List<DataPoint> readCSVFile(Uri uri) throws IOException {
-        List<DataPoint> result = new ArrayList<>();
-        BufferedReader reader = new BufferedReader(
-                new InputStreamReader(contentResolver.openInputStream(uri))
+    /**
+     * Whether the rows of a file of {@code size} bytes, estimated from the rows of its
+     * sample, would take more heap than a loaded series may.
+     */
+    private boolean isTooLargeForHeap(long size, int sampleLength, CSVSchema schema) {
+        int sampledRowsCount = schema.getSampledRowsCount();
+        if (sampledRowsCount == 0) return size >= outOfCoreThreshold;
+        double estimatedRowsCount = (double) size * sampledRowsCount / sampleLength;
+        return estimatedRowsCount * schema.getColumnsCount() * BYTES_PER_VALUE >= outOfCoreThreshold;
+    }
+
+    /**
+     * Skipped or clamped rows don't fail the load, but the subscriber is told that the plot
+     * misses some of them.
+     */
+    private static void notifyBadRows(BadRowReport badRowReport, ErrorCallback errorCallback) {
+        if (badRowReport.isEmpty() || errorCallback == null) return;
+        errorCallback.onError(
+                R.string.csv_bad_rows_warning, badRowReport.getBadRowsCount(), badRowReport.getLineNumber(0)
         );
+    }
 
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String[] row = line.split(",");
-            result.add(new DataPoint(
-                    Integer.parseInt(row[0]),
-                    Integer.parseInt(row[1])
-            ));
-        }
+    private void recordParse(long rowsCount, long parseNanos) {
+        rowsCounter.add(rowsCount);
+        parseTimeHistogram.record(parseNanos);
+        if (parseNanos > 0) rowsPerSecondHistogram.record(rowsCount * NANOS_PER_SECOND / parseNanos);
+    }
 
-        cachedUri = uri;
-        cachedPoints = result;
-        return result;
+    /**
+     * Reads the first bytes to infer the schema from. Seekable files are read without
+     * moving the channel position, otherwise the sample is consumed and must be parsed.
+     */
+    private ByteBuffer readSample(FileChannel channel, long size) throws IOException {
+        int capacity = size >= 0 ? (int) Math.min(size, CSVSchema.SAMPLE_SIZE) : CSVSchema.SAMPLE_SIZE;
+        ByteBuffer sample = ByteBuffer.allocate(capacity);
+        while (sample.hasRemaining()) {
+            int read = size >= 0 ? channel.read(sample, sample.position()) : channel.read(sample);
+            if (read <= 0) break;
+        }
+        sample.flip();
+        return sample;
     }
 
-    private void postSuccess(List<DataPoint> points, SuccessCallback callback) {
-        if (callback != null) {
-            mainHandler.post(() -> callback.onSuccess(points));
+    private void readMapped(FileChannel channel, long size, CSVParser parser) throws IOException {
+        long position = 0;
+        while (position < size) {
+            long length = Math.min(MAPPED_WINDOW_SIZE, size - position);
+            parser.parse(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+            position += length;
         }
     }
 
-    private void postError(int messageId, ErrorCallback callback) {
-        if (callback != null) {
-            mainHandler.post(() -> callback.onError(messageId));
+    private void readStreamed(FileChannel channel, CSVParser parser) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(STREAM_BUFFER_SIZE);
+        int read;
+        while ((read = channel.read(buffer)) != -1) {
+            bytesReadCounter.add(read);
+            buffer.flip();
+            parser.parse(buffer);
+            buffer.clear();
         }
     }
 
     private CSVFileReader(Context applicationContext) {
         contentResolver = applicationContext.getContentResolver();
         executor = Executors.newSingleThreadExecutor();
+        inflateExecutor = Executors.newSingleThreadExecutor();
+        parallelParser = new ParallelCSVParser(
+                new ForkJoinPool(Runtime.getRuntime().availableProcessors())
+        );
+        parseCache = new ParseCache(contentResolver, applicationContext.getCacheDir());
+        ActivityManager activityManager =
+                (ActivityManager) applicationContext.getSystemService(Context.ACTIVITY_SERVICE);
+        memoryCache = new SeriesMemoryCache(
+                activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CLASS_FRACTION
+        );
+        applicationContext.registerComponentCallbacks(memoryCache);
+        columnFileStore = new ColumnFileStore(applicationContext.getFilesDir());
+        outOfCoreThreshold = (long) activityManager.getMemoryClass() * 1024 * 1024
+                / OUT_OF_CORE_MEMORY_CLASS_FRACTION;
         mainHandler = new Handler(applicationContext.getMainLooper());
     }
 
-    public interface SuccessCallback { void onSuccess(List<DataPoint> points);}
-    public interface ErrorCallback { void onError(@StringRes int messageId);}
+    public interface BatchCallback { void onBatch(PointSeries points);}
+    public interface SuccessCallback { void onSuccess(PointSeries points);}
+    public interface ColumnFileCallback { void onColumnFile(ColumnFile columnFile);}
+    public interface ErrorCallback { void onError(@StringRes int messageId, Object... formatArgs);}
+
+    public interface LoadHandle {
+
+        @MainThread
+        void cancel();
+
+        boolean isCancelled();
+
+        boolean isDone();
+    }
+
+    private static PointSeries join(List<PointSeries> batches) {
+        if (batches.size() == 1) return batches.get(0);
+        int size = 0;
+        for (PointSeries batch : batches) size += batch.size();
+        PointSeries first = batches.get(0);
+        PointSeries joined = new PointSeries(first.getYColumnsCount(), size);
+        joined.setFormats(first.getXFormat(), first.getYFormat());
+        for (PointSeries batch : batches) joined.addAll(batch);
+        return joined;
+    }
+
+    /**
+     * Single parse of a Uri shared by all of its subscribers. Everything except {@link #run()}
+     * is confined to the main thread.
+     */
+    private class Load implements BatchCallback, CSVParser.CancellationCheck {
+
+        private final Uri uri;
+        private final CSVParser.BadRowPolicy badRowPolicy;
+        private final BatchPoster batchPoster = new BatchPoster(this);
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private final List<PointSeries> deliveredBatches = new ArrayList<>();
+        private final BadRowReport badRowReport = new BadRowReport();
+        private Future<?> future;
+        private volatile boolean cancelled = false;
+        private boolean finished = false;
+
+        Load(Uri uri, CSVParser.BadRowPolicy badRowPolicy) {
+            this.uri = uri;
+            this.badRowPolicy = badRowPolicy;
+        }
+
+        void start() {
+            future = executor.submit(this::run);
+        }
+
+        Subscriber subscribe(
+                BatchCallback batchCallback,
+                SuccessCallback successCallback,
+                ColumnFileCallback columnFileCallback,
+                ErrorCallback errorCallback
+        ) {
+            Subscriber subscriber = new Subscriber(
+                    this, batchCallback, successCallback, columnFileCallback, errorCallback
+            );
+            if (batchCallback != null && !deliveredBatches.isEmpty()) {
+                batchCallback.onBatch(join(deliveredBatches));
+            }
+            subscribers.add(subscriber);
+            return subscriber;
+        }
+
+        void unsubscribe(Subscriber subscriber) {
+            subscribers.remove(subscriber);
+            // Deferred so that a view recreated right away can take over the load.
+            if (subscribers.isEmpty()) mainHandler.post(this::cancelIfUnused);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void onBatch(PointSeries points) {
+            deliveredBatches.add(points);
+            for (Subscriber subscriber : new ArrayList<>(subscribers)) {
+                if (subscriber.batchCallback != null) subscriber.batchCallback.onBatch(points);
+            }
+        }
+
+        private void run() {
+            try {
+                ParseCache.Key cacheKey = parseCache.createKey(uri);
+                ColumnFile columnFile = null;
+                // Every value takes at least a digit and a delimiter, a smaller file fits in the heap.
+                long maxRowsHeapSize = cacheKey != null
+                        ? cacheKey.getSourceSize() / MIN_FILE_BYTES_PER_VALUE * BYTES_PER_VALUE
+                        : 0;
+                if (maxRowsHeapSize >= outOfCoreThreshold) {
+                    columnFile = columnFileStore.open(cacheKey, badRowPolicy, badRowReport);
+                    if (columnFile == null) {
+                        columnFile = convertCSVFile(uri, cacheKey, badRowPolicy, this, badRowReport);
+                    }
+                }
+                PointSeries points = cacheKey != null && columnFile == null ? readCached(cacheKey) : null;
+                if (columnFile != null) {
+                    postColumnFile(columnFile);
+                } else if (points != null) {
+                    parseCacheHitsCounter.increment();
+                    batchPoster.onBatch(points);
+                    memoryCache.put(uri, points, badRowPolicy, badRowReport);
+                    postSuccess(points);
+                } else {
+                    parseCacheMissesCounter.increment();
+                    points = readCSVFile(uri, badRowPolicy, batchPoster, this, badRowReport);
+                    postSuccess(points);
+                    if (cacheKey != null) parseCache.write(cacheKey, points, badRowPolicy, badRowReport);
+                }
+                badRowsCounter.add(badRowReport.getBadRowsCount());
+                metrics.report();
+            } catch (CancellationException e) {
+                // Nobody is waiting for the result anymore.
+            } catch (CSVFormatException e) {
+                postError(R.string.csv_parse_line_error, e.getLineNumber());
+            } catch (ColumnFileWriter.UnsortedException e) {
+                // Column file pages need rows sorted by x and the rows don't fit in the heap
+                // to be sorted there.
+                postError(R.string.large_file_unsorted_error);
+            } catch (FileNotFoundException e) {
+                postError(R.string.file_not_found_error);
+            } catch (IOException e) {
+                postError(R.string.file_read_error);
+            } catch (RuntimeException e) {
+                postError(R.string.file_read_error);
+            } finally {
+                // The load leaves the in-flight loads however it ended, so that the next read
+                // of the file can't subscribe to a load which never delivers.
+                mainHandler.post(this::finish);
+            }
+        }
+
+        private PointSeries readCached(ParseCache.Key cacheKey) {
+            long startNanos = System.nanoTime();
+            Trace.beginSection("CSVFileReader.read");
+            try {
+                PointSeries points = parseCache.read(cacheKey, badRowPolicy, badRowReport);
+                if (points != null) readTimeHistogram.record(System.nanoTime() - startNanos);
+                return points;
+            } finally {
+                Trace.endSection();
+            }
+        }
+
+        private void postSuccess(PointSeries points) {
+            mainHandler.post(() -> {
+                if (!finish()) return;
+                batchPoster.flush();
+                for (Subscriber subscriber : new ArrayList<>(subscribers)) {
+                    subscriber.done = true;
+                    if (subscriber.successCallback != null) subscriber.successCallback.onSuccess(points);
+                    notifyBadRows(badRowReport, subscriber.errorCallback);
+                }
+                subscribers.clear();
+            });
+        }
+
+        private void postColumnFile(ColumnFile columnFile) {
+            mainHandler.post(() -> {
+                if (!finish()) return;
+                batchPoster.cancel();
+                for (Subscriber subscriber : new ArrayList<>(subscribers)) {
+                    subscriber.done = true;
+                    if (subscriber.columnFileCallback != null) {
+                        subscriber.columnFileCallback.onColumnFile(columnFile);
+                        notifyBadRows(badRowReport, subscriber.errorCallback);
+                    } else if (subscriber.errorCallback != null) {
+                        subscriber.errorCallback.onError(R.string.large_file_error);
+                    }
+                }
+                subscribers.clear();
+            });
+        }
+
+        private void postError(int messageId, Object... formatArgs) {
+            mainHandler.post(() -> {
+                if (!finish()) return;
+                batchPoster.cancel();
+                for (Subscriber subscriber : new ArrayList<>(subscribers)) {
+                    subscriber.done = true;
+                    if (subscriber.errorCallback != null) {
+                        subscriber.errorCallback.onError(messageId, formatArgs);
+                    }
+                }
+                subscribers.clear();
+            });
+        }
+
+        private boolean finish() {
+            if (cancelled) return false;
+            finished = true;
+            if (inFlightLoads.get(uri) == this) inFlightLoads.remove(uri);
+            deliveredBatches.clear();
+            return true;
+        }
+
+        private void cancelIfUnused() {
+            // A load replaced by one with another policy is still cancelled once unused.
+            if (cancelled || finished || !subscribers.isEmpty()) return;
+            cancelled = true;
+            if (inFlightLoads.get(uri) == this) inFlightLoads.remove(uri);
+            deliveredBatches.clear();
+            batchPoster.cancel();
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Parser state and read offset of a followed file. The parser and the offset are only
+     * touched by the worker thread, the rest is confined to the main thread. The parser is
+     * created once the file has a complete data row to infer the schema from.
+     */
+    private class FollowSession extends ContentObserver implements LoadHandle {
+
+        private final Uri uri;
+        private final CSVParser.BadRowPolicy badRowPolicy;
+        private final ErrorCallback errorCallback;
+        private final BatchPoster batchPoster;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(STREAM_BUFFER_SIZE);
+        private final Runnable pollTask = this::submitPoll;
+        private CSVParser parser;
+        private final BadRowReport badRowReport = new BadRowReport();
+        private long offset = 0;
+        private volatile boolean stopped = false;
+        private boolean cancelled = false;
+        private boolean isPollPending = false;
+
+        FollowSession(
+                Uri uri,
+                CSVParser.BadRowPolicy badRowPolicy,
+                BatchCallback batchCallback,
+                ErrorCallback errorCallback
+        ) {
+            super(mainHandler);
+            this.uri = uri;
+            this.badRowPolicy = badRowPolicy;
+            this.errorCallback = errorCallback;
+            this.batchPoster = new BatchPoster(batchCallback);
+        }
+
+        void start() {
+            try {
+                contentResolver.registerContentObserver(uri, false, this);
+            } catch (SecurityException e) {
+                // Polling alone is enough to notice the growth.
+            }
+            submitPoll();
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            if (stopped || isPollPending) return;
+            mainHandler.removeCallbacks(pollTask);
+            submitPoll();
+        }
+
+        @Override
+        public void cancel() {
+            if (stopped) return;
+            cancelled = true;
+            stop();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return stopped;
+        }
+
+        private void submitPoll() {
+            if (stopped || isPollPending) return;
+            isPollPending = true;
+            executor.submit(this::poll);
+        }
+
+        private void poll() {
+            boolean isPollable = false;
+            try {
+                isPollable = readAppendedBytes();
+                if (!isPollable) postError(R.string.file_truncated_error);
+            } catch (CancellationException e) {
+                // Stopped while reading.
+            } catch (CSVFormatException e) {
+                postError(R.string.csv_parse_line_error, e.getLineNumber());
+            } catch (FileNotFoundException e) {
+                postError(R.string.file_not_found_error);
+            } catch (IOException e) {
+                postError(R.string.file_read_error);
+            } catch (NumberFormatException e) {
+                postError(R.string.csv_parse_error);
+            } catch (RuntimeException e) {
+                postError(R.string.file_read_error);
+            } finally {
+                // The pending flag is cleared however the poll ended, so that a failed poll
+                // can't leave the session waiting for a poll which never comes.
+                boolean shouldPollAgain = isPollable;
+                mainHandler.post(() -> schedulePoll(shouldPollAgain));
+            }
+        }
+
+        /**
+         * @return false if the file became shorter than what was already read
+         */
+        private boolean readAppendedBytes() throws IOException {
+            try (ParcelFileDescriptor descriptor = contentResolver.openFileDescriptor(uri, "r")) {
+                if (descriptor == null) throw new FileNotFoundException(uri.toString());
+                long size = descriptor.getStatSize();
+                if (size >= 0 && size < offset) return false;
+
+                FileChannel channel = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+                if (parser == null && !createParser(channel)) return true;
+                buffer.clear();
+                int read;
+                while ((read = channel.read(buffer, offset)) > 0) {
+                    offset += read;
+                    bytesReadCounter.add(read);
+                    buffer.flip();
+                    parser.parse(buffer);
+                    buffer.clear();
+                }
+                parser.flush();
+                badRowsCounter.add(badRowReport.getBadRowsCount());
+                badRowReport.clear();
+                return true;
+            }
+        }
+
+        /**
+         * @return false if the file has no complete data row yet
+         */
+        private boolean createParser(FileChannel channel) throws IOException {
+            ByteBuffer sample = readSample(channel, CSVSchema.SAMPLE_SIZE);
+            if (PipelinedInflater.isGzip(sample.array(), sample.limit())) {
+                // Appended bytes of a gzip file can't be inflated without its whole history.
+                postError(R.string.follow_compressed_error);
+                return false;
+            }
+            CSVSchema schema = CSVSchema.infer(sample.array(), sample.limit(), false, true);
+            if (schema.getSampledRowsCount() == 0 && sample.limit() < CSVSchema.SAMPLE_SIZE) return false;
+
+            parser = new CSVParser(schema);
+            // The renderer keeps the rows, the parser only holds a batch until it is copied.
+            parser.setStreamingBatchListener(BATCH_SIZE, batch -> batchPoster.onBatch(batch.copy()));
+            parser.setBadRowPolicy(badRowPolicy, badRowReport);
+            parser.setCancellationCheck(() -> stopped);
+            return true;
+        }
+
+        private void schedulePoll(boolean shouldPollAgain) {
+            isPollPending = false;
+            if (shouldPollAgain && !stopped) mainHandler.postDelayed(pollTask, FOLLOW_POLL_INTERVAL_MS);
+        }
+
+        private void postError(int messageId, Object... formatArgs) {
+            mainHandler.post(() -> {
+                if (stopped) return;
+                stop();
+                if (errorCallback != null) errorCallback.onError(messageId, formatArgs);
+            });
+        }
+
+        private void stop() {
+            stopped = true;
+            mainHandler.removeCallbacks(pollTask);
+            contentResolver.unregisterContentObserver(this);
+            batchPoster.cancel();
+        }
+    }
+
+    private static class Subscriber implements LoadHandle {
+
+        private final Load load;
+        private final BatchCallback batchCallback;
+        private final SuccessCallback successCallback;
+        private final ColumnFileCallback columnFileCallback;
+        private final ErrorCallback errorCallback;
+        private boolean cancelled = false;
+        private boolean done = false;
+
+        Subscriber(
+                Load load,
+                BatchCallback batchCallback,
+                SuccessCallback successCallback,
+                ColumnFileCallback columnFileCallback,
+                ErrorCallback errorCallback
+        ) {
+            this.load = load;
+            this.batchCallback = batchCallback;
+            this.successCallback = successCallback;
+            this.columnFileCallback = columnFileCallback;
+            this.errorCallback = errorCallback;
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled || done) return;
+            cancelled = true;
+            load.unsubscribe(this);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done || cancelled;
+        }
+    }
+
+    private class BatchPoster implements CSVParser.BatchListener, Choreographer.FrameCallback {
+
+        private final BatchCallback callback;
+        private List<PointSeries> pendingBatches = new ArrayList<>();
+        private boolean frameScheduled = false;
+        private boolean cancelled = false;
+
+        BatchPoster(BatchCallback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void onBatch(PointSeries batch) {
+            synchronized (this) {
+                pendingBatches.add(batch);
+                if (frameScheduled) return;
+                frameScheduled = true;
+            }
+            mainHandler.post(() -> {
+                if (!cancelled) Choreographer.getInstance().postFrameCallback(this);
+            });
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            List<PointSeries> batches;
+            synchronized (this) {
+                batches = pendingBatches;
+                pendingBatches = new ArrayList<>();
+                frameScheduled = false;
+            }
+            if (!cancelled && !batches.isEmpty()) callback.onBatch(join(batches));
+        }
+
+        void flush() {
+            Choreographer.getInstance().removeFrameCallback(this);
+            doFrame(System.nanoTime());
+        }
+
+        void cancel() {
+            cancelled = true;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    /**
+     * Adds the bytes read through it to a counter, so that a stream is counted by what
+     * was consumed of it rather than by its size, which may not be known.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private final Counter counter;
+
+        CountingInputStream(InputStream in, Counter counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) counter.increment();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) counter.add(read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            counter.add(skipped);
+            return skipped;
+        }
+    }
 
 }
@@ -11,12 +11,15 @@ import androidx.annotation.Nullable;
 
 public class ChooseFileContract extends ActivityResultContract<Uri, Uri> {
 
+    private static final String[] MIME_TYPES = {"text/*", "application/gzip", "application/x-gzip"};
+
     @NonNull
     @Override
     public Intent createIntent(@NonNull Context context, Uri input) {
         Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
         intent.addCategory(Intent.CATEGORY_OPENABLE);
-        intent.setType("text/*");
+        intent.setType("*/*");
+        intent.putExtra(Intent.EXTRA_MIME_TYPES, MIME_TYPES);
         return intent;
     }
 
@@ -0,0 +1,96 @@
+package com.umnvd.sensetestapp.data;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.umnvd.sensetestapp.models.ValueFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Column files of the large files in the files dir. Unlike the parse cache they are
+ * the only copy of the parsed data the plot reads from, so they aren't evicted while
+ * being read and only the most recently used files are kept.
+ * Not thread-safe, all calls are expected on the reader's worker thread.
+ */
+@WorkerThread
+public class ColumnFileStore {
+
+    private static final String DIRECTORY_NAME = "columns";
+    private static final String FILE_SUFFIX = ".col";
+    private static final int MAX_FILES = 2;
+
+    private final File directory;
+
+    public ColumnFileStore(File filesDir) {
+        this.directory = new File(filesDir, DIRECTORY_NAME);
+    }
+
+    /**
+     * Returns the column file for the current version of the key's file, or null if it
+     * wasn't converted yet. A file whose conversion skipped or clamped rows is only
+     * returned for the policy it was converted with, and adds those rows to
+     * {@code badRowReport}.
+     */
+    @Nullable
+    public ColumnFile open(ParseCache.Key key, CSVParser.BadRowPolicy badRowPolicy, BadRowReport badRowReport) {
+        File file = getFile(key);
+        if (!file.exists()) return null;
+        try {
+            ColumnFile columnFile = ColumnFile.open(file);
+            if (columnFile.getSourceSize() != key.getSourceSize()
+                    || columnFile.getSourceLastModified() != key.getSourceLastModified()) {
+                file.delete();
+                return null;
+            }
+            BadRowReport fileReport = columnFile.getBadRowReport();
+            if (!fileReport.isEmpty() && columnFile.getBadRowPolicy() != badRowPolicy) return null;
+            badRowReport.addAll(fileReport, 0);
+            file.setLastModified(System.currentTimeMillis());
+            return columnFile;
+        } catch (IOException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * The writer replaces the key's column file once finished, {@link #trim(ParseCache.Key)}
+     * should follow.
+     */
+    public ColumnFileWriter createWriter(
+            ParseCache.Key key, int yColumnsCount, ValueFormat xFormat, ValueFormat yFormat
+    ) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Can't create " + directory);
+        return new ColumnFileWriter(
+                getFile(key), yColumnsCount, xFormat, yFormat, key.getSourceSize(), key.getSourceLastModified()
+        );
+    }
+
+    /**
+     * Deletes the least recently used files except the key's one.
+     */
+    public void trim(ParseCache.Key keptKey) {
+        File keptFile = getFile(keptKey);
+        File[] files = directory.listFiles();
+        if (files == null || files.length <= MAX_FILES) return;
+
+        Arrays.sort(files, (first, second) -> Long.compare(second.lastModified(), first.lastModified()));
+        int keptCount = 1;
+        for (File file : files) {
+            if (file.equals(keptFile)) continue;
+            if (keptCount < MAX_FILES && file.getName().endsWith(FILE_SUFFIX)) {
+                keptCount++;
+            } else {
+                file.delete();
+            }
+        }
+    }
+
+    private File getFile(ParseCache.Key key) {
+        return new File(directory, key.getName() + FILE_SUFFIX);
+    }
+
+}
@@ -0,0 +1,237 @@
+package com.umnvd.sensetestapp.data;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.umnvd.sensetestapp.models.PointSeries;
+import com.umnvd.sensetestapp.models.ValueFormat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Parsed series stored in the cache dir in a binary column format, so that a file
+ * which was already parsed is loaded with a single memory-mapped read.
+ * <p>
+ * Entry layout (little-endian): magic, version, source size, source last modified,
+ * rows count, y columns count, x and y value formats, the bad row policy and the summary
+ * of the bad rows, followed by the x column and the y columns of longs.
+ * Not thread-safe, all calls are expected on the reader's worker thread.
+ */
+@WorkerThread
+public class ParseCache {
+
+    private static final String DIRECTORY_NAME = "parsed";
+    private static final String ENTRY_SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x43535643;
+    private static final int VERSION = 4;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 4 * 4 + 4 + BadRowReport.SUMMARY_SIZE;
+    private static final int BYTES_PER_VALUE = 8;
+    private static final long MAX_CACHE_SIZE = 256 * 1024 * 1024;
+
+    private final ContentResolver contentResolver;
+    private final File directory;
+
+    public ParseCache(ContentResolver contentResolver, File cacheDir) {
+        this.contentResolver = contentResolver;
+        this.directory = new File(cacheDir, DIRECTORY_NAME);
+    }
+
+    /**
+     * Returns the key for the current version of the file behind {@code uri}, or null if
+     * the provider doesn't report its size and modification time.
+     */
+    @Nullable
+    public Key createKey(Uri uri) {
+        String[] projection = {OpenableColumns.SIZE, DocumentsContract.Document.COLUMN_LAST_MODIFIED};
+        try (Cursor cursor = contentResolver.query(uri, projection, null, null, null)) {
+            if (cursor == null || !cursor.moveToFirst()) return null;
+            int sizeIndex = cursor.getColumnIndex(OpenableColumns.SIZE);
+            int lastModifiedIndex = cursor.getColumnIndex(DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+            if (sizeIndex < 0 || lastModifiedIndex < 0) return null;
+            if (cursor.isNull(sizeIndex) || cursor.isNull(lastModifiedIndex)) return null;
+            return new Key(uri, cursor.getLong(sizeIndex), cursor.getLong(lastModifiedIndex));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the cached series and adds the rows its parse skipped or clamped to
+     * {@code badRowReport}. An entry with such rows is only valid for the policy it was
+     * parsed with.
+     */
+    @Nullable
+    public PointSeries read(Key key, CSVParser.BadRowPolicy badRowPolicy, BadRowReport badRowReport) {
+        File file = getEntryFile(key);
+        if (!file.exists()) return null;
+
+        try (FileInputStream input = new FileInputStream(file)) {
+            FileChannel channel = input.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            boolean isValid = channel.size() >= HEADER_SIZE
+                    && buffer.getInt() == MAGIC
+                    && buffer.getInt() == VERSION
+                    && buffer.getLong() == key.sourceSize
+                    && buffer.getLong() == key.sourceLastModified;
+            int count = isValid ? buffer.getInt() : -1;
+            int yColumnsCount = isValid ? buffer.getInt() : 0;
+            if (count < 0 || yColumnsCount < 1
+                    || channel.size() != getEntrySize(count, yColumnsCount)) {
+                file.delete();
+                return null;
+            }
+            ValueFormat xFormat = ValueFormat.of(buffer.getInt(), buffer.getInt());
+            ValueFormat yFormat = ValueFormat.of(buffer.getInt(), buffer.getInt());
+            CSVParser.BadRowPolicy entryPolicy = CSVParser.BadRowPolicy.values()[buffer.getInt()];
+            BadRowReport entryReport = new BadRowReport();
+            entryReport.readSummary(buffer);
+            if (!entryReport.isEmpty() && entryPolicy != badRowPolicy) return null;
+
+            buffer.position(HEADER_SIZE);
+            long[] xs = new long[count];
+            long[][] ys = new long[yColumnsCount][count];
+            buffer.asLongBuffer().get(xs);
+            for (int column = 0; column < yColumnsCount; column++) {
+                buffer.position(HEADER_SIZE + (column + 1) * count * BYTES_PER_VALUE);
+                buffer.asLongBuffer().get(ys[column]);
+            }
+            file.setLastModified(System.currentTimeMillis());
+            PointSeries series = PointSeries.wrap(xs, ys);
+            series.setFormats(xFormat, yFormat);
+            badRowReport.addAll(entryReport, 0);
+            return series;
+        } catch (IOException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    public void write(Key key, PointSeries series, CSVParser.BadRowPolicy badRowPolicy, BadRowReport badRowReport) {
+        int yColumnsCount = series.getYColumnsCount();
+        long entrySize = getEntrySize(series.size(), yColumnsCount);
+        if (entrySize > MAX_CACHE_SIZE) return;
+        if (!directory.isDirectory() && !directory.mkdirs()) return;
+
+        File file = getEntryFile(key);
+        File tempFile = new File(directory, file.getName() + TEMP_SUFFIX);
+        try (RandomAccessFile output = new RandomAccessFile(tempFile, "rw")) {
+            output.setLength(entrySize);
+            MappedByteBuffer buffer = output.getChannel()
+                    .map(FileChannel.MapMode.READ_WRITE, 0, entrySize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(key.sourceSize);
+            buffer.putLong(key.sourceLastModified);
+            buffer.putInt(series.size());
+            buffer.putInt(yColumnsCount);
+            putFormat(buffer, series.getXFormat());
+            putFormat(buffer, series.getYFormat());
+            buffer.putInt(badRowPolicy.ordinal());
+            badRowReport.writeSummary(buffer);
+            series.putXs(buffer.asLongBuffer());
+            for (int column = 0; column < yColumnsCount; column++) {
+                buffer.position(HEADER_SIZE + (column + 1) * series.size() * BYTES_PER_VALUE);
+                series.putYs(column, buffer.asLongBuffer());
+            }
+            buffer.force();
+        } catch (IOException e) {
+            tempFile.delete();
+            return;
+        }
+
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            return;
+        }
+        trimToSize(file);
+    }
+
+    private void putFormat(ByteBuffer buffer, ValueFormat format) {
+        buffer.putInt(format.getType().ordinal());
+        buffer.putInt(format.getScale());
+    }
+
+    private long getEntrySize(int count, int yColumnsCount) {
+        return HEADER_SIZE + (long) count * BYTES_PER_VALUE * (yColumnsCount + 1);
+    }
+
+    private void trimToSize(File keptFile) {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+
+        long totalSize = 0;
+        for (File file : files) totalSize += file.length();
+        if (totalSize <= MAX_CACHE_SIZE) return;
+
+        Arrays.sort(files, (first, second) -> Long.compare(first.lastModified(), second.lastModified()));
+        for (File file : files) {
+            if (totalSize <= MAX_CACHE_SIZE) break;
+            if (file.equals(keptFile)) continue;
+            long length = file.length();
+            if (file.delete()) totalSize -= length;
+        }
+    }
+
+    private File getEntryFile(Key key) {
+        return new File(directory, key.getName() + ENTRY_SUFFIX);
+    }
+
+    public static class Key {
+
+        private final Uri uri;
+        private final long sourceSize;
+        private final long sourceLastModified;
+
+        Key(Uri uri, long sourceSize, long sourceLastModified) {
+            this.uri = uri;
+            this.sourceSize = sourceSize;
+            this.sourceLastModified = sourceLastModified;
+        }
+
+        public long getSourceSize() {
+            return sourceSize;
+        }
+
+        public long getSourceLastModified() {
+            return sourceLastModified;
+        }
+
+        /**
+         * File name for the data derived from the Uri, the same for every version of the file.
+         */
+        String getName() {
+            String value = uri.toString();
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-1");
+                byte[] bytes = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+                StringBuilder builder = new StringBuilder(bytes.length * 2);
+                for (byte b : bytes) builder.append(String.format("%02x", b & 0xFF));
+                return builder.toString();
+            } catch (NoSuchAlgorithmException e) {
+                return Integer.toHexString(value.hashCode());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.umnvd.sensetestapp.data;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.net.Uri;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.umnvd.sensetestapp.models.PointSeries;
+
+/**
+ * Recently loaded series, evicted by their approximate size. Safe to use from any thread,
+ * the cached series must not be modified after they are put.
+ * <p>
+ * Like the parse cache, a series whose parse skipped or clamped rows is only returned
+ * for the bad row policy it was parsed with, together with the report of those rows.
+ */
+public class SeriesMemoryCache implements ComponentCallbacks2 {
+
+    private static final int BYTES_PER_VALUE = 8;
+
+    private final LruCache<Uri, Entry> entries;
+
+    public SeriesMemoryCache(int maxBytes) {
+        entries = new LruCache<Uri, Entry>(maxBytes) {
+            @Override
+            protected int sizeOf(Uri uri, Entry entry) {
+                PointSeries series = entry.series;
+                long bytes = (long) series.size() * (series.getYColumnsCount() + 1) * BYTES_PER_VALUE;
+                return (int) Math.max(Math.min(bytes, Integer.MAX_VALUE), 1);
+            }
+        };
+    }
+
+    /**
+     * Returns the cached series and adds the rows its parse skipped or clamped to
+     * {@code badRowReport}.
+     */
+    @Nullable
+    public PointSeries get(Uri uri, CSVParser.BadRowPolicy badRowPolicy, BadRowReport badRowReport) {
+        Entry entry = entries.get(uri);
+        if (entry == null) return null;
+        if (!entry.badRowReport.isEmpty() && entry.badRowPolicy != badRowPolicy) return null;
+        badRowReport.addAll(entry.badRowReport, 0);
+        return entry.series;
+    }
+
+    /**
+     * @param badRowReport rows the parse of {@code series} skipped or clamped, copied
+     */
+    public void put(Uri uri, PointSeries series, CSVParser.BadRowPolicy badRowPolicy, BadRowReport badRowReport) {
+        BadRowReport copy = new BadRowReport();
+        copy.addAll(badRowReport, 0);
+        entries.put(uri, new Entry(series, badRowPolicy, copy));
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            entries.evictAll();
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            entries.trimToSize(entries.maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        entries.evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    private static class Entry {
+
+        final PointSeries series;
+        final CSVParser.BadRowPolicy badRowPolicy;
+        final BadRowReport badRowReport;
+
+        Entry(PointSeries series, CSVParser.BadRowPolicy badRowPolicy, BadRowReport badRowReport) {
+            this.series = series;
+            this.badRowPolicy = badRowPolicy;
+            this.badRowReport = badRowReport;
+        }
+    }
+
+}
@@ -4,6 +4,7 @@ import android.net.Uri;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
@@ -19,12 +20,20 @@ import com.umnvd.sensetestapp.data.ChooseFileContract;
 public class HomeFragment extends Fragment {
 
     private Navigator navigator;
+    private CheckBox followCheckBox;
+    private CheckBox skipBadRowsCheckBox;
+    private CheckBox renderThreadCheckBox;
 
     private final ActivityResultLauncher<Uri> chooseFileLauncher = registerForActivityResult(
             new ChooseFileContract(),
             uri -> {
                 if (uri == null) toast(R.string.uri_error);
-                else if (navigator != null) navigator.navigateTo(PlotFragment.newInstance(uri));
+                else if (navigator != null) {
+                    boolean follow = followCheckBox != null && followCheckBox.isChecked();
+                    boolean skipBadRows = skipBadRowsCheckBox != null && skipBadRowsCheckBox.isChecked();
+                    boolean renderThread = renderThreadCheckBox != null && renderThreadCheckBox.isChecked();
+                    navigator.navigateTo(PlotFragment.newInstance(uri, follow, skipBadRows, renderThread));
+                }
             }
     );
 
@@ -38,12 +47,18 @@ public class HomeFragment extends Fragment {
         navigator = (Navigator) requireActivity();
         Button chooseFileButton = view.findViewById(R.id.chooseButton);
         chooseFileButton.setOnClickListener(v -> chooseFileLauncher.launch(null));
+        followCheckBox = view.findViewById(R.id.followCheckBox);
+        skipBadRowsCheckBox = view.findViewById(R.id.skipBadRowsCheckBox);
+        renderThreadCheckBox = view.findViewById(R.id.renderThreadCheckBox);
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
         navigator = null;
+        followCheckBox = null;
+        skipBadRowsCheckBox = null;
+        renderThreadCheckBox = null;
     }
 
     private void toast(@StringRes int messageId) {
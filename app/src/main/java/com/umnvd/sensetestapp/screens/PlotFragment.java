@@ -2,7 +2,9 @@ package com.umnvd.sensetestapp.screens;
 
 import android.net.Uri;
 import android.os.Bundle;
+import android.view.LayoutInflater;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -12,42 +14,71 @@ import androidx.fragment.app.Fragment;
 
 import com.umnvd.sensetestapp.R;
 import com.umnvd.sensetestapp.data.CSVFileReader;
-import com.umnvd.sensetestapp.views.PlotView;
+import com.umnvd.sensetestapp.data.CSVParser;
+import com.umnvd.sensetestapp.views.PlotDisplay;
 
 import java.io.IOException;
 
 public class PlotFragment extends Fragment {
 
     private static final String URI_KEY = "uri";
+    private static final String FOLLOW_KEY = "follow";
+    private static final String SKIP_BAD_ROWS_KEY = "skip_bad_rows";
+    private static final String RENDER_THREAD_KEY = "render_thread";
 
     private CSVFileReader reader;
+    private CSVFileReader.LoadHandle loadHandle;
 
-    public PlotFragment() {
-        super(R.layout.fragment_plot);
+    /**
+     * The plot is drawn on the UI thread by default, or on a render thread if requested.
+     */
+    @Override
+    public View onCreateView(
+            @NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState
+    ) {
+        int layoutId = requireArguments().getBoolean(RENDER_THREAD_KEY)
+                ? R.layout.fragment_plot_surface
+                : R.layout.fragment_plot;
+        return inflater.inflate(layoutId, container, false);
     }
 
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         reader = CSVFileReader.getInstance(requireContext().getApplicationContext());
-        PlotView plotView = view.findViewById(R.id.plotView);
+        PlotDisplay plotView = view.findViewById(R.id.plotView);
         Uri uri = requireArguments().getParcelable(URI_KEY);
-        reader.read(uri, plotView::setPoints, this::toast);
+        CSVParser.BadRowPolicy badRowPolicy = requireArguments().getBoolean(SKIP_BAD_ROWS_KEY)
+                ? CSVParser.BadRowPolicy.SKIP
+                : CSVParser.BadRowPolicy.FAIL;
+        if (requireArguments().getBoolean(FOLLOW_KEY)) {
+            plotView.setFollowLatest(true);
+            loadHandle = reader.follow(uri, badRowPolicy, plotView::appendPoints, this::toast);
+        } else {
+            loadHandle = reader.readProgressively(
+                    uri, badRowPolicy, plotView::appendPoints, null, plotView::setColumnFile, this::toast
+            );
+        }
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        loadHandle.cancel();
+        loadHandle = null;
         reader = null;
     }
 
-    private void toast(@StringRes int messageId) {
-        Toast.makeText(requireContext(), messageId, Toast.LENGTH_SHORT).show();
+    private void toast(@StringRes int messageId, Object... formatArgs) {
+        Toast.makeText(requireContext(), getString(messageId, formatArgs), Toast.LENGTH_SHORT).show();
     }
 
-    public static PlotFragment newInstance(Uri uri) {
+    public static PlotFragment newInstance(Uri uri, boolean follow, boolean skipBadRows, boolean renderThread) {
         Bundle args = new Bundle();
         args.putParcelable(URI_KEY, uri);
+        args.putBoolean(FOLLOW_KEY, follow);
+        args.putBoolean(SKIP_BAD_ROWS_KEY, skipBadRows);
+        args.putBoolean(RENDER_THREAD_KEY, renderThread);
         PlotFragment fragment = new PlotFragment();
         fragment.setArguments(args);
         return fragment;
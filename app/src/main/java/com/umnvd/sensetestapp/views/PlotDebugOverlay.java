@@ -0,0 +1,117 @@
+package com.umnvd.sensetestapp.views;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+import com.umnvd.sensetestapp.metrics.Histogram;
+
+/**
+ * Frame statistics drawn over the plot: the frame rate, the median and the 99th
+ * percentile of the frame time and the count of visible points out of all points.
+ * The statistics are collected over one second windows and the text is only rebuilt
+ * when a window ends, into reused char buffers, so no frame allocates.
+ */
+public class PlotDebugOverlay {
+
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+    private static final int BACKGROUND_COLOR = 0xB0000000;
+    private static final int LINES_COUNT = 3;
+    private static final int MAX_LINE_LENGTH = 64;
+
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint backgroundPaint = new Paint();
+    private final float lineHeight;
+    private final float padding;
+
+    private final Histogram frameTimes = new Histogram();
+    private long windowStartNanos = -1;
+    private int windowFramesCount = 0;
+    private final StringBuilder lineBuilder = new StringBuilder(MAX_LINE_LENGTH);
+    private final char[][] lines = new char[LINES_COUNT][MAX_LINE_LENGTH];
+    private final int[] lineLengths = new int[LINES_COUNT];
+    private float textWidth;
+
+    public PlotDebugOverlay(float textSize) {
+        textPaint.setColor(Color.WHITE);
+        textPaint.setTextSize(textSize);
+        textPaint.setTypeface(Typeface.MONOSPACE);
+        backgroundPaint.setColor(BACKGROUND_COLOR);
+        lineHeight = textPaint.getFontSpacing();
+        padding = textSize / 2f;
+        setLine(0, lineBuilder.append("FPS -"));
+        setLine(1, lineBuilder.append("Frame p50 -, p99 -"));
+        setLine(2, lineBuilder.append("Points -"));
+        measureText();
+    }
+
+    /**
+     * @param frameTimeNanos vsync time of the frame
+     * @param workNanos      time spent producing the frame
+     */
+    public void onFrame(long frameTimeNanos, long workNanos, int visiblePointsCount, int pointsCount) {
+        if (windowStartNanos < 0) windowStartNanos = frameTimeNanos;
+        frameTimes.record(workNanos);
+        windowFramesCount++;
+
+        long windowNanos = frameTimeNanos - windowStartNanos;
+        if (windowNanos < WINDOW_NANOS) return;
+        lineBuilder.append("FPS ");
+        appendTenths(windowFramesCount * (double) WINDOW_NANOS / windowNanos);
+        setLine(0, lineBuilder);
+        lineBuilder.append("Frame p50 ");
+        appendTenths(frameTimes.getPercentile(50) / NANOS_PER_MILLI);
+        lineBuilder.append(" ms, p99 ");
+        appendTenths(frameTimes.getPercentile(99) / NANOS_PER_MILLI);
+        setLine(1, lineBuilder.append(" ms"));
+        setLine(2, lineBuilder.append("Points ").append(visiblePointsCount).append(" / ").append(pointsCount));
+        measureText();
+        frameTimes.reset();
+        windowFramesCount = 0;
+        windowStartNanos = frameTimeNanos;
+    }
+
+    public void draw(Canvas canvas, float left, float top) {
+        canvas.drawRect(
+                left,
+                top,
+                left + textWidth + 2 * padding,
+                top + lines.length * lineHeight + 2 * padding,
+                backgroundPaint
+        );
+        float baseline = top + padding - textPaint.ascent();
+        for (int i = 0; i < LINES_COUNT; i++) {
+            canvas.drawText(lines[i], 0, lineLengths[i], left + padding, baseline, textPaint);
+            baseline += lineHeight;
+        }
+    }
+
+    /**
+     * Appends a non-negative {@code value} with one decimal, without the allocations of
+     * formatting a double.
+     */
+    private void appendTenths(double value) {
+        long tenths = Math.round(value * 10);
+        lineBuilder.append(tenths / 10).append('.').append(tenths % 10);
+    }
+
+    /**
+     * Moves the text of {@code builder} into the line and clears it.
+     */
+    private void setLine(int index, StringBuilder builder) {
+        int length = Math.min(builder.length(), MAX_LINE_LENGTH);
+        builder.getChars(0, length, lines[index], 0);
+        lineLengths[index] = length;
+        builder.setLength(0);
+    }
+
+    private void measureText() {
+        textWidth = 0;
+        for (int i = 0; i < LINES_COUNT; i++) {
+            textWidth = Math.max(textWidth, textPaint.measureText(lines[i], 0, lineLengths[i]));
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.umnvd.sensetestapp.views;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import com.umnvd.sensetestapp.data.ColumnFile;
+import com.umnvd.sensetestapp.models.PointSeries;
+
+/**
+ * Data and options of a plot view, implemented by {@link PlotView} which draws on the UI
+ * thread and by {@link SurfacePlotView} which draws on a render thread.
+ */
+@MainThread
+public interface PlotDisplay {
+
+    /**
+     * Plots {@code points}, which must not be modified afterwards. A sorted series is kept
+     * as it is and only copied once rows are appended to it.
+     */
+    void setPoints(@NonNull PointSeries points);
+
+    void appendPoints(@NonNull PointSeries points);
+
+    /**
+     * Plots a file too large for the heap, only its overview and the pages in view are
+     * read into it, on a background thread as the plot is panned and zoomed.
+     */
+    void setColumnFile(@NonNull ColumnFile columnFile);
+
+    /**
+     * Keeps the newest x in view while points are appended, as long as the plot is
+     * scrolled to its end.
+     */
+    void setFollowLatest(boolean followLatest);
+
+    void setAutoFitY(boolean autoFitY);
+
+    /**
+     * Shows the frame rate, the frame time percentiles and the visible point count over
+     * the plot.
+     */
+    void setDebugOverlayShown(boolean isShown);
+
+}
@@ -0,0 +1,945 @@
+package com.umnvd.sensetestapp.views;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+
+import androidx.annotation.Nullable;
+
+import com.umnvd.sensetestapp.R;
+import com.umnvd.sensetestapp.data.ColumnFile;
+import com.umnvd.sensetestapp.models.DataPoint;
+import com.umnvd.sensetestapp.models.DecimationPyramid;
+import com.umnvd.sensetestapp.models.PointSeries;
+import com.umnvd.sensetestapp.models.ValueFormat;
+
+import java.util.Arrays;
+
+/**
+ * Plot state and drawing shared by {@link PlotView} and {@link SurfacePlotView}. Not
+ * thread-safe, it is confined to the thread its view draws on.
+ */
+public class PlotRenderer {
+
+    private static final float MIN_SCALE = 1f;
+    private static final float MAX_TRANSLATION_X = 0f;
+    private static final float MIN_TRANSLATION_Y = 0f;
+    private static final int MAX_MEASURED_STEPS = 100;
+    private static final int GRAPH_SEGMENTS_BUFFER_SIZE = 4096;
+    private static final float AUTO_FIT_MARGIN = 0.05f;
+    private static final double AUTO_FIT_TIME_CONSTANT_NANOS = 80_000_000d;
+    private static final long DEFAULT_FRAME_TIME_NANOS = 16_666_667L;
+
+    private float textSize;
+    private int axesColor;
+    private int gridColor;
+    private int graphColor;
+    private int[] seriesColors;
+    private int textColor;
+    private float axesWidth;
+    private float gridWidth;
+    private float graphWidth;
+    private boolean autoFitY;
+    private boolean followLatest;
+
+    private PointSeries graphSeries = new PointSeries(0);
+    // Whether graphSeries is a copy of the renderer's own, rows are merged only into a copy.
+    private boolean isGraphSeriesOwned = true;
+    private int seriesCount = 0;
+    private final DecimationPyramid graphPyramid = new DecimationPyramid();
+    private int visibleStartIndex = 0;
+    private int visibleEndIndex = 0;
+    private double visibleMinX;
+    private double visibleMaxX;
+
+    @Nullable
+    private ColumnFile columnFile;
+    private ColumnFile.Range loadedRange;
+    @Nullable
+    private ColumnFile.Range requestedRange;
+
+    private final GraphDecimator graphDecimator = new GraphDecimator(graphPyramid);
+    private final GraphDecimator.SegmentConsumer graphSegmentConsumer = this::drawGraphSegment;
+    private Canvas drawCanvas;
+    private float[] drawTransformValues;
+    private float[][] graphSegments = new float[0][];
+    private int[] graphSegmentsCounts = new int[0];
+    private long drawnSegmentsCount = 0;
+    private final TickGenerator xTicks = new TickGenerator();
+    private final TickGenerator yTicks = new TickGenerator();
+
+    private double fittedMinY = Double.NaN;
+    private double fittedMaxY = Double.NaN;
+    private double targetMinY;
+    private double targetMaxY;
+    private long lastAnimationTimeNanos = -1;
+
+    private final PlotTileCache tileCache;
+    private final Canvas tileCanvas = new Canvas();
+    private final RectF tileRect = new RectF(0f, 0f, PlotTileCache.TILE_SIZE, PlotTileCache.TILE_SIZE);
+    private final Matrix tileTransform = new Matrix();
+    private final float[] tileTransformValues = new float[9];
+    private final Paint tilePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect gridBounds = new Rect();
+    private int[] pendingTiles = new int[32];
+    private int pendingTilesCount = 0;
+    private boolean isScaling = false;
+
+    private DataPoint minAxesPoint;
+    private DataPoint maxAxesPoint;
+
+    private int width;
+    private int height;
+    private int paddingLeft;
+    private int paddingTop;
+    private int paddingRight;
+    private int paddingBottom;
+    private final RectF plotRect = new RectF();
+    private float stepX;
+    private float stepY;
+    private final Matrix plotTransform = new Matrix();
+    private final float[] plotTransformValues = new float[9];
+
+    private long xAxisShift = 0;
+    private long yAxisShift = 0;
+
+    private float maxXTextWidth;
+    private float maxYTextWidth;
+    private float textCenterDeviation;
+
+    private float scale = MIN_SCALE;
+    private float maxScale = MIN_SCALE;
+    private float translationX = MAX_TRANSLATION_X;
+    private float translationY = MIN_TRANSLATION_Y;
+
+    private final Paint axesPaint = new Paint();
+    private final Paint gridPaint = new Paint();
+    private Paint[] graphPaints = new Paint[0];
+    private final Paint xLabelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint yLabelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final char[] labelChars = new char[24];
+    private final LabelFormatter xLabelFormatter = new LabelFormatter();
+    private final LabelFormatter yLabelFormatter = new LabelFormatter();
+
+    private final float maxGridStep;
+
+    public PlotRenderer(Context context, @Nullable AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        maxGridStep = context.getResources().getDisplayMetrics().density * 100f;
+        tileCache = new PlotTileCache(context);
+        initAttributes(context, attrs, defStyleAttr, defStyleRes);
+        configurePaints();
+    }
+
+    public void setPoints(PointSeries points) {
+        columnFile = null;
+        loadedRange = null;
+        requestedRange = null;
+        // The reader delivers sorted series, which are plotted without being copied.
+        PointSeries dataPoints = points;
+        isGraphSeriesOwned = !points.isSortedByX();
+        if (isGraphSeriesOwned) {
+            dataPoints = points.copy();
+            dataPoints.sortByX();
+        }
+
+        setUpFormats(dataPoints.getXFormat(), dataPoints.getYFormat());
+        setUpBounds(getMinAxesPoint(dataPoints), getMaxAxesPoint(dataPoints));
+        setUpGraphPoints(dataPoints);
+        updatePlotSize();
+        if (followLatest) scrollToLatest();
+        clearTiles();
+    }
+
+    /**
+     * Plots a file too large for the heap. Its overview is drawn until the rows of the
+     * visible range, returned by {@link #getMissingRange()}, are loaded with
+     * {@link #setColumnFileRows(ColumnFile, ColumnFile.Range, PointSeries)}.
+     */
+    public void setColumnFile(ColumnFile columnFile) {
+        this.columnFile = columnFile;
+        loadedRange = columnFile.getOverviewRange();
+        requestedRange = null;
+
+        setUpFormats(columnFile.getXFormat(), columnFile.getYFormat());
+        setUpBounds(
+                new DataPoint(columnFile.getFirstX(), columnFile.getMinY()),
+                new DataPoint(columnFile.getLastX(), columnFile.getMaxY())
+        );
+        setUpGraphPoints(columnFile.getOverview());
+        updatePlotSize();
+        clearTiles();
+    }
+
+    @Nullable
+    public ColumnFile getColumnFile() {
+        return columnFile;
+    }
+
+    /**
+     * Returns the pages of the column file to load for the visible x-range, or null if
+     * the loaded rows already cover it. The range is wider than the visible one, so that
+     * it is requested again only once the plot was panned or zoomed past it.
+     */
+    @Nullable
+    public ColumnFile.Range getMissingRange() {
+        if (columnFile == null || plotRect.isEmpty()) return null;
+        ColumnFile.Range visibleRange = columnFile.getVisibleRange(visibleMinX, visibleMaxX);
+        if (loadedRange.contains(visibleRange)) return null;
+        if (requestedRange == null || !requestedRange.contains(visibleRange)) {
+            requestedRange = columnFile.extend(visibleRange);
+        }
+        return requestedRange;
+    }
+
+    /**
+     * Replaces the drawn rows with the ones read for {@code range}, unless another file was
+     * set since they were requested.
+     */
+    public void setColumnFileRows(ColumnFile columnFile, ColumnFile.Range range, PointSeries rows) {
+        if (columnFile != this.columnFile || rows.isEmpty()) return;
+        loadedRange = range;
+        if (range.equals(requestedRange)) requestedRange = null;
+        setUpGraphPoints(rows);
+    }
+
+    public boolean appendPoints(PointSeries points) {
+        if (points.isEmpty()) return false;
+        if (graphSeries.isEmpty() || columnFile != null) {
+            setPoints(points);
+            return true;
+        }
+
+        boolean isPinnedToLatest = followLatest && translationX <= getMinTranslationX() + 0.5f;
+        ValueFormat previousXFormat = graphSeries.getXFormat();
+        ValueFormat previousYFormat = graphSeries.getYFormat();
+        if (!isGraphSeriesOwned) {
+            graphSeries = graphSeries.copy();
+            graphPyramid.build(graphSeries);
+            isGraphSeriesOwned = true;
+        }
+        PointSeries batch = points;
+        if (!batch.isSortedByX()) {
+            batch = points.copy();
+            batch.sortByX();
+        }
+        // The rows may come in wider formats than the plotted ones, which are rescaled then.
+        // Rescaling keeps the order of the values and so the indices of the pyramid.
+        int firstChangedIndex = graphSeries.merge(batch);
+        graphPyramid.update(firstChangedIndex);
+        boolean isFormatChanged = !graphSeries.getXFormat().equals(previousXFormat)
+                || !graphSeries.getYFormat().equals(previousYFormat);
+        if (isFormatChanged) setUpFormats(graphSeries.getXFormat(), graphSeries.getYFormat());
+
+        long minX = graphSeries.getX(0);
+        long maxX = graphSeries.getX(graphSeries.size() - 1);
+        long minY = graphSeries.getMinY();
+        long maxY = graphSeries.getMaxY();
+
+        boolean isBoundsChanged = isFormatChanged || minX != minAxesPoint.x || maxX != maxAxesPoint.x
+                || minY != minAxesPoint.y || maxY != maxAxesPoint.y;
+        if (isBoundsChanged) setUpBounds(new DataPoint(minX, minY), new DataPoint(maxX, maxY));
+
+        if (isBoundsChanged) updatePlotSize();
+        else updateVisibleRange();
+        if (isPinnedToLatest) scrollToLatest();
+        clearTiles();
+        return isBoundsChanged;
+    }
+
+    public int getMeasuredWidth() {
+        return (int) (maxGridStep * getMeasuredStepsCount(getXRange()));
+    }
+
+    public int getMeasuredHeight() {
+        return (int) (maxGridStep * getMeasuredStepsCount(getYRange()));
+    }
+
+    public void setSize(
+            int width, int height, int paddingLeft, int paddingTop, int paddingRight, int paddingBottom
+    ) {
+        this.width = width;
+        this.height = height;
+        this.paddingLeft = paddingLeft;
+        this.paddingTop = paddingTop;
+        this.paddingRight = paddingRight;
+        this.paddingBottom = paddingBottom;
+        updatePlotSize();
+        clearTiles();
+    }
+
+    public void translateBy(float dx, float dy) {
+        translationX += dx;
+        translationY += dy;
+        updatePlot();
+    }
+
+    public void scaleBy(float scaleFactor, float focusX, float focusY) {
+        float prevScale = scale;
+        float prevTranslationX = translationX;
+        float prevTranslationY = translationY;
+
+        scale = coerceIn(MIN_SCALE, scale * scaleFactor, maxScale);
+        translationX = (focusX - plotRect.left)
+                + (prevTranslationX + plotRect.left - focusX) * scale / prevScale;
+        translationY = (focusY - plotRect.bottom)
+                + (prevTranslationY + plotRect.bottom - focusY) * scale / prevScale;
+
+        updatePlot();
+    }
+
+    public void setTransform(float scale, float translationX, float translationY) {
+        this.scale = scale;
+        this.translationX = translationX;
+        this.translationY = translationY;
+        if (width > 0 && height > 0) updatePlot();
+    }
+
+    /**
+     * Keeps the newest x at the right edge while points are appended, unless the plot
+     * was scrolled away from it.
+     */
+    public void setFollowLatest(boolean followLatest) {
+        this.followLatest = followLatest;
+        if (followLatest && width > 0 && height > 0) scrollToLatest();
+    }
+
+    /**
+     * Fits the y-axis to the points in the visible x-range instead of the whole series,
+     * vertical pan and zoom are ignored meanwhile.
+     */
+    public void setAutoFitY(boolean autoFitY) {
+        if (this.autoFitY == autoFitY) return;
+        this.autoFitY = autoFitY;
+        fittedMinY = Double.NaN;
+        fittedMaxY = Double.NaN;
+        if (width > 0 && height > 0) updatePlot();
+    }
+
+    /**
+     * Moves the fitted y-range towards the visible points.
+     *
+     * @return whether the range is still animating and another frame is needed
+     */
+    public boolean advanceAnimation(long frameTimeNanos) {
+        if (!autoFitY || Double.isNaN(fittedMinY)) {
+            lastAnimationTimeNanos = -1;
+            return false;
+        }
+
+        long elapsedNanos = lastAnimationTimeNanos < 0
+                ? DEFAULT_FRAME_TIME_NANOS
+                : frameTimeNanos - lastAnimationTimeNanos;
+        double fraction = 1d - Math.exp(-elapsedNanos / AUTO_FIT_TIME_CONSTANT_NANOS);
+        fittedMinY += (targetMinY - fittedMinY) * fraction;
+        fittedMaxY += (targetMaxY - fittedMaxY) * fraction;
+
+        double pixelsPerUnitY = getFittedPixelsPerUnitY();
+        boolean isFitted = Math.abs(targetMinY - fittedMinY) * pixelsPerUnitY < 0.5d
+                && Math.abs(targetMaxY - fittedMaxY) * pixelsPerUnitY < 0.5d;
+        if (isFitted) {
+            fittedMinY = targetMinY;
+            fittedMaxY = targetMaxY;
+        }
+        lastAnimationTimeNanos = isFitted ? -1 : frameTimeNanos;
+
+        updatePlotTransform();
+        updateTicks();
+        return !isFitted;
+    }
+
+    /**
+     * While scaling, missing tiles are not queued since the scale may change by the next
+     * frame, tiles of the nearest cached scale are stretched instead.
+     */
+    public void setScaling(boolean isScaling) {
+        this.isScaling = isScaling;
+    }
+
+    public boolean hasPendingTiles() {
+        return pendingTilesCount > 0;
+    }
+
+    public void renderPendingTiles(long deadlineNanos) {
+        for (int i = 0; i < pendingTilesCount; i++) {
+            int column = pendingTiles[i * 2];
+            int row = pendingTiles[i * 2 + 1];
+            if (tileCache.get(scale, column, row) == null) renderTile(scale, column, row);
+            if (System.nanoTime() >= deadlineNanos) break;
+        }
+        pendingTilesCount = 0;
+    }
+
+    public boolean isOnPlot(float x, float y) {
+        return plotRect.contains(x, y);
+    }
+
+    public RectF getPlotRect() {
+        return plotRect;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    public float getTranslationX() {
+        return translationX;
+    }
+
+    public float getTranslationY() {
+        return translationY;
+    }
+
+    public int getPointsCount() {
+        return graphSeries.size();
+    }
+
+    public int getVisiblePointsCount() {
+        return visibleEndIndex - visibleStartIndex;
+    }
+
+    /**
+     * Count of graph line segments drawn since the renderer was created, into frames and
+     * tiles. Each of them had its two ends transformed to the screen.
+     */
+    public long getDrawnSegmentsCount() {
+        return drawnSegmentsCount;
+    }
+
+    public void draw(Canvas canvas) {
+        int clipRestoreCount = canvas.save();
+        canvas.clipRect(plotRect);
+        drawContent(canvas);
+        canvas.restoreToCount(clipRestoreCount);
+        drawAxesAndMarks(canvas);
+    }
+
+    private void initAttributes(
+            Context context, @Nullable AttributeSet attrs, int defStyleAttr, int defStyleRes
+    ) {
+        TypedArray typedArray = context.obtainStyledAttributes(
+                attrs, R.styleable.PlotView, defStyleAttr, defStyleRes
+        );
+
+        textSize = typedArray.getDimension(R.styleable.PlotView_textSize, 48f);
+        axesColor = typedArray.getColor(R.styleable.PlotView_axesColor, Color.BLACK);
+        gridColor = typedArray.getColor(R.styleable.PlotView_gridColor, Color.LTGRAY);
+        graphColor = typedArray.getColor(R.styleable.PlotView_graphColor, Color.BLUE);
+        seriesColors = getColors(context, typedArray.getResourceId(R.styleable.PlotView_seriesColors, 0));
+        textColor = typedArray.getColor(R.styleable.PlotView_textColor, Color.BLACK);
+        axesWidth = typedArray.getDimension(R.styleable.PlotView_axesWidth, 8f);
+        gridWidth = typedArray.getDimension(R.styleable.PlotView_gridWidth, 4f);
+        graphWidth = typedArray.getDimension(R.styleable.PlotView_graphWidth, 8f);
+        autoFitY = typedArray.getBoolean(R.styleable.PlotView_autoFitY, false);
+
+        typedArray.recycle();
+    }
+
+    private void configurePaints() {
+        axesPaint.setColor(axesColor);
+        axesPaint.setStyle(Paint.Style.STROKE);
+        axesPaint.setStrokeWidth(axesWidth);
+
+        gridPaint.setColor(gridColor);
+        gridPaint.setStyle(Paint.Style.STROKE);
+        gridPaint.setStrokeWidth(gridWidth);
+
+        xLabelPaint.setColor(textColor);
+        xLabelPaint.setStyle(Paint.Style.FILL);
+        xLabelPaint.setTextSize(textSize);
+        xLabelPaint.setTextAlign(Paint.Align.CENTER);
+
+        yLabelPaint.set(xLabelPaint);
+        yLabelPaint.setTextAlign(Paint.Align.RIGHT);
+    }
+
+    private int[] getColors(Context context, int arrayId) {
+        if (arrayId == 0) return new int[0];
+        TypedArray array = context.getResources().obtainTypedArray(arrayId);
+        int[] colors = new int[array.length()];
+        for (int i = 0; i < colors.length; i++) colors[i] = array.getColor(i, graphColor);
+        array.recycle();
+        return colors;
+    }
+
+    /**
+     * The first series is drawn with {@code graphColor}, the others cycle through
+     * {@code seriesColors}.
+     */
+    private int getSeriesColor(int series) {
+        if (series == 0 || seriesColors.length == 0) return graphColor;
+        return seriesColors[(series - 1) % seriesColors.length];
+    }
+
+    private void setUpSeriesState(int count) {
+        if (seriesCount == count) return;
+        seriesCount = count;
+        graphPaints = new Paint[count];
+        graphSegments = new float[count][GRAPH_SEGMENTS_BUFFER_SIZE * 4];
+        graphSegmentsCounts = new int[count];
+        for (int series = 0; series < count; series++) {
+            Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paint.setColor(getSeriesColor(series));
+            paint.setStyle(Paint.Style.STROKE);
+            paint.setStrokeWidth(graphWidth);
+            graphPaints[series] = paint;
+        }
+    }
+
+    private void setUpFormats(ValueFormat xFormat, ValueFormat yFormat) {
+        xLabelFormatter.setFormat(xFormat);
+        yLabelFormatter.setFormat(yFormat);
+        boolean isXTime = xFormat.getType() == ValueFormat.Type.TIMESTAMP;
+        boolean isYTime = yFormat.getType() == ValueFormat.Type.TIMESTAMP;
+        xTicks.setTime(isXTime);
+        yTicks.setTime(isYTime);
+    }
+
+    private void setUpBounds(DataPoint minAxesPoint, DataPoint maxAxesPoint) {
+        this.minAxesPoint = minAxesPoint;
+        this.maxAxesPoint = maxAxesPoint;
+        xAxisShift = minAxesPoint.x;
+        yAxisShift = minAxesPoint.y;
+
+        calculateTextSizes(minAxesPoint, maxAxesPoint);
+    }
+
+    private DataPoint getMinAxesPoint(PointSeries dataPoints) {
+        return new DataPoint(dataPoints.getX(0), dataPoints.getMinY());
+    }
+
+    private DataPoint getMaxAxesPoint(PointSeries dataPoints) {
+        return new DataPoint(dataPoints.getX(dataPoints.size() - 1), dataPoints.getMaxY());
+    }
+
+    private long getXRange() {
+        return minAxesPoint == null ? 0 : (long) maxAxesPoint.x - minAxesPoint.x;
+    }
+
+    private long getYRange() {
+        return minAxesPoint == null ? 0 : (long) maxAxesPoint.y - minAxesPoint.y;
+    }
+
+    private int getMeasuredStepsCount(long range) {
+        return (int) Math.min(range + 1, MAX_MEASURED_STEPS);
+    }
+
+    private void setUpGraphPoints(PointSeries dataPoints) {
+        graphSeries = dataPoints;
+        graphPyramid.build(dataPoints);
+        setUpSeriesState(dataPoints.getYColumnsCount());
+        updateVisibleRange();
+    }
+
+    private void calculateTextSizes(DataPoint minAxesPoint, DataPoint maxAxesPoint) {
+        maxXTextWidth = Math.max(
+                measureLabel(minAxesPoint.x, xLabelFormatter, xLabelPaint),
+                measureLabel(maxAxesPoint.x, xLabelFormatter, xLabelPaint)
+        );
+        maxYTextWidth = Math.max(
+                measureLabel(minAxesPoint.y, yLabelFormatter, yLabelPaint),
+                measureLabel(maxAxesPoint.y, yLabelFormatter, yLabelPaint)
+        );
+
+        Paint.FontMetrics fontMetrics = xLabelPaint.getFontMetrics();
+        textCenterDeviation = (fontMetrics.descent + fontMetrics.ascent) / 2f;
+    }
+
+    private void updatePlotSize() {
+        if (width <= 0 || height <= 0) return;
+        float plotLeftPadding = (textSize / 2f) + maxYTextWidth;
+        float plotTopPadding = textSize / 1.5f;
+        float plotRightPadding = maxXTextWidth / 1.5f;
+        float plotBottomPadding = (textSize / 2f) + textSize;
+
+        plotRect.set(
+                paddingLeft + plotLeftPadding,
+                paddingTop + plotTopPadding,
+                width - paddingRight - plotRightPadding,
+                height - paddingBottom - plotBottomPadding
+        );
+
+        stepX = plotRect.width() / Math.max(getXRange(), 1);
+        stepY = plotRect.height() / Math.max(getYRange(), 1);
+        maxScale = maxGridStep / Math.min(stepX, stepY);
+
+        updatePlot();
+    }
+
+    private void updatePlot() {
+        restrictTranslations();
+
+        updateVisibleRange();
+        updatePlotTransform();
+        updateTicks();
+    }
+
+    private void updatePlotTransform() {
+        if (autoFitY) {
+            float pixelsPerUnitY = (float) getFittedPixelsPerUnitY();
+            plotTransform.setScale(stepX * scale, -pixelsPerUnitY);
+            plotTransform.postTranslate(
+                    plotRect.left + translationX,
+                    plotRect.bottom + (float) ((fittedMinY - yAxisShift) * pixelsPerUnitY)
+            );
+        } else {
+            plotTransform.setScale(stepX * scale, -stepY * scale);
+            plotTransform.postTranslate(plotRect.left + translationX, plotRect.bottom + translationY);
+        }
+        plotTransform.getValues(plotTransformValues);
+    }
+
+    private double getFittedPixelsPerUnitY() {
+        return plotRect.height() / Math.max(fittedMaxY - fittedMinY, 1d);
+    }
+
+    private void updateFitTarget() {
+        if (!autoFitY || visibleEndIndex <= visibleStartIndex) return;
+        long minY = Long.MAX_VALUE;
+        long maxY = Long.MIN_VALUE;
+        for (int series = 0; series < seriesCount; series++) {
+            int minIndex = graphPyramid.getRangeMinIndex(series, visibleStartIndex, visibleEndIndex);
+            int maxIndex = graphPyramid.getRangeMaxIndex(series, visibleStartIndex, visibleEndIndex);
+            minY = Math.min(minY, graphSeries.getY(series, minIndex));
+            maxY = Math.max(maxY, graphSeries.getY(series, maxIndex));
+        }
+        double margin = Math.max((double) maxY - minY, 1d) * AUTO_FIT_MARGIN;
+        targetMinY = minY - margin;
+        targetMaxY = maxY + margin;
+        if (Double.isNaN(fittedMinY)) {
+            fittedMinY = targetMinY;
+            fittedMaxY = targetMaxY;
+        }
+    }
+
+    private void updateVisibleRange() {
+        double pixelsPerUnitX = stepX * scale;
+        visibleMinX = xAxisShift - translationX / pixelsPerUnitX;
+        visibleMaxX = xAxisShift + (plotRect.width() - translationX) / pixelsPerUnitX;
+        if (!(pixelsPerUnitX > 0) || Double.isInfinite(pixelsPerUnitX)) {
+            visibleStartIndex = 0;
+            visibleEndIndex = graphSeries.size();
+            return;
+        }
+
+        int startIndex = graphSeries.lowerBoundX((long) Math.floor(visibleMinX));
+        int endIndex = graphSeries.upperBoundX((long) Math.ceil(visibleMaxX));
+        visibleStartIndex = Math.max(startIndex - 1, 0);
+        visibleEndIndex = Math.min(endIndex + 1, graphSeries.size());
+        updateFitTarget();
+    }
+
+    private void updateTicks() {
+        if (minAxesPoint == null) return;
+        double pixelsPerUnitX = stepX * scale;
+        double pixelsPerUnitY = autoFitY ? getFittedPixelsPerUnitY() : stepY * scale;
+        double visibleMinY = autoFitY ? fittedMinY : yAxisShift + translationY / pixelsPerUnitY;
+        double visibleMaxY = autoFitY
+                ? fittedMaxY
+                : yAxisShift + (plotRect.height() + translationY) / pixelsPerUnitY;
+
+        xTicks.update(
+                visibleMinX,
+                visibleMaxX,
+                pixelsPerUnitX,
+                maxXTextWidth * 1.25f,
+                minAxesPoint.x,
+                maxAxesPoint.x
+        );
+        yTicks.update(
+                visibleMinY,
+                visibleMaxY,
+                pixelsPerUnitY,
+                textSize * 1.25f,
+                minAxesPoint.y,
+                maxAxesPoint.y
+        );
+    }
+
+    private float toScreenX(long x) {
+        return toScreenX(x, plotTransformValues);
+    }
+
+    private float toScreenY(long y) {
+        return toScreenY(y, plotTransformValues);
+    }
+
+    // Offsets from the axis shifts are kept as long and double up to the screen coordinate,
+    // a float offset can't tell apart the rows of a timestamp or a large integer axis.
+    private float toScreenX(long x, float[] transformValues) {
+        return (float) ((double) (x - xAxisShift) * transformValues[Matrix.MSCALE_X]
+                + transformValues[Matrix.MTRANS_X]);
+    }
+
+    private float toScreenY(long y, float[] transformValues) {
+        return (float) ((double) (y - yAxisShift) * transformValues[Matrix.MSCALE_Y]
+                + transformValues[Matrix.MTRANS_Y]);
+    }
+
+    private float getContentHeight() {
+        return plotRect.height() * scale;
+    }
+
+    private void drawContent(Canvas canvas) {
+        pendingTilesCount = 0;
+        if (graphSeries.isEmpty() || plotRect.isEmpty()) return;
+
+        // The grid is drawn over the tiles' area each frame, so that it stays in line
+        // with the axis labels whichever tiles are drawn.
+        drawGrid(canvas, xTicks, yTicks, plotTransformValues);
+        int tileSize = PlotTileCache.TILE_SIZE;
+        float contentLeft = -translationX;
+        float contentTop = getContentHeight() - plotRect.height() - translationY;
+        int firstColumn = (int) Math.floor(contentLeft / tileSize);
+        int lastColumn = (int) Math.ceil((contentLeft + plotRect.width()) / tileSize) - 1;
+        int firstRow = (int) Math.floor(contentTop / tileSize);
+        int lastRow = (int) Math.ceil((contentTop + plotRect.height()) / tileSize) - 1;
+        // Tiles assume a fixed vertical mapping, which auto-fit changes while panning,
+        // and fixed rows, which change with the loaded pages of a column file.
+        if (autoFitY || columnFile != null || !tileCache.canHold((lastColumn - firstColumn + 1) * (lastRow - firstRow + 1))) {
+            drawGraph(canvas, plotRect, visibleStartIndex, visibleEndIndex, plotTransformValues);
+            return;
+        }
+
+        // Tiles are rendered at the exact scale, so that lines keep their width. A missing
+        // tile is queued and stood in for by the tiles of the nearest cached scale meanwhile.
+        float originX = Math.round(plotRect.left - contentLeft);
+        float originY = Math.round(plotRect.top - contentTop);
+        float standInZoom = tileCache.getNearestZoomLevel(scale);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                Bitmap tile = tileCache.get(scale, column, row);
+                if (tile != null) {
+                    canvas.drawBitmap(tile, originX + column * tileSize, originY + row * tileSize, tilePaint);
+                    continue;
+                }
+                if (!isScaling) addPendingTile(column, row);
+                if (!Float.isNaN(standInZoom)) {
+                    drawStandInTiles(canvas, standInZoom, originX, originY, column, row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the tiles of {@code zoom} stretched over the tile at {@code column} and
+     * {@code row} of the current scale.
+     */
+    private void drawStandInTiles(Canvas canvas, float zoom, float originX, float originY, int column, int row) {
+        int tileSize = PlotTileCache.TILE_SIZE;
+        float ratio = scale / zoom;
+        int firstColumn = (int) Math.floor(column / ratio);
+        int lastColumn = (int) Math.ceil((column + 1) / ratio) - 1;
+        int firstRow = (int) Math.floor(row / ratio);
+        int lastRow = (int) Math.ceil((row + 1) / ratio) - 1;
+
+        int restoreCount = canvas.save();
+        canvas.translate(originX, originY);
+        canvas.clipRect(column * tileSize, row * tileSize, (column + 1) * tileSize, (row + 1) * tileSize);
+        canvas.scale(ratio, ratio);
+        for (int standInRow = firstRow; standInRow <= lastRow; standInRow++) {
+            for (int standInColumn = firstColumn; standInColumn <= lastColumn; standInColumn++) {
+                Bitmap tile = tileCache.get(zoom, standInColumn, standInRow);
+                if (tile != null) {
+                    canvas.drawBitmap(tile, standInColumn * tileSize, standInRow * tileSize, tilePaint);
+                }
+            }
+        }
+        canvas.restoreToCount(restoreCount);
+    }
+
+    private void renderTile(float zoom, int column, int row) {
+        int tileSize = PlotTileCache.TILE_SIZE;
+        float tileLeft = (float) column * tileSize;
+        float tileTop = (float) row * tileSize;
+        float contentHeight = plotRect.height() * zoom;
+        tileTransform.setScale(stepX * zoom, -stepY * zoom);
+        tileTransform.postTranslate(-tileLeft, contentHeight - tileTop);
+        tileTransform.getValues(tileTransformValues);
+
+        double pixelsPerUnitX = stepX * zoom;
+        float margin = graphWidth;
+        double minX = xAxisShift + (tileLeft - margin) / pixelsPerUnitX;
+        double maxX = xAxisShift + (tileLeft + tileSize + margin) / pixelsPerUnitX;
+        int startIndex = graphSeries.lowerBoundX((long) Math.floor(minX));
+        int endIndex = graphSeries.upperBoundX((long) Math.ceil(maxX));
+
+        Bitmap tile = tileCache.obtainTile();
+        tileCanvas.setBitmap(tile);
+        drawGraph(
+                tileCanvas,
+                tileRect,
+                Math.max(startIndex - 1, 0),
+                Math.min(endIndex + 1, graphSeries.size()),
+                tileTransformValues
+        );
+        tileCanvas.setBitmap(null);
+        tileCache.put(zoom, column, row, tile);
+    }
+
+    private void addPendingTile(int column, int row) {
+        if (pendingTiles.length < (pendingTilesCount + 1) * 2) {
+            pendingTiles = Arrays.copyOf(pendingTiles, pendingTiles.length * 2);
+        }
+        pendingTiles[pendingTilesCount * 2] = column;
+        pendingTiles[pendingTilesCount * 2 + 1] = row;
+        pendingTilesCount++;
+    }
+
+    private void clearTiles() {
+        tileCache.clear();
+        pendingTilesCount = 0;
+    }
+
+    private void drawGrid(Canvas canvas, TickGenerator xTicks, TickGenerator yTicks, float[] transformValues) {
+        Rect bounds = gridBounds;
+        canvas.getClipBounds(bounds);
+        for (int i = 0; i < xTicks.getCount(); i++) {
+            float x = toScreenX(xTicks.getTick(i), transformValues);
+            canvas.drawLine(x, bounds.top, x, bounds.bottom, gridPaint);
+        }
+
+        for (int i = 0; i < yTicks.getCount(); i++) {
+            float y = toScreenY(yTicks.getTick(i), transformValues);
+            canvas.drawLine(bounds.left, y, bounds.right, y, gridPaint);
+        }
+    }
+
+    private void drawGraph(
+            Canvas canvas,
+            RectF rect,
+            int startIndex,
+            int endIndex,
+            float[] transformValues
+    ) {
+        if (endIndex <= startIndex) return;
+        drawCanvas = canvas;
+        drawTransformValues = transformValues;
+        graphDecimator.decimate(
+                xAxisShift,
+                startIndex,
+                endIndex,
+                rect.width(),
+                transformValues[Matrix.MSCALE_X],
+                transformValues[Matrix.MTRANS_X],
+                graphSegmentConsumer
+        );
+        for (int series = 0; series < seriesCount; series++) flushGraphSegments(canvas, series);
+        drawCanvas = null;
+    }
+
+    private void drawGraphSegment(int series, int fromIndex, int toIndex) {
+        float[] segments = graphSegments[series];
+        float[] transformValues = drawTransformValues;
+        int offset = graphSegmentsCounts[series] * 4;
+        segments[offset] = toScreenX(graphSeries.getX(fromIndex), transformValues);
+        segments[offset + 1] = toScreenY(graphSeries.getY(series, fromIndex), transformValues);
+        segments[offset + 2] = toScreenX(graphSeries.getX(toIndex), transformValues);
+        segments[offset + 3] = toScreenY(graphSeries.getY(series, toIndex), transformValues);
+        if (++graphSegmentsCounts[series] == GRAPH_SEGMENTS_BUFFER_SIZE) flushGraphSegments(drawCanvas, series);
+    }
+
+    private void flushGraphSegments(Canvas canvas, int series) {
+        int count = graphSegmentsCounts[series];
+        if (count == 0) return;
+        float[] segments = graphSegments[series];
+        canvas.drawLines(segments, 0, count * 4, graphPaints[series]);
+        graphSegmentsCounts[series] = 0;
+        drawnSegmentsCount += count;
+    }
+
+    private void drawAxesAndMarks(Canvas canvas) {
+        canvas.drawRect(plotRect, axesPaint);
+        xLabelFormatter.setStep(xTicks.getStep());
+        yLabelFormatter.setStep(yTicks.getStep());
+
+        for (int i = 0; i < xTicks.getCount(); i++) {
+            long tick = xTicks.getTick(i);
+            float x = toScreenX(tick);
+            float markStartY = plotRect.bottom - textSize / 2f;
+            float markStopY = plotRect.bottom + textSize / 2f;
+            if (isLineOnPlot(x, markStartY, x, markStopY)) {
+                canvas.drawLine(x, markStartY, x, markStopY, axesPaint);
+                int labelStart = xLabelFormatter.format(tick, labelChars);
+                canvas.drawText(
+                        labelChars,
+                        labelStart,
+                        labelChars.length - labelStart,
+                        x,
+                        plotRect.bottom + textSize - textCenterDeviation,
+                        xLabelPaint
+                );
+            }
+        }
+
+        for (int i = 0; i < yTicks.getCount(); i++) {
+            long tick = yTicks.getTick(i);
+            float y = toScreenY(tick);
+            float markStartX = plotRect.left - textSize / 2f;
+            float markStopX = plotRect.left + textSize / 2f;
+            if (isLineOnPlot(markStartX, y, markStopX, y)) {
+                canvas.drawLine(markStartX, y, markStopX, y, axesPaint);
+                int labelStart = yLabelFormatter.format(tick, labelChars);
+                canvas.drawText(
+                        labelChars,
+                        labelStart,
+                        labelChars.length - labelStart,
+                        plotRect.left - textSize / 2f,
+                        y - textCenterDeviation,
+                        yLabelPaint
+                );
+            }
+        }
+    }
+
+    /**
+     * Width of the label of {@code value} at the full precision, which is the widest
+     * the label gets at any tick step.
+     */
+    private float measureLabel(long value, LabelFormatter formatter, Paint paint) {
+        formatter.setStep(1);
+        int labelStart = formatter.format(value, labelChars);
+        return paint.measureText(labelChars, labelStart, labelChars.length - labelStart);
+    }
+
+    private boolean isLineOnPlot(float x1, float y1, float x2, float y2) {
+        return plotRect.left <= Math.max(x1, x2)
+                && Math.min(x1, x2) <= plotRect.right
+                && plotRect.top < Math.max(y1, y2)
+                && Math.min(y1, y2) < plotRect.bottom;
+    }
+
+    private void scrollToLatest() {
+        if (width <= 0 || height <= 0) return;
+        translationX = getMinTranslationX();
+        updatePlot();
+    }
+
+    private float getMinTranslationX() {
+        return plotRect.width() - plotRect.width() * scale;
+    }
+
+    private void restrictTranslations() {
+        translationX = coerceIn(
+                getMinTranslationX(),
+                translationX,
+                MAX_TRANSLATION_X
+        );
+        translationY = coerceIn(
+                MIN_TRANSLATION_Y,
+                translationY,
+                plotRect.height() * scale - plotRect.height()
+        );
+    }
+
+    private float coerceIn(float minValue, float value, float maxValue) {
+        return Math.max(Math.min(maxValue, value), minValue);
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.umnvd.sensetestapp.views;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+
+/**
+ * LRU of rendered plot tiles keyed by zoom level, the plot scale they were rendered at,
+ * and tile position. Not thread-safe, the cache is owned by the render thread.
+ */
+public class PlotTileCache {
+
+    public static final int TILE_SIZE = 256;
+
+    private static final int MEMORY_CLASS_FRACTION = 8;
+    private static final int MAX_RECYCLED_TILES = 8;
+    private static final int MAX_ZOOM_LEVELS = 4;
+
+    private final LruCache<TileKey, Bitmap> tiles;
+    private final ArrayDeque<Bitmap> recycledTiles = new ArrayDeque<>();
+    private final TileKey lookupKey = new TileKey(0f, 0, 0);
+
+    private final float[] zoomLevels = new float[MAX_ZOOM_LEVELS];
+    private int zoomLevelsCount = 0;
+
+    public PlotTileCache(Context context) {
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int maxBytes = activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CLASS_FRACTION;
+        tiles = new LruCache<TileKey, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(TileKey key, Bitmap tile) {
+                return tile.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, TileKey key, Bitmap oldTile, Bitmap newTile) {
+                if (oldTile == newTile) return;
+                if (recycledTiles.size() < MAX_RECYCLED_TILES) recycledTiles.push(oldTile);
+                else oldTile.recycle();
+            }
+        };
+    }
+
+    @Nullable
+    public Bitmap get(float zoom, int column, int row) {
+        lookupKey.set(zoom, column, row);
+        return tiles.get(lookupKey);
+    }
+
+    public void put(float zoom, int column, int row, Bitmap tile) {
+        tiles.put(new TileKey(zoom, column, row), tile);
+        rememberZoomLevel(zoom);
+    }
+
+    public Bitmap obtainTile() {
+        Bitmap tile = recycledTiles.poll();
+        if (tile == null) return Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+        tile.eraseColor(Color.TRANSPARENT);
+        return tile;
+    }
+
+    /**
+     * Whether {@code tilesCount} tiles fit into the budget at once, otherwise caching
+     * a screen worth of tiles would evict the tiles of the same screen.
+     */
+    public boolean canHold(int tilesCount) {
+        return (long) tilesCount * TILE_SIZE * TILE_SIZE * 4 <= tiles.maxSize();
+    }
+
+    /**
+     * Returns the cached zoom level closest to {@code zoom} other than {@code zoom} itself,
+     * or {@link Float#NaN} if there is none.
+     */
+    public float getNearestZoomLevel(float zoom) {
+        float nearestZoom = Float.NaN;
+        for (int i = 0; i < zoomLevelsCount; i++) {
+            if (zoomLevels[i] == zoom) continue;
+            if (Float.isNaN(nearestZoom)
+                    || Math.abs(Math.log(zoomLevels[i] / zoom)) < Math.abs(Math.log(nearestZoom / zoom))) {
+                nearestZoom = zoomLevels[i];
+            }
+        }
+        return nearestZoom;
+    }
+
+    public void clear() {
+        tiles.evictAll();
+        zoomLevelsCount = 0;
+    }
+
+    private void rememberZoomLevel(float zoom) {
+        int index = 0;
+        while (index < zoomLevelsCount && zoomLevels[index] != zoom) index++;
+        if (index == zoomLevelsCount) {
+            if (zoomLevelsCount < MAX_ZOOM_LEVELS) zoomLevelsCount++;
+            index = zoomLevelsCount - 1;
+        }
+        System.arraycopy(zoomLevels, 0, zoomLevels, 1, index);
+        zoomLevels[0] = zoom;
+    }
+
+    private static class TileKey {
+
+        private float zoom;
+        private int column;
+        private int row;
+
+        TileKey(float zoom, int column, int row) {
+            set(zoom, column, row);
+        }
+
+        void set(float zoom, int column, int row) {
+            this.zoom = zoom;
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TileKey)) return false;
+            TileKey tileKey = (TileKey) o;
+            return zoom == tileKey.zoom && column == tileKey.column && row == tileKey.row;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Float.floatToIntBits(zoom);
+            result = 31 * result + column;
+            result = 31 * result + row;
+            return result;
+        }
+    }
+
+}
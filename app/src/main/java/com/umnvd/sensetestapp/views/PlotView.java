@@ -4,13 +4,12 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.PointF;
-import android.graphics.RectF;
 import android.os.Bundle;
 import android.os.Parcelable;
+import android.os.Trace;
 import android.util.AttributeSet;
+import android.util.TypedValue;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
 import android.view.View;
@@ -19,73 +18,68 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.umnvd.sensetestapp.R;
-import com.umnvd.sensetestapp.models.DataPoint;
-
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
-public class PlotView extends View {
+import com.umnvd.sensetestapp.data.ColumnFile;
+import com.umnvd.sensetestapp.metrics.Histogram;
+import com.umnvd.sensetestapp.metrics.Metrics;
+import com.umnvd.sensetestapp.models.PointSeries;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Plot drawn in {@link #onDraw(Canvas)} on the UI thread, which also applies the gestures
+ * and the data updates to the {@link PlotRenderer} right away. {@link SurfacePlotView}
+ * draws the same plot on a render thread.
+ */
+public class PlotView extends View implements PlotDisplay {
 
     private static final String SUPER_STATE_KEY = "superState";
     private static final String SCALE_KEY = "scale";
     private static final String TRANSLATION_X_KEY = "translationX";
     private static final String TRANSLATION_Y_KEY = "translationY";
 
-    private static final float MIN_SCALE = 1f;
-    private static final float MAX_TRANSLATION_X = 0f;
-    private static final float MIN_TRANSLATION_Y = 0f;
-
-    private float textSize;
-    private int axesColor;
-    private int gridColor;
-    private int graphColor;
-    private int textColor;
-    private float axesWidth;
-    private float gridWidth;
-    private float graphWidth;
-
-    private final List<PlotPoint> graphPoints = new ArrayList<>();
-    private final List<PlotPoint> xAxisPoints = new ArrayList<>();
-    private final List<PlotPoint> yAxisPoints = new ArrayList<>();
+    private static final long TILE_RENDER_BUDGET_NANOS = 4_000_000L;
+    private static final long METRICS_REPORT_INTERVAL_NANOS = 1_000_000_000L;
+    private static final float DEBUG_OVERLAY_TEXT_SIZE_SP = 12f;
 
-    private final RectF plotRect = new RectF();
-    private float stepX;
-    private float stepY;
+    private final PlotRenderer renderer;
+    private final PlotDebugOverlay debugOverlay;
+    private boolean isDebugOverlayShown;
 
-    private int xAxisShift = 0;
-    private int yAxisShift = 0;
-
-    private float maxXTextWidth;
-    private float maxYTextWidth;
-    private float textCenterDeviation;
-
-    private int xGridStepMultiplier = 1;
-    private int yGridStepMultiplier = 1;
+    private final Metrics metrics = Metrics.getInstance();
+    private final Histogram setupTimeHistogram = metrics.getHistogram(Metrics.FRAME_SETUP_TIME_NANOS);
+    private final Histogram drawTimeHistogram = metrics.getHistogram(Metrics.FRAME_DRAW_TIME_NANOS);
+    private final Histogram segmentsHistogram = metrics.getHistogram(Metrics.FRAME_SEGMENTS);
+    private final Histogram transformedPointsHistogram = metrics.getHistogram(Metrics.FRAME_TRANSFORMED_POINTS);
+    private long reportedSegmentsCount = 0;
+    private long lastReportNanos = -1;
 
     private final ScaleGestureDetector scaleGestureDetector =
             new ScaleGestureDetector(getContext(), new ScaleListener());
     private final PointF lastEventPoint = new PointF();
     private int lastPointerId;
-
-    private float scale = MIN_SCALE;
-    private float maxScale = MIN_SCALE;
-    private float translationX = MAX_TRANSLATION_X;
-    private float translationY = MIN_TRANSLATION_Y;
     private boolean isScaledNow = false;
 
-    private final Paint axesPaint = new Paint();
-    private final Paint gridPaint = new Paint();
-    private final Paint graphPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Runnable tileRenderTask = this::renderPendingTiles;
+    private boolean isTileRenderPosted = false;
 
-    private final float maxGridStep;
+    private ExecutorService pageLoader;
+    private ColumnFile.Range loadingRange;
+    private ColumnFile.Range failedRange;
 
     public PlotView(Context context, @Nullable AttributeSet attrs, int defStyleAttr, int defStyleRes) {
         super(context, attrs, defStyleAttr, defStyleRes);
-        maxGridStep = context.getResources().getDisplayMetrics().density * 100f;
-        initAttributes(attrs, defStyleAttr, defStyleRes);
-        configurePaints();
+        renderer = new PlotRenderer(context, attrs, defStyleAttr, defStyleRes);
+        debugOverlay = new PlotDebugOverlay(TypedValue.applyDimension(
+                TypedValue.COMPLEX_UNIT_SP, DEBUG_OVERLAY_TEXT_SIZE_SP, context.getResources().getDisplayMetrics()
+        ));
+        TypedArray typedArray = context.obtainStyledAttributes(
+                attrs, R.styleable.PlotView, defStyleAttr, defStyleRes
+        );
+        isDebugOverlayShown = typedArray.getBoolean(R.styleable.PlotView_showDebugOverlay, false);
+        typedArray.recycle();
     }
 
     public PlotView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
@@ -105,9 +99,9 @@ public class PlotView extends View {
     protected Parcelable onSaveInstanceState() {
         Bundle bundle = new Bundle();
         bundle.putParcelable(SUPER_STATE_KEY, super.onSaveInstanceState());
-        bundle.putFloat(SCALE_KEY, scale);
-        bundle.putFloat(TRANSLATION_X_KEY, translationX);
-        bundle.putFloat(TRANSLATION_Y_KEY, translationY);
+        bundle.putFloat(SCALE_KEY, renderer.getScale());
+        bundle.putFloat(TRANSLATION_X_KEY, renderer.getTranslationX());
+        bundle.putFloat(TRANSLATION_Y_KEY, renderer.getTranslationY());
         return bundle;
     }
 
@@ -116,42 +110,77 @@ public class PlotView extends View {
         if (state instanceof Bundle) {
             Bundle bundle = (Bundle) state;
             state = bundle.getParcelable(SUPER_STATE_KEY);
-            scale = bundle.getFloat(SCALE_KEY);
-            translationX = bundle.getFloat(TRANSLATION_X_KEY);
-            translationY = bundle.getFloat(TRANSLATION_Y_KEY);
+            renderer.setTransform(
+                    bundle.getFloat(SCALE_KEY), bundle.getFloat(TRANSLATION_X_KEY), bundle.getFloat(TRANSLATION_Y_KEY)
+            );
+            invalidate();
         }
         super.onRestoreInstanceState(state);
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (pageLoader == null) pageLoader = Executors.newSingleThreadExecutor();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        removeCallbacks(tileRenderTask);
+        isTileRenderPosted = false;
+        if (pageLoader != null) {
+            pageLoader.shutdownNow();
+            pageLoader = null;
+        }
+        loadingRange = null;
+        super.onDetachedFromWindow();
+    }
+
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         int measuredWidth, measuredHeight;
 
         if (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED) {
-            int paddings = getPaddingLeft() + getPaddingRight();
-            int stepsCount = Math.max(xAxisPoints.size(), 1);
-            measuredWidth = ((int) (maxGridStep * stepsCount)) + paddings;
+            measuredWidth = renderer.getMeasuredWidth() + getPaddingLeft() + getPaddingRight();
         } else {
             measuredWidth = MeasureSpec.getSize(widthMeasureSpec);
         }
 
         if (MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.UNSPECIFIED) {
-            int paddings = getPaddingTop() + getPaddingBottom();
-            int stepsCount = Math.max(yAxisPoints.size(), 1);
-            measuredHeight = ((int) (maxGridStep * stepsCount)) + paddings;
+            measuredHeight = renderer.getMeasuredHeight() + getPaddingTop() + getPaddingBottom();
         } else {
             measuredHeight = MeasureSpec.getSize(heightMeasureSpec);
         }
 
         setMeasuredDimension(measuredWidth, measuredHeight);
-        updatePlotSize(measuredWidth, measuredHeight);
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+        renderer.setSize(width, height, getPaddingLeft(), getPaddingTop(), getPaddingRight(), getPaddingBottom());
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
-        drawGrid(canvas);
-        drawGraph(canvas);
-        drawAxesAndMarks(canvas);
+        long startNanos = System.nanoTime();
+        loadMissingPages();
+        boolean isAnimating = renderer.advanceAnimation(startNanos);
+        Trace.beginSection("PlotView.draw");
+        try {
+            renderer.draw(canvas);
+        } finally {
+            Trace.endSection();
+        }
+        drawTimeHistogram.record(System.nanoTime() - startNanos);
+        if (isDebugOverlayShown) debugOverlay.draw(canvas, getPaddingLeft(), getPaddingTop());
+        recordFrame(startNanos, System.nanoTime() - startNanos);
+
+        if (isAnimating) postInvalidateOnAnimation();
+        if (renderer.hasPendingTiles() && !isTileRenderPosted) {
+            isTileRenderPosted = true;
+            post(tileRenderTask);
+        }
     }
 
     @SuppressLint("ClickableViewAccessibility")
@@ -162,227 +191,135 @@ public class PlotView extends View {
         return processTranslation(event);
     }
 
-    public void setPoints(@NonNull List<DataPoint> points) {
-        setUpPlotPoints(points);
+    @Override
+    public void setPoints(@NonNull PointSeries points) {
+        long startNanos = System.nanoTime();
+        Trace.beginSection("PlotView.setup");
+        try {
+            renderer.setPoints(points);
+        } finally {
+            Trace.endSection();
+        }
+        setupTimeHistogram.record(System.nanoTime() - startNanos);
         requestLayout();
         invalidate();
     }
 
-    private void initAttributes(@Nullable AttributeSet attrs, int defStyleAttr, int defStyleRes) {
-        TypedArray typedArray = getContext().obtainStyledAttributes(
-                attrs, R.styleable.PlotView, defStyleAttr, defStyleRes
-        );
-
-        textSize = typedArray.getDimension(R.styleable.PlotView_textSize, 48f);
-        axesColor = typedArray.getColor(R.styleable.PlotView_axesColor, Color.BLACK);
-        gridColor = typedArray.getColor(R.styleable.PlotView_gridColor, Color.LTGRAY);
-        graphColor = typedArray.getColor(R.styleable.PlotView_graphColor, Color.BLUE);
-        textColor = typedArray.getColor(R.styleable.PlotView_textColor, Color.BLACK);
-        axesWidth = typedArray.getDimension(R.styleable.PlotView_axesWidth, 8f);
-        gridWidth = typedArray.getDimension(R.styleable.PlotView_gridWidth, 4f);
-        graphWidth = typedArray.getDimension(R.styleable.PlotView_graphWidth, 8f);
-
-        typedArray.recycle();
-    }
-
-    private void configurePaints() {
-        axesPaint.setColor(axesColor);
-        axesPaint.setStyle(Paint.Style.STROKE);
-        axesPaint.setStrokeWidth(axesWidth);
-
-        gridPaint.setColor(gridColor);
-        gridPaint.setStyle(Paint.Style.STROKE);
-        gridPaint.setStrokeWidth(gridWidth);
-
-        graphPaint.setColor(graphColor);
-        graphPaint.setStyle(Paint.Style.STROKE);
-        graphPaint.setStrokeWidth(graphWidth);
-
-        textPaint.setColor(textColor);
-        textPaint.setStyle(Paint.Style.FILL);
-        textPaint.setTextSize(textSize);
-    }
-
-    private void setUpPlotPoints(List<DataPoint> originalDataPoints) {
-        ArrayList<DataPoint> dataPoints = new ArrayList<>(originalDataPoints);
-        Collections.sort(dataPoints);
-
-        DataPoint minAxesPoint = getMinAxesPoint(dataPoints);
-        DataPoint maxAxesPoint = getMaxAxesPoint(dataPoints);
-        xAxisShift = minAxesPoint.x;
-        yAxisShift = minAxesPoint.y;
-
-        setUpGraphPoints(dataPoints);
-        setUpAxesPoints(minAxesPoint, maxAxesPoint);
-        calculateTextSizes(minAxesPoint, maxAxesPoint);
-    }
-
-    private DataPoint getMinAxesPoint(List<DataPoint> dataPoints) {
-        int minX = dataPoints.get(0).x;
-        int minY = dataPoints.get(0).y;
-        for (DataPoint point : dataPoints) {
-            if (point.y < minY) minY = point.y;
-        }
-        return new DataPoint(minX, minY);
-    }
-
-    private DataPoint getMaxAxesPoint(List<DataPoint> dataPoints) {
-        int maxX = dataPoints.get(dataPoints.size() - 1).x;
-        int maxY = dataPoints.get(0).y;
-        for (DataPoint point : dataPoints) {
-            if (point.y > maxY) maxY = point.y;
+    @Override
+    public void appendPoints(@NonNull PointSeries points) {
+        long startNanos = System.nanoTime();
+        boolean isBoundsChanged;
+        Trace.beginSection("PlotView.setup");
+        try {
+            isBoundsChanged = renderer.appendPoints(points);
+        } finally {
+            Trace.endSection();
         }
-        return new DataPoint(maxX, maxY);
+        setupTimeHistogram.record(System.nanoTime() - startNanos);
+        if (isBoundsChanged) requestLayout();
+        invalidate();
     }
 
-    private void setUpAxesPoints(DataPoint minAxesPoint, DataPoint maxAxesPoint) {
-        xAxisPoints.clear();
-        for (int x = minAxesPoint.x; x <= maxAxesPoint.x; x++) {
-            xAxisPoints.add(new PlotPoint(x, yAxisShift));
-        }
-
-        yAxisPoints.clear();
-        for (int y = minAxesPoint.y; y <= maxAxesPoint.y; y++) {
-            yAxisPoints.add(new PlotPoint(xAxisShift, y));
+    @Override
+    public void setColumnFile(@NonNull ColumnFile columnFile) {
+        long startNanos = System.nanoTime();
+        Trace.beginSection("PlotView.setup");
+        try {
+            renderer.setColumnFile(columnFile);
+        } finally {
+            Trace.endSection();
         }
+        setupTimeHistogram.record(System.nanoTime() - startNanos);
+        failedRange = null;
+        requestLayout();
+        invalidate();
     }
 
-    private void setUpGraphPoints(List<DataPoint> dataPoints) {
-        graphPoints.clear();
-        for (DataPoint dataPoint : dataPoints) graphPoints.add(new PlotPoint(dataPoint));
-    }
-
-    private void calculateTextSizes(DataPoint minAxesPoint, DataPoint maxAxesPoint) {
-        String minXText = String.valueOf(minAxesPoint.x);
-        String maxXText = String.valueOf(maxAxesPoint.x);
-        maxXTextWidth = Math.max(textPaint.measureText(minXText), textPaint.measureText(maxXText));
-
-        String minYText = String.valueOf(minAxesPoint.y);
-        String maxYText = String.valueOf(maxAxesPoint.y);
-        maxYTextWidth = Math.max(textPaint.measureText(minYText), textPaint.measureText(maxYText));
-
-        Paint.FontMetrics fontMetrics = textPaint.getFontMetrics();
-        textCenterDeviation = (fontMetrics.descent + fontMetrics.ascent) / 2f;
-    }
-
-    private void updatePlotSize(int width, int height) {
-        float plotLeftPadding = (textSize / 2f) + maxYTextWidth;
-        float plotTopPadding = textSize / 1.5f;
-        float plotRightPadding = maxXTextWidth / 1.5f;
-        float plotBottomPadding = (textSize / 2f) + textSize;
-
-        plotRect.set(
-                getPaddingLeft() + plotLeftPadding,
-                getPaddingTop() + plotTopPadding,
-                width - getPaddingRight() - plotRightPadding,
-                height - getPaddingBottom() - plotBottomPadding
-        );
-
-        stepX = plotRect.width() / Math.max((xAxisPoints.size() - 1), 1);
-        stepY = plotRect.height() / Math.max((yAxisPoints.size() - 1), 1);
-        maxScale = maxGridStep / Math.min(stepX, stepY);
-
-        updatePlot();
+    @Override
+    public void setFollowLatest(boolean followLatest) {
+        renderer.setFollowLatest(followLatest);
+        invalidate();
     }
 
-    private void updatePlot() {
-        restrictTranslations();
-
-        for (PlotPoint graphPoint : graphPoints) graphPoint.update();
-        for (PlotPoint xAxisPoint : xAxisPoints) xAxisPoint.update();
-        for (PlotPoint yAxisPoint : yAxisPoints) yAxisPoint.update();
-
-        updateGridStepsMultipliers();
+    @Override
+    public void setAutoFitY(boolean autoFitY) {
+        renderer.setAutoFitY(autoFitY);
+        invalidate();
     }
 
-    private void updateGridStepsMultipliers() {
-        xGridStepMultiplier = 1;
-        while (true) {
-            if (stepX * scale * xGridStepMultiplier > maxXTextWidth * 1.25f) break;
-            else xGridStepMultiplier++;
-        }
-
-        yGridStepMultiplier = 1;
-        while (true) {
-            if (stepY * scale * yGridStepMultiplier > textSize * 1.25f) break;
-            else yGridStepMultiplier++;
-        }
+    @Override
+    public void setDebugOverlayShown(boolean isShown) {
+        isDebugOverlayShown = isShown;
+        invalidate();
     }
 
-    private void drawGrid(Canvas canvas) {
-        for (int i = 0; i < xAxisPoints.size(); i += xGridStepMultiplier) {
-            PlotPoint point = xAxisPoints.get(i);
-            if (isLineOnPlot(point.x, plotRect.top, point.x, plotRect.bottom)) {
-                canvas.drawLine(point.x, plotRect.top, point.x, plotRect.bottom, gridPaint);
-            }
-        }
-
-        for (int i = 0; i < yAxisPoints.size(); i += yGridStepMultiplier) {
-            PlotPoint point = yAxisPoints.get(i);
-            if (isLineOnPlot(plotRect.left, point.y, plotRect.right, point.y)) {
-                canvas.drawLine(plotRect.left, point.y, plotRect.right, point.y, gridPaint);
-            }
+    /**
+     * Starts reading the pages of the column file which the visible range misses, one
+     * range at a time. The rows are applied on the UI thread once read.
+     */
+    private void loadMissingPages() {
+        ColumnFile.Range range = renderer.getMissingRange();
+        ColumnFile columnFile = renderer.getColumnFile();
+        ExecutorService loader = pageLoader;
+        if (range == null || loader == null) return;
+        if (loadingRange != null || range.equals(failedRange)) return;
+
+        loadingRange = range;
+        try {
+            loader.execute(() -> {
+                PointSeries rows;
+                try {
+                    rows = columnFile.read(range);
+                } catch (IOException e) {
+                    rows = null;
+                }
+                PointSeries loadedRows = rows;
+                post(() -> {
+                    // A loader shut down on detach may still finish its read.
+                    if (pageLoader != loader) return;
+                    loadingRange = null;
+                    if (loadedRows != null) renderer.setColumnFileRows(columnFile, range, loadedRows);
+                    else failedRange = range;
+                    invalidate();
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            loadingRange = null;
         }
     }
 
-    private void drawGraph(Canvas canvas) {
-        int clipRestoreCount = canvas.save();
-        canvas.clipRect(plotRect);
-
-        for (int i = 1; i < graphPoints.size(); i++) {
-            PlotPoint fromPoint = graphPoints.get(i - 1);
-            PlotPoint toPoint = graphPoints.get(i);
-            if (isLineOnPlot(fromPoint.x, fromPoint.y, toPoint.x, toPoint.y)) {
-                canvas.drawLine(fromPoint.x, fromPoint.y, toPoint.x, toPoint.y, graphPaint);
-            }
-        }
-
-        canvas.restoreToCount(clipRestoreCount);
+    /**
+     * Renders tiles in slices of {@link #TILE_RENDER_BUDGET_NANOS} between frames, so that
+     * the UI thread keeps handling input.
+     */
+    private void renderPendingTiles() {
+        isTileRenderPosted = false;
+        renderer.renderPendingTiles(System.nanoTime() + TILE_RENDER_BUDGET_NANOS);
+        invalidate();
     }
 
-    private void drawAxesAndMarks(Canvas canvas) {
-        canvas.drawRect(plotRect, axesPaint);
-
-        for (int i = 0; i < xAxisPoints.size(); i += xGridStepMultiplier) {
-            PlotPoint point = xAxisPoints.get(i);
-            float markStartY = plotRect.bottom - textSize / 2f;
-            float markStopY = plotRect.bottom + textSize / 2f;
-            if (isLineOnPlot(point.x, markStartY, point.x, markStopY)) {
-                canvas.drawLine(point.x, markStartY, point.x, markStopY, axesPaint);
-                textPaint.setTextAlign(Paint.Align.CENTER);
-                canvas.drawText(
-                        String.valueOf(point.originalX),
-                        point.x,
-                        plotRect.bottom + textSize - textCenterDeviation,
-                        textPaint
-                );
-            }
+    /**
+     * Records the segments drawn since the previous frame, tiles included, and reports
+     * the metrics at most once per {@link #METRICS_REPORT_INTERVAL_NANOS}.
+     */
+    private void recordFrame(long frameTimeNanos, long workNanos) {
+        long segmentsCount = renderer.getDrawnSegmentsCount();
+        segmentsHistogram.record(segmentsCount - reportedSegmentsCount);
+        transformedPointsHistogram.record(2 * (segmentsCount - reportedSegmentsCount));
+        reportedSegmentsCount = segmentsCount;
+        if (isDebugOverlayShown) {
+            debugOverlay.onFrame(
+                    frameTimeNanos, workNanos, renderer.getVisiblePointsCount(), renderer.getPointsCount()
+            );
         }
 
-        for (int i = 0; i < yAxisPoints.size(); i += yGridStepMultiplier) {
-            PlotPoint point = yAxisPoints.get(i);
-            float markStartX = plotRect.left - textSize / 2f;
-            float markStopX = plotRect.left + textSize / 2f;
-            if (isLineOnPlot(markStartX, point.y, markStopX, point.y)) {
-                canvas.drawLine(markStartX, point.y, markStopX, point.y, axesPaint);
-                textPaint.setTextAlign(Paint.Align.RIGHT);
-                canvas.drawText(
-                        String.valueOf(point.originalY),
-                        plotRect.left - textSize / 2f,
-                        point.y - textCenterDeviation,
-                        textPaint
-                );
-            }
+        if (lastReportNanos < 0) lastReportNanos = frameTimeNanos;
+        if (frameTimeNanos - lastReportNanos >= METRICS_REPORT_INTERVAL_NANOS) {
+            lastReportNanos = frameTimeNanos;
+            metrics.report();
         }
     }
 
-    private boolean isLineOnPlot(float x1, float y1, float x2, float y2) {
-        return plotRect.left <= Math.max(x1, x2)
-                && Math.min(x1, x2) <= plotRect.right
-                && plotRect.top < Math.max(y1, y2)
-                && Math.min(y1, y2) < plotRect.bottom;
-    }
-
     private boolean processTranslation(MotionEvent event) {
         if (event.getAction() == MotionEvent.ACTION_DOWN) {
             lastEventPoint.set(event.getX(), event.getY());
@@ -391,7 +328,6 @@ public class PlotView extends View {
         }
 
         if (event.getAction() == MotionEvent.ACTION_MOVE) {
-            if (scale == MIN_SCALE) return true;
             if (isScaledNow) {
                 lastEventPoint.set(event.getX(), event.getY());
                 isScaledNow = false;
@@ -399,9 +335,7 @@ public class PlotView extends View {
 
             int pointerId = event.getPointerId(0);
             if (pointerId == lastPointerId) {
-                translationX += event.getX() - lastEventPoint.x;
-                translationY += event.getY() - lastEventPoint.y;
-                updatePlot();
+                renderer.translateBy(event.getX() - lastEventPoint.x, event.getY() - lastEventPoint.y);
                 invalidate();
             }
 
@@ -413,48 +347,6 @@ public class PlotView extends View {
         return false;
     }
 
-    private void restrictTranslations() {
-        translationX = coerceIn(
-                plotRect.width() - plotRect.width() * scale,
-                translationX,
-                MAX_TRANSLATION_X
-        );
-        translationY = coerceIn(
-                MIN_TRANSLATION_Y,
-                translationY,
-                plotRect.height() * scale - plotRect.height()
-        );
-    }
-
-    private float coerceIn(float minValue, float value, float maxValue) {
-        return Math.max(Math.min(maxValue, value), minValue);
-    }
-
-    private class PlotPoint {
-
-        public final int originalX;
-        public final int originalY;
-
-        public float x;
-        public float y;
-
-        public PlotPoint(int originalX, int originalY) {
-            this.originalX = originalX;
-            this.originalY = originalY;
-            update();
-        }
-
-        public PlotPoint(DataPoint dataPoint) {
-            this(dataPoint.x, dataPoint.y);
-        }
-
-        public void update() {
-            x = plotRect.left + ((originalX - xAxisShift) * stepX * scale) + translationX;
-            y = plotRect.bottom - ((originalY - yAxisShift) * stepY * scale) + translationY;
-        }
-
-    }
-
     private class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
 
         private final PointF focus = new PointF();
@@ -462,23 +354,15 @@ public class PlotView extends View {
         @Override
         public boolean onScaleBegin(ScaleGestureDetector detector) {
             focus.set(detector.getFocusX(), detector.getFocusY());
-            return plotRect.contains(focus.x, focus.y);
+            boolean isScaling = renderer.isOnPlot(focus.x, focus.y);
+            renderer.setScaling(isScaling);
+            return isScaling;
         }
 
         @Override
         public boolean onScale(ScaleGestureDetector detector) {
             if (detector == null) return false;
-            float prevScale = scale;
-            float prevTranslationX = translationX;
-            float prevTranslationY = translationY;
-
-            scale = coerceIn(MIN_SCALE, scale * detector.getScaleFactor(), maxScale);
-            translationX = (focus.x - plotRect.left)
-                    + (prevTranslationX + plotRect.left - focus.x) * scale / prevScale;
-            translationY = (focus.y - plotRect.bottom)
-                    + (prevTranslationY + plotRect.bottom - focus.y) * scale / prevScale;
-
-            updatePlot();
+            renderer.scaleBy(detector.getScaleFactor(), focus.x, focus.y);
             invalidate();
             return true;
         }
@@ -486,6 +370,8 @@ public class PlotView extends View {
         @Override
         public void onScaleEnd(ScaleGestureDetector detector) {
             isScaledNow = true;
+            renderer.setScaling(false);
+            invalidate();
         }
     }
 
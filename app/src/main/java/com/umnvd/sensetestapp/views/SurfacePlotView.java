@@ -0,0 +1,535 @@
+package com.umnvd.sensetestapp.views;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PointF;
+import android.graphics.RectF;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Parcelable;
+import android.os.Process;
+import android.os.Trace;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.umnvd.sensetestapp.R;
+import com.umnvd.sensetestapp.data.ColumnFile;
+import com.umnvd.sensetestapp.metrics.Histogram;
+import com.umnvd.sensetestapp.metrics.Metrics;
+import com.umnvd.sensetestapp.models.PointSeries;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Plot drawn on a dedicated render thread. The UI thread only records gesture deltas
+ * and forwards data updates, the render thread applies them to the {@link PlotRenderer}
+ * on the next vsync of its own {@link Choreographer} and draws into the surface.
+ * {@link PlotView} draws the same plot on the UI thread.
+ */
+public class SurfacePlotView extends SurfaceView implements PlotDisplay, SurfaceHolder.Callback {
+
+    private static final String SUPER_STATE_KEY = "superState";
+    private static final String SCALE_KEY = "scale";
+    private static final String TRANSLATION_X_KEY = "translationX";
+    private static final String TRANSLATION_Y_KEY = "translationY";
+
+    private static final long TILE_RENDER_BUDGET_NANOS = 8_000_000L;
+    private static final long METRICS_REPORT_INTERVAL_NANOS = 1_000_000_000L;
+    private static final float DEBUG_OVERLAY_TEXT_SIZE_SP = 12f;
+
+    private final PlotRenderer renderer;
+    private final int backgroundColor;
+    private final PlotDebugOverlay debugOverlay;
+    private boolean isDebugOverlayShown;
+
+    private final Metrics metrics = Metrics.getInstance();
+    private final Histogram setupTimeHistogram = metrics.getHistogram(Metrics.FRAME_SETUP_TIME_NANOS);
+    private final Histogram drawTimeHistogram = metrics.getHistogram(Metrics.FRAME_DRAW_TIME_NANOS);
+    private final Histogram segmentsHistogram = metrics.getHistogram(Metrics.FRAME_SEGMENTS);
+    private final Histogram transformedPointsHistogram = metrics.getHistogram(Metrics.FRAME_TRANSFORMED_POINTS);
+    private long reportedSegmentsCount = 0;
+    private long lastReportNanos = -1;
+
+    private final ScaleGestureDetector scaleGestureDetector =
+            new ScaleGestureDetector(getContext(), new ScaleListener());
+    private final PointF lastEventPoint = new PointF();
+    private int lastPointerId;
+    private boolean isScaledNow = false;
+
+    private final Object gestureLock = new Object();
+    private float pendingTranslationX = 0f;
+    private float pendingTranslationY = 0f;
+    private float pendingScaleFactor = 1f;
+    private float pendingFocusX;
+    private float pendingFocusY;
+    private boolean isScaling = false;
+    private final RectF publishedPlotRect = new RectF();
+    private float publishedScale = 1f;
+    private float publishedTranslationX = 0f;
+    private float publishedTranslationY = 0f;
+
+    private volatile int measuredPlotWidth;
+    private volatile int measuredPlotHeight;
+
+    private final Object surfaceLock = new Object();
+    private boolean hasSurface = false;
+
+    private HandlerThread renderThread;
+    private volatile Handler renderHandler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean isFrameScheduled = new AtomicBoolean(false);
+    private final FrameCallback frameCallback = new FrameCallback();
+    private final Runnable tileRenderTask = this::renderPendingTiles;
+    private final Runnable frameScheduleTask =
+            () -> Choreographer.getInstance().postFrameCallback(frameCallback);
+
+    private volatile ExecutorService pageLoader;
+    private ColumnFile.Range loadingRange;
+    private ColumnFile.Range failedRange;
+
+    public SurfacePlotView(Context context, @Nullable AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        super(context, attrs, defStyleAttr, defStyleRes);
+        renderer = new PlotRenderer(context, attrs, defStyleAttr, defStyleRes);
+        backgroundColor = resolveBackgroundColor(context);
+        debugOverlay = new PlotDebugOverlay(TypedValue.applyDimension(
+                TypedValue.COMPLEX_UNIT_SP, DEBUG_OVERLAY_TEXT_SIZE_SP, context.getResources().getDisplayMetrics()
+        ));
+        TypedArray typedArray = context.obtainStyledAttributes(
+                attrs, R.styleable.PlotView, defStyleAttr, defStyleRes
+        );
+        isDebugOverlayShown = typedArray.getBoolean(R.styleable.PlotView_showDebugOverlay, false);
+        typedArray.recycle();
+        getHolder().addCallback(this);
+    }
+
+    public SurfacePlotView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        this(context, attrs, defStyleAttr, R.style.PlotViewDefaultStyle);
+    }
+
+    public SurfacePlotView(Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, R.attr.plotViewStyle);
+    }
+
+    public SurfacePlotView(Context context) {
+        this(context, null);
+    }
+
+    @Nullable
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        Bundle bundle = new Bundle();
+        bundle.putParcelable(SUPER_STATE_KEY, super.onSaveInstanceState());
+        synchronized (gestureLock) {
+            bundle.putFloat(SCALE_KEY, publishedScale);
+            bundle.putFloat(TRANSLATION_X_KEY, publishedTranslationX);
+            bundle.putFloat(TRANSLATION_Y_KEY, publishedTranslationY);
+        }
+        return bundle;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (state instanceof Bundle) {
+            Bundle bundle = (Bundle) state;
+            state = bundle.getParcelable(SUPER_STATE_KEY);
+            float scale = bundle.getFloat(SCALE_KEY);
+            float translationX = bundle.getFloat(TRANSLATION_X_KEY);
+            float translationY = bundle.getFloat(TRANSLATION_Y_KEY);
+            postToRenderThread(() -> renderer.setTransform(scale, translationX, translationY));
+        }
+        super.onRestoreInstanceState(state);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        startRenderThread();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        stopRenderThread();
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int measuredWidth, measuredHeight;
+
+        if (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+            measuredWidth = measuredPlotWidth + getPaddingLeft() + getPaddingRight();
+        } else {
+            measuredWidth = MeasureSpec.getSize(widthMeasureSpec);
+        }
+
+        if (MeasureSpec.getMode(heightMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+            measuredHeight = measuredPlotHeight + getPaddingTop() + getPaddingBottom();
+        } else {
+            measuredHeight = MeasureSpec.getSize(heightMeasureSpec);
+        }
+
+        setMeasuredDimension(measuredWidth, measuredHeight);
+    }
+
+    @SuppressLint("ClickableViewAccessibility")
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (event == null) return false;
+        if (event.getPointerCount() > 1) return scaleGestureDetector.onTouchEvent(event);
+        return processTranslation(event);
+    }
+
+    @Override
+    public void surfaceCreated(@NonNull SurfaceHolder holder) {
+        synchronized (surfaceLock) {
+            hasSurface = true;
+        }
+        requestRender();
+    }
+
+    @Override
+    public void surfaceChanged(@NonNull SurfaceHolder holder, int format, int width, int height) {
+        int paddingLeft = getPaddingLeft();
+        int paddingTop = getPaddingTop();
+        int paddingRight = getPaddingRight();
+        int paddingBottom = getPaddingBottom();
+        postToRenderThread(() -> renderer.setSize(
+                width, height, paddingLeft, paddingTop, paddingRight, paddingBottom
+        ));
+    }
+
+    @Override
+    public void surfaceDestroyed(@NonNull SurfaceHolder holder) {
+        synchronized (surfaceLock) {
+            hasSurface = false;
+        }
+    }
+
+    @Override
+    public void setPoints(@NonNull PointSeries points) {
+        postToRenderThread(() -> {
+            long startNanos = System.nanoTime();
+            Trace.beginSection("SurfacePlotView.setup");
+            try {
+                renderer.setPoints(points);
+            } finally {
+                Trace.endSection();
+            }
+            setupTimeHistogram.record(System.nanoTime() - startNanos);
+            onPlotBoundsChanged();
+        });
+    }
+
+    @Override
+    public void appendPoints(@NonNull PointSeries points) {
+        postToRenderThread(() -> {
+            long startNanos = System.nanoTime();
+            boolean isBoundsChanged;
+            Trace.beginSection("SurfacePlotView.setup");
+            try {
+                isBoundsChanged = renderer.appendPoints(points);
+            } finally {
+                Trace.endSection();
+            }
+            setupTimeHistogram.record(System.nanoTime() - startNanos);
+            if (isBoundsChanged) onPlotBoundsChanged();
+        });
+    }
+
+    @Override
+    public void setColumnFile(@NonNull ColumnFile columnFile) {
+        postToRenderThread(() -> {
+            long startNanos = System.nanoTime();
+            Trace.beginSection("SurfacePlotView.setup");
+            try {
+                renderer.setColumnFile(columnFile);
+            } finally {
+                Trace.endSection();
+            }
+            setupTimeHistogram.record(System.nanoTime() - startNanos);
+            failedRange = null;
+            onPlotBoundsChanged();
+        });
+    }
+
+    @Override
+    public void setFollowLatest(boolean followLatest) {
+        postToRenderThread(() -> renderer.setFollowLatest(followLatest));
+    }
+
+    @Override
+    public void setAutoFitY(boolean autoFitY) {
+        postToRenderThread(() -> renderer.setAutoFitY(autoFitY));
+    }
+
+    @Override
+    public void setDebugOverlayShown(boolean isShown) {
+        postToRenderThread(() -> isDebugOverlayShown = isShown);
+    }
+
+    private int resolveBackgroundColor(Context context) {
+        TypedArray typedArray = context.obtainStyledAttributes(
+                new int[]{android.R.attr.colorBackground}
+        );
+        int color = typedArray.getColor(0, Color.WHITE);
+        typedArray.recycle();
+        return color;
+    }
+
+    @MainThread
+    private void startRenderThread() {
+        if (renderThread != null) return;
+        renderThread = new HandlerThread("PlotRenderThread", Process.THREAD_PRIORITY_DISPLAY);
+        renderThread.start();
+        renderHandler = new Handler(renderThread.getLooper());
+        pageLoader = Executors.newSingleThreadExecutor();
+        isFrameScheduled.set(false);
+        requestRender();
+    }
+
+    @MainThread
+    private void stopRenderThread() {
+        if (renderThread == null) return;
+        Handler handler = renderHandler;
+        handler.post(() -> Choreographer.getInstance().removeFrameCallback(frameCallback));
+        renderThread.quitSafely();
+        renderThread = null;
+        renderHandler = null;
+        pageLoader.shutdownNow();
+        pageLoader = null;
+    }
+
+    @MainThread
+    private void postToRenderThread(Runnable task) {
+        startRenderThread();
+        renderHandler.post(() -> {
+            task.run();
+            requestRender();
+        });
+    }
+
+    private void requestRender() {
+        Handler handler = renderHandler;
+        if (handler == null || !isFrameScheduled.compareAndSet(false, true)) return;
+        handler.post(frameScheduleTask);
+    }
+
+    private void onPlotBoundsChanged() {
+        measuredPlotWidth = renderer.getMeasuredWidth();
+        measuredPlotHeight = renderer.getMeasuredHeight();
+        mainHandler.post(this::requestLayout);
+    }
+
+    private void applyPendingGestures() {
+        float translationX, translationY, scaleFactor, focusX, focusY;
+        boolean isScaling;
+        synchronized (gestureLock) {
+            isScaling = this.isScaling;
+            translationX = pendingTranslationX;
+            translationY = pendingTranslationY;
+            scaleFactor = pendingScaleFactor;
+            focusX = pendingFocusX;
+            focusY = pendingFocusY;
+            pendingTranslationX = 0f;
+            pendingTranslationY = 0f;
+            pendingScaleFactor = 1f;
+        }
+
+        renderer.setScaling(isScaling);
+        if (scaleFactor != 1f) renderer.scaleBy(scaleFactor, focusX, focusY);
+        if (translationX != 0f || translationY != 0f) renderer.translateBy(translationX, translationY);
+
+        synchronized (gestureLock) {
+            publishedPlotRect.set(renderer.getPlotRect());
+            publishedScale = renderer.getScale();
+            publishedTranslationX = renderer.getTranslationX();
+            publishedTranslationY = renderer.getTranslationY();
+        }
+    }
+
+    /**
+     * Starts reading the pages of the column file which the visible range misses, one
+     * range at a time. The rows are applied on the render thread once read.
+     */
+    private void loadMissingPages() {
+        ColumnFile.Range range = renderer.getMissingRange();
+        ColumnFile columnFile = renderer.getColumnFile();
+        ExecutorService loader = pageLoader;
+        // The rows are posted to this handler only, the render thread is started and
+        // stopped on the main thread and may be stopped before they are read.
+        Handler handler = renderHandler;
+        if (range == null || loader == null || handler == null) return;
+        if (loadingRange != null || range.equals(failedRange)) return;
+
+        loadingRange = range;
+        try {
+            loader.execute(() -> {
+                PointSeries rows;
+                try {
+                    rows = columnFile.read(range);
+                } catch (IOException e) {
+                    rows = null;
+                }
+                PointSeries loadedRows = rows;
+                handler.post(() -> {
+                    loadingRange = null;
+                    if (loadedRows != null) renderer.setColumnFileRows(columnFile, range, loadedRows);
+                    else failedRange = range;
+                    requestRender();
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            loadingRange = null;
+        }
+    }
+
+    private void renderPendingTiles() {
+        renderer.renderPendingTiles(System.nanoTime() + TILE_RENDER_BUDGET_NANOS);
+        requestRender();
+    }
+
+    private void drawFrame() {
+        synchronized (surfaceLock) {
+            if (!hasSurface) return;
+            Canvas canvas = getHolder().lockCanvas();
+            if (canvas == null) return;
+            try {
+                canvas.drawColor(backgroundColor);
+                long startNanos = System.nanoTime();
+                Trace.beginSection("SurfacePlotView.draw");
+                try {
+                    renderer.draw(canvas);
+                } finally {
+                    Trace.endSection();
+                }
+                drawTimeHistogram.record(System.nanoTime() - startNanos);
+                if (isDebugOverlayShown) debugOverlay.draw(canvas, getPaddingLeft(), getPaddingTop());
+            } finally {
+                getHolder().unlockCanvasAndPost(canvas);
+            }
+        }
+    }
+
+    /**
+     * Records the segments drawn since the previous frame, tiles included, and reports
+     * the metrics at most once per {@link #METRICS_REPORT_INTERVAL_NANOS}.
+     */
+    private void recordFrame(long frameTimeNanos, long workNanos) {
+        long segmentsCount = renderer.getDrawnSegmentsCount();
+        segmentsHistogram.record(segmentsCount - reportedSegmentsCount);
+        transformedPointsHistogram.record(2 * (segmentsCount - reportedSegmentsCount));
+        reportedSegmentsCount = segmentsCount;
+        if (isDebugOverlayShown) {
+            debugOverlay.onFrame(
+                    frameTimeNanos, workNanos, renderer.getVisiblePointsCount(), renderer.getPointsCount()
+            );
+        }
+
+        if (lastReportNanos < 0) lastReportNanos = frameTimeNanos;
+        if (frameTimeNanos - lastReportNanos >= METRICS_REPORT_INTERVAL_NANOS) {
+            lastReportNanos = frameTimeNanos;
+            metrics.report();
+        }
+    }
+
+    private boolean processTranslation(MotionEvent event) {
+        if (event.getAction() == MotionEvent.ACTION_DOWN) {
+            lastEventPoint.set(event.getX(), event.getY());
+            lastPointerId = event.getPointerId(0);
+            return true;
+        }
+
+        if (event.getAction() == MotionEvent.ACTION_MOVE) {
+            if (isScaledNow) {
+                lastEventPoint.set(event.getX(), event.getY());
+                isScaledNow = false;
+            }
+
+            int pointerId = event.getPointerId(0);
+            if (pointerId == lastPointerId) {
+                synchronized (gestureLock) {
+                    pendingTranslationX += event.getX() - lastEventPoint.x;
+                    pendingTranslationY += event.getY() - lastEventPoint.y;
+                }
+                requestRender();
+            }
+
+            lastEventPoint.set(event.getX(), event.getY());
+            lastPointerId = event.getPointerId(0);
+            return true;
+        }
+
+        return false;
+    }
+
+    private class FrameCallback implements Choreographer.FrameCallback {
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            long startNanos = System.nanoTime();
+            isFrameScheduled.set(false);
+            applyPendingGestures();
+            loadMissingPages();
+            boolean isAnimating = renderer.advanceAnimation(frameTimeNanos);
+            drawFrame();
+            recordFrame(frameTimeNanos, System.nanoTime() - startNanos);
+            if (isAnimating) requestRender();
+            Handler handler = renderHandler;
+            if (handler != null && renderer.hasPendingTiles()) handler.post(tileRenderTask);
+        }
+    }
+
+    private class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
+
+        private final PointF focus = new PointF();
+
+        @Override
+        public boolean onScaleBegin(ScaleGestureDetector detector) {
+            focus.set(detector.getFocusX(), detector.getFocusY());
+            synchronized (gestureLock) {
+                isScaling = publishedPlotRect.contains(focus.x, focus.y);
+                return isScaling;
+            }
+        }
+
+        @Override
+        public boolean onScale(ScaleGestureDetector detector) {
+            if (detector == null) return false;
+            synchronized (gestureLock) {
+                pendingScaleFactor *= detector.getScaleFactor();
+                pendingFocusX = focus.x;
+                pendingFocusY = focus.y;
+            }
+            requestRender();
+            return true;
+        }
+
+        @Override
+        public void onScaleEnd(ScaleGestureDetector detector) {
+            isScaledNow = true;
+            synchronized (gestureLock) {
+                isScaling = false;
+            }
+            requestRender();
+        }
+    }
+
+}
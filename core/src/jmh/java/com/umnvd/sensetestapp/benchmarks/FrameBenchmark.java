@@ -0,0 +1,101 @@
+package com.umnvd.sensetestapp.benchmarks;
+
+import com.umnvd.sensetestapp.models.DecimationPyramid;
+import com.umnvd.sensetestapp.models.PointSeries;
+import com.umnvd.sensetestapp.views.GraphDecimator;
+import com.umnvd.sensetestapp.views.TickGenerator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame cost of the graph on a 1080 pixels wide plot: the visible range, the y
+ * extremes for auto-fit, the ticks, the decimation walk and the mapping of the kept rows
+ * to screen coordinates, which the renderer computes from the long offsets in double.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FrameBenchmark {
+
+    private static final float WIDTH = 1080f;
+    private static final float HEIGHT = 1920f;
+    private static final float MIN_TICK_SPACING = 120f;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int rowsCount;
+
+    /**
+     * Part of the series which is visible, 1 is fully zoomed out.
+     */
+    @Param({"1", "0.01"})
+    public double visibleFraction;
+
+    private PointSeries series;
+    private final DecimationPyramid pyramid = new DecimationPyramid();
+    private final GraphDecimator decimator = new GraphDecimator(pyramid);
+    private final TickGenerator xTicks = new TickGenerator();
+    private final TickGenerator yTicks = new TickGenerator();
+
+    private double visibleMinX;
+    private double visibleMaxX;
+    private double scaleX;
+    private double translateX;
+    private double scaleY;
+    private double translateY;
+    private final float[] segments = new float[(int) WIDTH * 4 * 2];
+    private int segmentsLength;
+    private final GraphDecimator.SegmentConsumer consumer = this::addSegment;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        series = SyntheticData.createSeries(rowsCount, true);
+        pyramid.build(series);
+
+        double visibleRange = (rowsCount - 1) * visibleFraction;
+        visibleMinX = (rowsCount - 1 - visibleRange) / 2;
+        visibleMaxX = visibleMinX + visibleRange;
+        scaleX = WIDTH / visibleRange;
+        translateX = -visibleMinX * scaleX;
+    }
+
+    @Benchmark
+    public int frame() {
+        int startIndex = series.lowerBoundX((long) Math.floor(visibleMinX));
+        int endIndex = series.upperBoundX((long) Math.ceil(visibleMaxX));
+
+        long minY = Long.MAX_VALUE;
+        long maxY = Long.MIN_VALUE;
+        for (int column = 0; column < SyntheticData.Y_COLUMNS_COUNT; column++) {
+            minY = Math.min(minY, series.getY(column, pyramid.getRangeMinIndex(column, startIndex, endIndex)));
+            maxY = Math.max(maxY, series.getY(column, pyramid.getRangeMaxIndex(column, startIndex, endIndex)));
+        }
+        scaleY = -HEIGHT / Math.max((double) maxY - minY, 1d);
+        translateY = -maxY * scaleY;
+
+        xTicks.update(visibleMinX, visibleMaxX, scaleX, MIN_TICK_SPACING, series.getX(0), series.getX(rowsCount - 1));
+        yTicks.update(minY, maxY, -scaleY, MIN_TICK_SPACING, minY, maxY);
+
+        segmentsLength = 0;
+        decimator.decimate(0L, startIndex, endIndex, WIDTH, scaleX, translateX, consumer);
+        return segmentsLength + xTicks.getCount() + yTicks.getCount();
+    }
+
+    private void addSegment(int column, int fromIndex, int toIndex) {
+        if (segmentsLength == segments.length) segmentsLength = 0;
+        segments[segmentsLength++] = (float) (series.getX(fromIndex) * scaleX + translateX);
+        segments[segmentsLength++] = (float) (series.getY(column, fromIndex) * scaleY + translateY);
+        segments[segmentsLength++] = (float) (series.getX(toIndex) * scaleX + translateX);
+        segments[segmentsLength++] = (float) (series.getY(column, toIndex) * scaleY + translateY);
+    }
+
+}
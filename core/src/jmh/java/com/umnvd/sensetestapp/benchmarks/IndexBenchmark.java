@@ -0,0 +1,62 @@
+package com.umnvd.sensetestapp.benchmarks;
+
+import com.umnvd.sensetestapp.models.DecimationPyramid;
+import com.umnvd.sensetestapp.models.PointSeries;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work done once per loaded series before the first frame: sorting by x and building
+ * the decimation pyramid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IndexBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int rowsCount;
+
+    private PointSeries shuffled;
+    private PointSeries sorted;
+    private PointSeries series;
+    private final DecimationPyramid pyramid = new DecimationPyramid();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        shuffled = SyntheticData.createSeries(rowsCount, false);
+        sorted = SyntheticData.createSeries(rowsCount, true);
+    }
+
+    /**
+     * A sort mutates the series, so each invocation gets a fresh copy. The copy is not
+     * measured, which makes this level acceptable despite its per-invocation overhead.
+     */
+    @Setup(Level.Invocation)
+    public void copyShuffled() {
+        series = shuffled.copy();
+    }
+
+    @Benchmark
+    public PointSeries sortShuffled() {
+        series.sortByX();
+        return series;
+    }
+
+    @Benchmark
+    public DecimationPyramid buildPyramid() {
+        pyramid.build(sorted);
+        return pyramid;
+    }
+
+}
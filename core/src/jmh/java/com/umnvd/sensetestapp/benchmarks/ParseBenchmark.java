@@ -0,0 +1,198 @@
+package com.umnvd.sensetestapp.benchmarks;
+
+import com.umnvd.sensetestapp.data.BadRowReport;
+import com.umnvd.sensetestapp.data.CSVParser;
+import com.umnvd.sensetestapp.data.CSVSchema;
+import com.umnvd.sensetestapp.data.ParallelCSVParser;
+import com.umnvd.sensetestapp.data.PipelinedInflater;
+import com.umnvd.sensetestapp.models.PointSeries;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Parse throughput, the {@code megabytes} and {@code rows} counters are reported per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParseBenchmark {
+
+    private static final int BAD_ROWS_INTERVAL = 100;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int rowsCount;
+
+    private byte[] csv;
+    private byte[] dirtyCSV;
+    private final BadRowReport badRowReport = new BadRowReport();
+    private byte[] compressedCSV;
+    private final ExecutorService inflateExecutor = Executors.newSingleThreadExecutor();
+    private final byte[] inflateBuffer = new byte[PipelinedInflater.BUFFER_SIZE];
+    private File file;
+    private RandomAccessFile randomAccessFile;
+    private final ParallelCSVParser parallelParser = new ParallelCSVParser(ForkJoinPool.commonPool());
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        csv = SyntheticData.createCSV(rowsCount);
+        dirtyCSV = SyntheticData.createCSV(rowsCount, BAD_ROWS_INTERVAL);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(csv.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(csv);
+        }
+        compressedCSV = compressed.toByteArray();
+        file = File.createTempFile("benchmark", ".csv");
+        Files.write(file.toPath(), csv);
+        randomAccessFile = new RandomAccessFile(file, "r");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        randomAccessFile.close();
+        inflateExecutor.shutdown();
+        if (!file.delete()) file.deleteOnExit();
+    }
+
+    /**
+     * Schema inference and a single-threaded parse of bytes already in memory.
+     */
+    @Benchmark
+    public PointSeries parse(Counters counters) {
+        CSVSchema schema = CSVSchema.infer(csv, Math.min(csv.length, CSVSchema.SAMPLE_SIZE), csv.length <= CSVSchema.SAMPLE_SIZE);
+        CSVParser parser = new CSVParser(schema);
+        parser.parse(csv, 0, csv.length);
+        parser.finish();
+        counters.count(csv.length, parser.getSeries().size());
+        return parser.getSeries();
+    }
+
+    /**
+     * {@link #parse(Counters)} of a file with a bad row in every {@link #BAD_ROWS_INTERVAL},
+     * which are skipped and reported.
+     */
+    @Benchmark
+    public PointSeries parseDirty(Counters counters) {
+        badRowReport.clear();
+        CSVSchema schema = CSVSchema.infer(
+                dirtyCSV, Math.min(dirtyCSV.length, CSVSchema.SAMPLE_SIZE), dirtyCSV.length <= CSVSchema.SAMPLE_SIZE, true
+        );
+        CSVParser parser = new CSVParser(schema);
+        parser.setBadRowPolicy(CSVParser.BadRowPolicy.SKIP, badRowReport);
+        parser.parse(dirtyCSV, 0, dirtyCSV.length);
+        parser.finish();
+        counters.count(dirtyCSV.length, parser.getSeries().size());
+        return parser.getSeries();
+    }
+
+    /**
+     * Schema inference and the chunked parse of a file on the common pool, as the app
+     * loads files whose size is known.
+     */
+    @Benchmark
+    public PointSeries parseFile(Counters counters) throws IOException {
+        CSVSchema schema = CSVSchema.infer(csv, Math.min(csv.length, CSVSchema.SAMPLE_SIZE), csv.length <= CSVSchema.SAMPLE_SIZE);
+        FileChannel channel = randomAccessFile.getChannel();
+        PointSeries series = parallelParser.parse(channel, channel.size(), schema);
+        counters.count(csv.length, series.size());
+        return series;
+    }
+
+    /**
+     * Parse of gzip bytes inflated on another thread, the counters are of the inflated bytes.
+     */
+    @Benchmark
+    public PointSeries parseGzip(Counters counters) throws IOException {
+        try (PipelinedInflater inflater = new PipelinedInflater(
+                new ByteArrayInputStream(compressedCSV), inflateExecutor
+        )) {
+            ByteBuffer buffer = inflater.take();
+            CSVSchema schema = CSVSchema.infer(buffer.array(), buffer.limit(), buffer.limit() < PipelinedInflater.BUFFER_SIZE);
+            CSVParser parser = new CSVParser(schema);
+            while (buffer != null) {
+                parser.parse(buffer);
+                inflater.recycle(buffer);
+                buffer = inflater.take();
+            }
+            parser.finish();
+            counters.count(csv.length, parser.getSeries().size());
+            return parser.getSeries();
+        }
+    }
+
+    /**
+     * Baseline for {@link #parseGzip(Counters)}: inflating and parsing in turns on one thread.
+     */
+    @Benchmark
+    public PointSeries parseGzipSerially(Counters counters) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressedCSV))) {
+            CSVParser parser = null;
+            int read;
+            while ((read = readFully(gzip, inflateBuffer)) > 0) {
+                if (parser == null) {
+                    parser = new CSVParser(CSVSchema.infer(inflateBuffer, read, read < inflateBuffer.length));
+                }
+                parser.parse(inflateBuffer, 0, read);
+            }
+            parser.finish();
+            counters.count(csv.length, parser.getSeries().size());
+            return parser.getSeries();
+        }
+    }
+
+    private static int readFully(GZIPInputStream gzip, byte[] bytes) throws IOException {
+        int position = 0;
+        int read;
+        while (position < bytes.length && (read = gzip.read(bytes, position, bytes.length - position)) > 0) {
+            position += read;
+        }
+        return position;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+
+        private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+
+        public double megabytes;
+        public long rows;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+            rows = 0;
+        }
+
+        void count(int bytesCount, int rowsCount) {
+            megabytes += bytesCount / BYTES_PER_MEGABYTE;
+            rows += rowsCount;
+        }
+
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.umnvd.sensetestapp.benchmarks;
+
+import com.umnvd.sensetestapp.models.PointSeries;
+import com.umnvd.sensetestapp.models.ValueFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Deterministic datasets for the benchmarks: a random walk of two decimal columns against
+ * an increasing integer x, so every run of a benchmark sees exactly the same data.
+ */
+final class SyntheticData {
+
+    static final int Y_COLUMNS_COUNT = 2;
+
+    private static final long SEED = 42L;
+    private static final int SCALE = 3;
+
+    private SyntheticData() {
+    }
+
+    /**
+     * CSV with a header and {@code rowsCount} rows of {@code x,y1,y2}, like {@code 17,-3.250,12.005}.
+     */
+    static byte[] createCSV(int rowsCount) {
+        return createCSV(rowsCount, 0);
+    }
+
+    /**
+     * Like {@link #createCSV(int)}, but every {@code badRowsInterval}-th row is broken in
+     * one of the ways dirty files are: a missing column, a stray word or an overflowing
+     * value. 0 keeps all rows valid.
+     */
+    static byte[] createCSV(int rowsCount, int badRowsInterval) {
+        PointSeries series = createSeries(rowsCount, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(rowsCount * 24 + 16);
+        StringBuilder line = new StringBuilder(64);
+        line.append("x,first,second\n");
+        for (int i = 0; i < rowsCount; i++) {
+            line.append(series.getX(i));
+            for (int column = 0; column < Y_COLUMNS_COUNT; column++) {
+                line.append(',');
+                appendDecimal(line, series.getY(column, i));
+            }
+            if (badRowsInterval > 0 && i % badRowsInterval == badRowsInterval - 1) breakRow(line, i / badRowsInterval);
+            line.append('\n');
+            byte[] bytes = line.toString().getBytes(StandardCharsets.US_ASCII);
+            out.write(bytes, 0, bytes.length);
+            line.setLength(0);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param isSorted whether the rows are in x order, otherwise they are shuffled
+     */
+    static PointSeries createSeries(int rowsCount, boolean isSorted) {
+        Random random = new Random(SEED);
+        long[] xs = new long[rowsCount];
+        long[][] ys = new long[Y_COLUMNS_COUNT][rowsCount];
+        for (int column = 0; column < Y_COLUMNS_COUNT; column++) {
+            long y = 0;
+            for (int i = 0; i < rowsCount; i++) {
+                y += random.nextInt(2001) - 1000;
+                ys[column][i] = y;
+            }
+        }
+        for (int i = 0; i < rowsCount; i++) xs[i] = i;
+        if (!isSorted) {
+            for (int i = rowsCount - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                long x = xs[i];
+                xs[i] = xs[j];
+                xs[j] = x;
+            }
+        }
+        PointSeries series = PointSeries.wrap(xs, ys);
+        series.setFormats(ValueFormat.INT, ValueFormat.decimal(SCALE));
+        return series;
+    }
+
+    private static void breakRow(StringBuilder line, int index) {
+        switch (index % 3) {
+            case 0:
+                line.setLength(line.lastIndexOf(","));
+                break;
+            case 1:
+                line.append(" n/a");
+                break;
+            default:
+                line.append("99999999999999999999");
+                break;
+        }
+    }
+
+    private static void appendDecimal(StringBuilder line, long value) {
+        if (value < 0) line.append('-');
+        long magnitude = Math.abs(value);
+        line.append(magnitude / 1000).append('.');
+        long fraction = magnitude % 1000;
+        if (fraction < 100) line.append('0');
+        if (fraction < 10) line.append('0');
+        line.append(fraction);
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.umnvd.sensetestapp.data;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Rows a lenient {@link CSVParser} skipped or clamped instead of failing: their count and
+ * the line number, byte offset and reason of the first {@link #MAX_RECORDED_ROWS} of them,
+ * so that the report stays small however dirty the file is.
+ */
+public final class BadRowReport {
+
+    public static final int MAX_RECORDED_ROWS = 16;
+    /**
+     * Rows whose details are kept by {@link #writeSummary(ByteBuffer)}.
+     */
+    public static final int SUMMARY_RECORDED_ROWS = 4;
+    public static final int SUMMARY_SIZE = 8 + 8 + 4 + SUMMARY_RECORDED_ROWS * (8 + 8 + 4 + 4);
+
+    private long skippedRowsCount = 0;
+    private long clampedRowsCount = 0;
+    private int recordedCount = 0;
+    private final long[] lineNumbers = new long[MAX_RECORDED_ROWS];
+    private final long[] byteOffsets = new long[MAX_RECORDED_ROWS];
+    private final Reason[] reasons = new Reason[MAX_RECORDED_ROWS];
+    private final boolean[] clamped = new boolean[MAX_RECORDED_ROWS];
+
+    /**
+     * @param byteOffset offset of the first byte of the row from the start of the file
+     * @param isClamped  whether the row was kept with its values clamped
+     */
+    void add(long lineNumber, long byteOffset, Reason reason, boolean isClamped) {
+        if (isClamped) clampedRowsCount++;
+        else skippedRowsCount++;
+        if (recordedCount == MAX_RECORDED_ROWS) return;
+        lineNumbers[recordedCount] = lineNumber;
+        byteOffsets[recordedCount] = byteOffset;
+        reasons[recordedCount] = reason;
+        clamped[recordedCount] = isClamped;
+        recordedCount++;
+    }
+
+    /**
+     * Appends the rows of a report of a later part of the same file, whose line numbers
+     * start after {@code linesBefore} lines.
+     */
+    public void addAll(BadRowReport other, long linesBefore) {
+        skippedRowsCount += other.skippedRowsCount;
+        clampedRowsCount += other.clampedRowsCount;
+        int count = Math.min(other.recordedCount, MAX_RECORDED_ROWS - recordedCount);
+        for (int i = 0; i < count; i++) {
+            lineNumbers[recordedCount] = linesBefore + other.lineNumbers[i];
+            byteOffsets[recordedCount] = other.byteOffsets[i];
+            reasons[recordedCount] = other.reasons[i];
+            clamped[recordedCount] = other.clamped[i];
+            recordedCount++;
+        }
+    }
+
+    /**
+     * Writes the counts and the first {@link #SUMMARY_RECORDED_ROWS} rows in
+     * {@link #SUMMARY_SIZE} bytes, for the report to be stored with the parsed rows.
+     */
+    public void writeSummary(ByteBuffer buffer) {
+        int count = Math.min(recordedCount, SUMMARY_RECORDED_ROWS);
+        buffer.putLong(skippedRowsCount);
+        buffer.putLong(clampedRowsCount);
+        buffer.putInt(count);
+        for (int i = 0; i < SUMMARY_RECORDED_ROWS; i++) {
+            buffer.putLong(i < count ? lineNumbers[i] : 0);
+            buffer.putLong(i < count ? byteOffsets[i] : 0);
+            buffer.putInt(i < count ? reasons[i].ordinal() : 0);
+            buffer.putInt(i < count && clamped[i] ? 1 : 0);
+        }
+    }
+
+    /**
+     * Adds a summary written by {@link #writeSummary(ByteBuffer)} to this report.
+     *
+     * @throws IllegalArgumentException if the summary is not valid
+     */
+    public void readSummary(ByteBuffer buffer) {
+        long skippedRowsCount = buffer.getLong();
+        long clampedRowsCount = buffer.getLong();
+        int count = buffer.getInt();
+        if (skippedRowsCount < 0 || clampedRowsCount < 0 || count < 0 || count > SUMMARY_RECORDED_ROWS
+                || count > skippedRowsCount + clampedRowsCount) {
+            throw new IllegalArgumentException("Invalid bad rows summary");
+        }
+        BadRowReport summary = new BadRowReport();
+        for (int i = 0; i < SUMMARY_RECORDED_ROWS; i++) {
+            long lineNumber = buffer.getLong();
+            long byteOffset = buffer.getLong();
+            int reason = buffer.getInt();
+            boolean isClamped = buffer.getInt() != 0;
+            if (i >= count) continue;
+            if (reason < 0 || reason >= Reason.values().length) throw new IllegalArgumentException("Invalid reason");
+            summary.add(lineNumber, byteOffset, Reason.values()[reason], isClamped);
+        }
+        summary.skippedRowsCount = skippedRowsCount;
+        summary.clampedRowsCount = clampedRowsCount;
+        addAll(summary, 0);
+    }
+
+    public void clear() {
+        skippedRowsCount = 0;
+        clampedRowsCount = 0;
+        Arrays.fill(reasons, 0, recordedCount, null);
+        recordedCount = 0;
+    }
+
+    public boolean isEmpty() {
+        return getBadRowsCount() == 0;
+    }
+
+    /**
+     * Count of all skipped and clamped rows, recorded or not.
+     */
+    public long getBadRowsCount() {
+        return skippedRowsCount + clampedRowsCount;
+    }
+
+    public long getSkippedRowsCount() {
+        return skippedRowsCount;
+    }
+
+    public long getClampedRowsCount() {
+        return clampedRowsCount;
+    }
+
+    /**
+     * Count of the rows with details, at most {@link #MAX_RECORDED_ROWS}.
+     */
+    public int getRecordedCount() {
+        return recordedCount;
+    }
+
+    public long getLineNumber(int index) {
+        checkIndex(index);
+        return lineNumbers[index];
+    }
+
+    public long getByteOffset(int index) {
+        checkIndex(index);
+        return byteOffsets[index];
+    }
+
+    public Reason getReason(int index) {
+        checkIndex(index);
+        return reasons[index];
+    }
+
+    public boolean isClamped(int index) {
+        checkIndex(index);
+        return clamped[index];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder()
+                .append("skipped=").append(skippedRowsCount)
+                .append(" clamped=").append(clampedRowsCount);
+        for (int i = 0; i < recordedCount; i++) {
+            builder.append("\n  line ").append(lineNumbers[i])
+                    .append(" @").append(byteOffsets[i])
+                    .append(": ").append(reasons[i].getDescription())
+                    .append(clamped[i] ? " (clamped)" : " (skipped)");
+        }
+        if (getBadRowsCount() > recordedCount) builder.append("\n  ...");
+        return builder.toString();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= recordedCount) throw new IndexOutOfBoundsException("Index: " + index);
+    }
+
+    public enum Reason {
+        WRONG_COLUMNS_COUNT("wrong columns count"),
+        MISSING_VALUE("missing value"),
+        UNEXPECTED_CHARACTER("unexpected character"),
+        VALUE_OUT_OF_RANGE("value out of range"),
+        VALUE_TOO_LONG("value too long"),
+        INVALID_TIMESTAMP("invalid timestamp");
+
+        private final String description;
+
+        Reason(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+}
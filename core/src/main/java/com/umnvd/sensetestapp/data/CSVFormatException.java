@@ -0,0 +1,24 @@
+package com.umnvd.sensetestapp.data;
+
+public class CSVFormatException extends NumberFormatException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long lineNumber;
+    private final String reason;
+
+    public CSVFormatException(long lineNumber, String reason) {
+        super("Line " + lineNumber + ": " + reason);
+        this.lineNumber = lineNumber;
+        this.reason = reason;
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+}
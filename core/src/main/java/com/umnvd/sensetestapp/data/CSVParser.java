@@ -0,0 +1,518 @@
+package com.umnvd.sensetestapp.data;
+
+import com.umnvd.sensetestapp.models.PointSeries;
+import com.umnvd.sensetestapp.models.ValueFormat;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Push parser of rows with an x column followed by one or more y columns laid out as
+ * described by a {@link CSVSchema}. Numbers are accumulated digit by digit as fixed-point
+ * longs and timestamps are parsed from a reused field buffer, so no values are allocated.
+ * <p>
+ * The schema is inferred from a sample, so the formats are widened as later rows need it:
+ * an integer column takes decimals and a decimal column more fraction digits, up to
+ * {@link ValueFormat#MAX_SCALE}, by rescaling the rows parsed so far. Only when rescaling
+ * would overflow a parsed value the extra digits are rounded off instead. Batches published
+ * before keep the narrower formats, {@link PointSeries#addAll(PointSeries)} reconciles them.
+ * <p>
+ * Invalid rows throw a {@link CSVFormatException} unless a lenient {@link BadRowPolicy} is
+ * set, then they are validated inline, skipped or clamped and recorded in a
+ * {@link BadRowReport} without throwing.
+ */
+public class CSVParser {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_FIELD_LENGTH = 64;
+    private static final long MAX_INT_VALUE = 999_999_999L;
+    // Where the current field is: before its value, in it, after a space which ended it
+    // or after the quote which closed it.
+    private static final int FIELD_LEADING = 0;
+    private static final int FIELD_VALUE = 1;
+    private static final int FIELD_TRAILING = 2;
+    private static final int FIELD_CLOSED = 3;
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+
+    private final PointSeries series;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+
+    private final byte delimiter;
+    private final int columnsCount;
+    private ValueFormat xFormat;
+    private ValueFormat yFormat;
+
+    private BatchListener batchListener;
+    private CancellationCheck cancellationCheck;
+    private int batchSize;
+    private boolean isStreaming = false;
+    private int publishedSize = 0;
+    private BadRowPolicy badRowPolicy = BadRowPolicy.FAIL;
+    private BadRowReport badRowReport;
+
+    private long lineNumber;
+    private long byteOffset;
+    private long lineByteOffset;
+    private BadRowReport.Reason badRowReason;
+    private boolean isRowClamped = false;
+    private int column = 0;
+    private ValueFormat.Type columnType;
+    private int columnScale;
+    private boolean lineStarted = false;
+    private boolean skipLineFeed = false;
+    private boolean skipLine;
+    private int fieldState = FIELD_LEADING;
+    private boolean isQuoted = false;
+
+    private long magnitude = 0;
+    private boolean negative = false;
+    private boolean signed = false;
+    private int digits = 0;
+    private int fractionDigits = -1;
+    private boolean hasDroppedDigit = false;
+    private boolean roundUp = false;
+    private boolean hasRoundedValues = false;
+    private final byte[] field = new byte[MAX_FIELD_LENGTH];
+    private int fieldLength = 0;
+    private long x;
+    private final long[] ys;
+    // Bounds of all rows, including the published ones, which must fit a wider format too.
+    private long minX = Long.MAX_VALUE;
+    private long maxX = Long.MIN_VALUE;
+    private long minY = Long.MAX_VALUE;
+    private long maxY = Long.MIN_VALUE;
+
+    public CSVParser(CSVSchema schema) {
+        this(schema, 1);
+    }
+
+    public CSVParser(CSVSchema schema, long firstLineNumber) {
+        this(schema, firstLineNumber, 0);
+    }
+
+    /**
+     * @param firstByteOffset offset of the first parsed byte in the file, bad rows are
+     *                        reported with offsets from the start of the file
+     */
+    public CSVParser(CSVSchema schema, long firstLineNumber, long firstByteOffset) {
+        this.delimiter = schema.getDelimiter();
+        this.columnsCount = schema.getColumnsCount();
+        this.xFormat = schema.getXFormat();
+        this.yFormat = schema.getYFormat();
+        this.skipLine = schema.hasHeader();
+        this.lineNumber = firstLineNumber;
+        this.byteOffset = firstByteOffset;
+        this.lineByteOffset = firstByteOffset;
+        this.ys = new long[columnsCount - 1];
+        this.series = new PointSeries(columnsCount - 1, INITIAL_CAPACITY);
+        series.setFormats(xFormat, yFormat);
+        selectColumn(0);
+    }
+
+    public void setBatchListener(int batchSize, BatchListener batchListener) {
+        this.batchSize = batchSize;
+        this.batchListener = batchListener;
+        this.isStreaming = false;
+    }
+
+    /**
+     * Like {@link #setBatchListener(int, BatchListener)}, but the listener gets the parsed
+     * rows themselves, which are removed once it returns. The listener must not keep the
+     * batch and {@link #getSeries()} only holds the rows which were not published yet,
+     * so the memory use is bounded by the batch size instead of the file size.
+     */
+    public void setStreamingBatchListener(int batchSize, BatchListener batchListener) {
+        setBatchListener(batchSize, batchListener);
+        isStreaming = true;
+    }
+
+    /**
+     * With a policy other than {@link BadRowPolicy#FAIL} invalid rows are added to
+     * {@code report} instead of failing the parse.
+     */
+    public void setBadRowPolicy(BadRowPolicy policy, BadRowReport report) {
+        if (policy != BadRowPolicy.FAIL && report == null) throw new IllegalArgumentException("Missing report");
+        this.badRowPolicy = policy;
+        this.badRowReport = report;
+    }
+
+    public void setCancellationCheck(CancellationCheck cancellationCheck) {
+        this.cancellationCheck = cancellationCheck;
+    }
+
+    /**
+     * @throws CancellationException if the cancellation check fires between chunks
+     */
+    public void parse(ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            if (cancellationCheck != null && cancellationCheck.isCancelled()) {
+                throw new CancellationException();
+            }
+            int length = Math.min(buffer.remaining(), chunk.length);
+            buffer.get(chunk, 0, length);
+            parse(chunk, 0, length);
+            if (batchListener != null && series.size() - publishedSize >= batchSize) publishBatch();
+        }
+    }
+
+    public void parse(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = bytes[i];
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (b == '\n') {
+                    lineByteOffset++;
+                    continue;
+                }
+            }
+
+            if (b == '\n' || b == '\r') {
+                if (lineStarted) completeLine();
+                else lineNumber++;
+                skipLine = false;
+                skipLineFeed = b == '\r';
+                lineByteOffset = byteOffset + (i - offset) + 1;
+                continue;
+            }
+            if (skipLine) continue;
+
+            lineStarted = true;
+            if (b == delimiter) {
+                completeField();
+                if (column + 1 >= columnsCount) rejectRow(BadRowReport.Reason.WRONG_COLUMNS_COUNT);
+                else selectColumn(column + 1);
+            } else if (b == ' ' || b == '"') {
+                appendPadding(b);
+            } else if (fieldState >= FIELD_TRAILING) {
+                rejectRow(BadRowReport.Reason.UNEXPECTED_CHARACTER);
+            } else {
+                fieldState = FIELD_VALUE;
+                appendValueByte(b);
+            }
+        }
+        byteOffset += length;
+    }
+
+    public void finish() {
+        if (lineStarted) completeLine();
+        flush();
+    }
+
+    /**
+     * Publishes the rows completed so far, an unterminated line stays pending until more
+     * bytes or {@link #finish()} complete it.
+     */
+    public void flush() {
+        if (batchListener != null && series.size() > publishedSize) publishBatch();
+    }
+
+    public PointSeries getSeries() {
+        return series;
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Seeds the bounds with the rows parsed before the first one of this parser, in its
+     * formats, so that a column is only widened if those rows fit the wider format too.
+     */
+    void setPrecedingBounds(long minX, long maxX, long minY, long maxY) {
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+    }
+
+    long getMinX() {
+        return minX;
+    }
+
+    long getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * Whether some fraction digits were rounded off since the column couldn't take them,
+     * which depends on the scale it had at the time.
+     */
+    boolean hasRoundedValues() {
+        return hasRoundedValues;
+    }
+
+    private void publishBatch() {
+        if (isStreaming) {
+            batchListener.onBatch(series);
+            series.clear();
+            return;
+        }
+        batchListener.onBatch(series.copyRange(publishedSize, series.size()));
+        publishedSize = series.size();
+    }
+
+    private void selectColumn(int column) {
+        ValueFormat format = column == 0 ? xFormat : yFormat;
+        this.column = column;
+        columnType = format.getType();
+        columnScale = format.getScale();
+    }
+
+    private void appendValueByte(byte b) {
+        if (columnType == ValueFormat.Type.TIMESTAMP) {
+            appendFieldByte(b);
+        } else if (b >= '0' && b <= '9') {
+            appendDigit(b - '0');
+        } else if (b == '.' && fractionDigits < 0) {
+            fractionDigits = 0;
+        } else if ((b == '-' || b == '+') && digits == 0 && fractionDigits < 0 && !signed) {
+            negative = b == '-';
+            signed = true;
+        } else {
+            rejectRow(BadRowReport.Reason.UNEXPECTED_CHARACTER);
+        }
+    }
+
+    /**
+     * Spaces may pad a value and quotes enclose it, but neither may split a number: a space
+     * after a number or the closing quote may only be followed by more padding. Spaces
+     * within a timestamp are a part of it.
+     */
+    private void appendPadding(byte b) {
+        if (b == ' ') {
+            if (fieldState != FIELD_VALUE) return;
+            if (columnType == ValueFormat.Type.TIMESTAMP) appendFieldByte(b);
+            else fieldState = FIELD_TRAILING;
+        } else if (fieldState == FIELD_LEADING && !isQuoted) {
+            isQuoted = true;
+        } else if (isQuoted && fieldState != FIELD_CLOSED) {
+            fieldState = FIELD_CLOSED;
+        } else {
+            rejectRow(BadRowReport.Reason.UNEXPECTED_CHARACTER);
+        }
+    }
+
+    /**
+     * Fraction digits past the scale of the column widen it once the value is complete.
+     * Digits past the largest scale, or which the value can't hold, are dropped and the
+     * first of them rounds the value.
+     */
+    private void appendDigit(int digit) {
+        if (fractionDigits >= 0) {
+            if (fractionDigits == ValueFormat.MAX_SCALE
+                    || (fractionDigits >= columnScale && magnitude > (Long.MAX_VALUE - digit) / 10)) {
+                if (!hasDroppedDigit) roundUp = digit >= 5;
+                if (fractionDigits < ValueFormat.MAX_SCALE) hasRoundedValues = true;
+                hasDroppedDigit = true;
+                return;
+            }
+            fractionDigits++;
+        }
+        if (magnitude > (Long.MAX_VALUE - digit) / 10) {
+            if (clampOutOfRange()) magnitude = Long.MAX_VALUE;
+            return;
+        }
+        magnitude = magnitude * 10 + digit;
+        digits++;
+    }
+
+    private void appendFieldByte(byte b) {
+        if (fieldLength == field.length) {
+            rejectRow(BadRowReport.Reason.VALUE_TOO_LONG);
+            return;
+        }
+        field[fieldLength++] = b;
+    }
+
+    private void completeField() {
+        long value = columnType == ValueFormat.Type.TIMESTAMP ? completeTimestamp() : completeNumber();
+        if (column == 0) x = value;
+        else ys[column - 1] = value;
+        resetField();
+    }
+
+    private void resetField() {
+        magnitude = 0;
+        negative = false;
+        signed = false;
+        digits = 0;
+        fractionDigits = -1;
+        hasDroppedDigit = false;
+        roundUp = false;
+        fieldLength = 0;
+        fieldState = FIELD_LEADING;
+        isQuoted = false;
+    }
+
+    private long completeNumber() {
+        if (digits == 0) {
+            rejectRow(BadRowReport.Reason.MISSING_VALUE);
+            return 0;
+        }
+        if (fractionDigits > columnScale && !widenColumn(ValueFormat.decimal(fractionDigits))) {
+            roundFraction();
+        } else if (columnType == ValueFormat.Type.INT && magnitude > MAX_INT_VALUE) {
+            widenColumn(ValueFormat.LONG);
+        }
+        long factor = POWERS_OF_TEN[columnScale - Math.max(fractionDigits, 0)];
+        if (magnitude > (Long.MAX_VALUE - 1) / factor) {
+            if (!clampOutOfRange()) return 0;
+            return negative ? -Long.MAX_VALUE : Long.MAX_VALUE;
+        }
+        long scaled = magnitude * factor + (roundUp ? 1 : 0);
+        return negative ? -scaled : scaled;
+    }
+
+    /**
+     * Widens the format of the current column to hold values of {@code format}, rescaling
+     * the rows parsed so far and the completed fields of the current one.
+     *
+     * @return false if some of the values wouldn't fit a long in the wider format
+     */
+    private boolean widenColumn(ValueFormat format) {
+        boolean isX = column == 0;
+        ValueFormat widened = (isX ? xFormat : yFormat).widen(format);
+        long factor = (isX ? xFormat : yFormat).getRescaleFactor(widened);
+        if (factor > 1) {
+            long min = isX ? minX : minY;
+            long max = isX ? maxX : maxY;
+            if (min <= max && (!ValueFormat.canRescale(min, factor) || !ValueFormat.canRescale(max, factor))) {
+                return false;
+            }
+            for (int i = 0; i < column - 1; i++) {
+                if (!ValueFormat.canRescale(ys[i], factor)) return false;
+            }
+        }
+        ValueFormat newXFormat = isX ? widened : xFormat;
+        ValueFormat newYFormat = isX ? yFormat : widened;
+        if (!series.widenFormats(newXFormat, newYFormat)) return false;
+        xFormat = newXFormat;
+        yFormat = newYFormat;
+        if (factor > 1) {
+            if (isX) {
+                if (minX <= maxX) {
+                    minX *= factor;
+                    maxX *= factor;
+                }
+            } else {
+                if (minY <= maxY) {
+                    minY *= factor;
+                    maxY *= factor;
+                }
+                for (int i = 0; i < column - 1; i++) ys[i] *= factor;
+            }
+        }
+        selectColumn(column);
+        return true;
+    }
+
+    /**
+     * Drops the fraction digits past the scale of the column, the first of them rounds
+     * the value.
+     */
+    private void roundFraction() {
+        long divisor = POWERS_OF_TEN[fractionDigits - columnScale];
+        long remainder = magnitude % divisor;
+        magnitude /= divisor;
+        fractionDigits = columnScale;
+        roundUp = remainder * 2 >= divisor;
+        hasRoundedValues = true;
+    }
+
+    private long completeTimestamp() {
+        while (fieldLength > 0 && field[fieldLength - 1] == ' ') fieldLength--;
+        if (fieldLength == 0) {
+            rejectRow(BadRowReport.Reason.MISSING_VALUE);
+            return 0;
+        }
+        long value = TimestampParser.parse(field, 0, fieldLength);
+        if (value == TimestampParser.INVALID) rejectRow(BadRowReport.Reason.INVALID_TIMESTAMP);
+        return value;
+    }
+
+    /**
+     * Throws in the strict mode, otherwise the rest of the line is skipped and the row is
+     * reported once the line ends.
+     */
+    private void rejectRow(BadRowReport.Reason reason) {
+        if (badRowPolicy == BadRowPolicy.FAIL) {
+            throw new CSVFormatException(lineNumber, reason == BadRowReport.Reason.WRONG_COLUMNS_COUNT
+                    ? "expected " + columnsCount + " columns"
+                    : reason.getDescription());
+        }
+        if (badRowReason == null) badRowReason = reason;
+        skipLine = true;
+    }
+
+    /**
+     * @return whether an out of range value should be clamped, otherwise the row is rejected
+     */
+    private boolean clampOutOfRange() {
+        if (badRowPolicy != BadRowPolicy.CLAMP) {
+            rejectRow(BadRowReport.Reason.VALUE_OUT_OF_RANGE);
+            return false;
+        }
+        isRowClamped = true;
+        return true;
+    }
+
+    private void completeLine() {
+        if (badRowReason == null) {
+            completeField();
+            if (badRowReason == null && column + 1 != columnsCount) {
+                rejectRow(BadRowReport.Reason.WRONG_COLUMNS_COUNT);
+            }
+        }
+        if (badRowReason == null) {
+            series.addRow(x, ys);
+            includeBounds();
+            if (isRowClamped) {
+                badRowReport.add(lineNumber, lineByteOffset, BadRowReport.Reason.VALUE_OUT_OF_RANGE, true);
+            }
+        } else {
+            badRowReport.add(lineNumber, lineByteOffset, badRowReason, false);
+            badRowReason = null;
+            resetField();
+        }
+        isRowClamped = false;
+        selectColumn(0);
+        lineStarted = false;
+        lineNumber++;
+    }
+
+    private void includeBounds() {
+        if (x < minX) minX = x;
+        if (x > maxX) maxX = x;
+        for (long y : ys) {
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+        }
+    }
+
+    public interface BatchListener { void onBatch(PointSeries batch);}
+    public interface CancellationCheck { boolean isCancelled();}
+
+    /**
+     * What is done with a row which can't be parsed.
+     */
+    public enum BadRowPolicy {
+        /**
+         * The parse fails with a {@link CSVFormatException}.
+         */
+        FAIL,
+        /**
+         * The row is skipped.
+         */
+        SKIP,
+        /**
+         * Values out of the range of a long are clamped to it and the row is kept, other
+         * invalid rows are skipped.
+         */
+        CLAMP
+    }
+
+}
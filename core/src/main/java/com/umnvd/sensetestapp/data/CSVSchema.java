@@ -0,0 +1,251 @@
+package com.umnvd.sensetestapp.data;
+
+import androidx.annotation.Nullable;
+
+import com.umnvd.sensetestapp.models.ValueFormat;
+
+/**
+ * Layout of a CSV file inferred from a sample of its first lines: the delimiter, whether
+ * the first line is a header and the formats of the x column and the y columns. All
+ * y columns are parsed with one format, so that they share the y-axis.
+ */
+public final class CSVSchema {
+
+    public static final int SAMPLE_SIZE = 64 * 1024;
+
+    public static final CSVSchema DEFAULT = new CSVSchema((byte) ',', false, 2, ValueFormat.INT, ValueFormat.INT, 0);
+
+    private static final byte[] DELIMITERS = {',', ';', '\t', '|'};
+    private static final int MAX_SAMPLE_LINES = 1000;
+    private static final int MAX_INT_DIGITS = 9;
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final byte delimiter;
+    private final boolean hasHeader;
+    private final int columnsCount;
+    private final ValueFormat xFormat;
+    private final ValueFormat yFormat;
+    private final int sampledRowsCount;
+
+    private CSVSchema(
+            byte delimiter,
+            boolean hasHeader,
+            int columnsCount,
+            ValueFormat xFormat,
+            ValueFormat yFormat,
+            int sampledRowsCount
+    ) {
+        this.delimiter = delimiter;
+        this.hasHeader = hasHeader;
+        this.columnsCount = columnsCount;
+        this.xFormat = xFormat;
+        this.yFormat = yFormat;
+        this.sampledRowsCount = sampledRowsCount;
+    }
+
+    /**
+     * Infers the schema from the first {@code length} bytes of a file. Unless the sample
+     * is the whole file its last unterminated line is ignored.
+     *
+     * @throws CSVFormatException if no delimiter gives a consistent layout of known values
+     */
+    public static CSVSchema infer(byte[] sample, int length, boolean isWholeFile) {
+        return infer(sample, length, isWholeFile, false);
+    }
+
+    /**
+     * @param isLenient whether the lines which don't match the layout of the first line
+     *                  are ignored, as long as they are fewer than the matching ones, for
+     *                  a parser which skips bad rows
+     */
+    public static CSVSchema infer(byte[] sample, int length, boolean isWholeFile, boolean isLenient) {
+        int end = isWholeFile ? length : getLastLineEnd(sample, length);
+        CSVFormatException firstError = null;
+        for (byte delimiter : DELIMITERS) {
+            try {
+                return infer(sample, end, delimiter, isLenient);
+            } catch (CSVFormatException e) {
+                if (firstError == null) firstError = e;
+            }
+        }
+        throw firstError;
+    }
+
+    public byte getDelimiter() {
+        return delimiter;
+    }
+
+    public boolean hasHeader() {
+        return hasHeader;
+    }
+
+    /**
+     * Count of all columns, including the x column.
+     */
+    public int getColumnsCount() {
+        return columnsCount;
+    }
+
+    public ValueFormat getXFormat() {
+        return xFormat;
+    }
+
+    public ValueFormat getYFormat() {
+        return yFormat;
+    }
+
+    /**
+     * Count of the data rows the formats were inferred from, 0 means they are a guess.
+     */
+    public int getSampledRowsCount() {
+        return sampledRowsCount;
+    }
+
+    /**
+     * The same schema for a part of the file which doesn't start with the header.
+     */
+    public CSVSchema withoutHeader() {
+        if (!hasHeader) return this;
+        return new CSVSchema(delimiter, false, columnsCount, xFormat, yFormat, sampledRowsCount);
+    }
+
+    /**
+     * The same schema with the formats a parse of the whole file widened the sampled ones to.
+     */
+    public CSVSchema withFormats(ValueFormat xFormat, ValueFormat yFormat) {
+        return new CSVSchema(delimiter, hasHeader, columnsCount, xFormat, yFormat, sampledRowsCount);
+    }
+
+    private static CSVSchema infer(byte[] sample, int end, byte delimiter, boolean isLenient) {
+        boolean hasHeader = false;
+        int columnsCount = 0;
+        ValueFormat[] formats = null;
+        ValueFormat[] lineFormats = null;
+        int linesCount = 0;
+        int badLinesCount = 0;
+        long lineNumber = 0;
+        int lineStart = 0;
+        while (lineStart < end && linesCount < MAX_SAMPLE_LINES) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && sample[lineEnd] != '\n' && sample[lineEnd] != '\r') lineEnd++;
+            int nextLineStart = lineEnd;
+            if (nextLineStart < end && sample[nextLineStart] == '\r') nextLineStart++;
+            if (nextLineStart < end && sample[nextLineStart] == '\n') nextLineStart++;
+            lineNumber++;
+
+            if (lineEnd > lineStart) {
+                int lineColumnsCount = countFields(sample, lineStart, lineEnd, delimiter);
+                if (formats == null) {
+                    columnsCount = lineColumnsCount;
+                    if (columnsCount < 2) throw new CSVFormatException(lineNumber, "missing column");
+                    formats = new ValueFormat[columnsCount];
+                    lineFormats = new ValueFormat[columnsCount];
+                    hasHeader = !classifyFields(sample, lineStart, lineEnd, delimiter, new ValueFormat[columnsCount]);
+                    if (!hasHeader) classifyFields(sample, lineStart, lineEnd, delimiter, formats);
+                    linesCount++;
+                } else if (isLenient) {
+                    // Formats of a bad line are classified aside, so that it can't widen them.
+                    System.arraycopy(formats, 0, lineFormats, 0, columnsCount);
+                    if (lineColumnsCount == columnsCount
+                            && classifyFields(sample, lineStart, lineEnd, delimiter, lineFormats)) {
+                        System.arraycopy(lineFormats, 0, formats, 0, columnsCount);
+                        linesCount++;
+                    } else {
+                        badLinesCount++;
+                    }
+                } else {
+                    if (lineColumnsCount != columnsCount) {
+                        throw new CSVFormatException(lineNumber, "expected " + columnsCount + " columns");
+                    }
+                    if (!classifyFields(sample, lineStart, lineEnd, delimiter, formats)) {
+                        throw new CSVFormatException(lineNumber, "unrecognized value");
+                    }
+                    linesCount++;
+                }
+            }
+            lineStart = nextLineStart;
+        }
+        if (formats == null) return DEFAULT;
+        if (badLinesCount >= linesCount) throw new CSVFormatException(1, "too many unrecognized lines");
+
+        ValueFormat xFormat = formats[0] != null ? formats[0] : ValueFormat.INT;
+        ValueFormat yFormat = null;
+        for (int column = 1; column < columnsCount; column++) {
+            ValueFormat format = formats[column] != null ? formats[column] : ValueFormat.INT;
+            yFormat = yFormat == null ? format : yFormat.widen(format);
+            if (yFormat == null) throw new CSVFormatException(1, "mixed timestamp and numeric value columns");
+        }
+        return new CSVSchema(delimiter, hasHeader, columnsCount, xFormat, yFormat, linesCount - (hasHeader ? 1 : 0));
+    }
+
+    private static int countFields(byte[] sample, int from, int to, byte delimiter) {
+        int count = 1;
+        for (int i = from; i < to; i++) {
+            if (sample[i] == delimiter) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Widens {@code formats} by the formats of the fields of a line.
+     *
+     * @return false if some field is not a known value
+     */
+    private static boolean classifyFields(byte[] sample, int from, int to, byte delimiter, ValueFormat[] formats) {
+        int column = 0;
+        int fieldStart = from;
+        for (int i = from; i <= to; i++) {
+            if (i < to && sample[i] != delimiter) continue;
+            ValueFormat format = classify(sample, fieldStart, i);
+            if (format == null) return false;
+            ValueFormat widened = formats[column] == null ? format : formats[column].widen(format);
+            if (widened == null) return false;
+            formats[column++] = widened;
+            fieldStart = i + 1;
+        }
+        return true;
+    }
+
+    @Nullable
+    private static ValueFormat classify(byte[] sample, int from, int to) {
+        while (from < to && (sample[from] == ' ' || sample[from] == '"')) from++;
+        while (to > from && (sample[to - 1] == ' ' || sample[to - 1] == '"')) to--;
+        if (from == to) return null;
+
+        int position = from;
+        if (sample[position] == '-' || sample[position] == '+') position++;
+        int integerStart = position;
+        int integerDigits = 0;
+        while (position < to && sample[position] >= '0' && sample[position] <= '9') {
+            if (integerDigits > 0 || sample[position] != '0') integerDigits++;
+            position++;
+        }
+        boolean hasDigits = position > integerStart;
+        int fractionDigits = -1;
+        if (position < to && sample[position] == '.') {
+            position++;
+            fractionDigits = 0;
+            while (position < to && sample[position] >= '0' && sample[position] <= '9') {
+                fractionDigits++;
+                position++;
+            }
+            hasDigits |= fractionDigits > 0;
+        }
+
+        if (position == to && hasDigits) {
+            if (fractionDigits >= 0) return ValueFormat.decimal(Math.min(fractionDigits, ValueFormat.MAX_SCALE));
+            if (integerDigits <= MAX_INT_DIGITS) return ValueFormat.INT;
+            if (integerDigits <= MAX_LONG_DIGITS) return ValueFormat.LONG;
+            return null;
+        }
+        return TimestampParser.parse(sample, from, to) != TimestampParser.INVALID ? ValueFormat.TIMESTAMP : null;
+    }
+
+    private static int getLastLineEnd(byte[] sample, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (sample[i] == '\n' || sample[i] == '\r') return i + 1;
+        }
+        return 0;
+    }
+
+}
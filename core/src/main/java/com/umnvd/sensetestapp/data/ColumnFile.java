@@ -0,0 +1,340 @@
+package com.umnvd.sensetestapp.data;
+
+import com.umnvd.sensetestapp.models.PointSeries;
+import com.umnvd.sensetestapp.models.ValueFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Series stored in a file written by {@link ColumnFileWriter}, for series which don't fit
+ * in the heap. Rows are read a range of pages at a time through an LRU of memory-mapped
+ * windows, so the heap only holds the rows which are drawn.
+ * <p>
+ * Besides the rows (level 0) the file holds summary levels: every {@link #LEVEL_BRANCHING}
+ * rows of a level are two rows of the next level, the first x with the smallest y and
+ * the last x with the largest y of each column. The top level has at most
+ * {@link #OVERVIEW_MAX_ROWS} rows and is kept in the heap as the overview.
+ * <p>
+ * The header also keeps the bad row policy of the conversion and a summary of the rows it
+ * skipped or clamped, so that a reopened file reports them like a fresh conversion.
+ * <p>
+ * File layout (little-endian): a header of {@link #HEADER_SIZE} bytes, the pages of all
+ * levels, then the first x of every page of every level. A page is {@link #PAGE_ROWS}
+ * x values followed by as many values of every y column, the last page of a level is
+ * padded. Reads are thread-safe.
+ */
+public final class ColumnFile {
+
+    public static final int PAGE_ROWS = 4096;
+    public static final int LEVEL_BRANCHING = 16;
+    public static final int OVERVIEW_MAX_ROWS = 4 * PAGE_ROWS;
+
+    static final int MAGIC = 0x43535650;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 256;
+    static final int MAX_LEVELS = 8;
+    static final int BYTES_PER_VALUE = 8;
+
+    private static final int MAX_VISIBLE_PAGES = 16;
+    private static final long WINDOW_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_WINDOWS = 16;
+
+    private final File file;
+    private final long sourceSize;
+    private final long sourceLastModified;
+    private final int yColumnsCount;
+    private final ValueFormat xFormat;
+    private final ValueFormat yFormat;
+    private final long minY;
+    private final long maxY;
+    private final CSVParser.BadRowPolicy badRowPolicy;
+    private final BadRowReport badRowReport = new BadRowReport();
+    private final long[] levelRowsCounts;
+    private final long[] levelFirstPages;
+    private final long[][] pageFirstXs;
+    private final long pageSize;
+    private final int windowPages;
+    private final long pagesCount;
+    private final PointSeries overview;
+
+    private final Map<Long, MappedByteBuffer> windows =
+            new LinkedHashMap<Long, MappedByteBuffer>(MAX_WINDOWS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, MappedByteBuffer> eldest) {
+                    return size() > MAX_WINDOWS;
+                }
+            };
+
+    private ColumnFile(File file, ByteBuffer header) throws IOException {
+        this.file = file;
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) throw new IOException("Not a column file");
+        sourceSize = header.getLong();
+        sourceLastModified = header.getLong();
+        yColumnsCount = header.getInt();
+        if (header.getInt() != PAGE_ROWS || yColumnsCount < 1) throw new IOException("Unsupported layout");
+        xFormat = ValueFormat.of(header.getInt(), header.getInt());
+        yFormat = ValueFormat.of(header.getInt(), header.getInt());
+        minY = header.getLong();
+        maxY = header.getLong();
+        badRowPolicy = CSVParser.BadRowPolicy.values()[header.getInt()];
+        badRowReport.readSummary(header);
+        int levelsCount = header.getInt();
+        if (levelsCount < 1 || levelsCount > MAX_LEVELS) throw new IOException("Invalid levels count");
+        levelRowsCounts = new long[levelsCount];
+        levelFirstPages = new long[levelsCount];
+        long pages = 0;
+        for (int level = 0; level < levelsCount; level++) {
+            levelRowsCounts[level] = header.getLong();
+            levelFirstPages[level] = pages;
+            pages += getPagesCount(level);
+        }
+        pagesCount = pages;
+        pageSize = (long) PAGE_ROWS * BYTES_PER_VALUE * (yColumnsCount + 1);
+        windowPages = (int) Math.max(WINDOW_SIZE / pageSize, 1);
+        pageFirstXs = new long[levelsCount][];
+        overview = readPageIndexAndOverview();
+    }
+
+    /**
+     * @throws IOException if the file can't be read or isn't a valid column file
+     */
+    public static ColumnFile open(File file) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            FileChannel channel = input.getChannel();
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // Read the whole header.
+            }
+            if (header.hasRemaining()) throw new IOException("Truncated header");
+            header.flip();
+            return new ColumnFile(file, header);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Invalid column file", e);
+        }
+    }
+
+    public long getSourceSize() {
+        return sourceSize;
+    }
+
+    public long getSourceLastModified() {
+        return sourceLastModified;
+    }
+
+    public int getYColumnsCount() {
+        return yColumnsCount;
+    }
+
+    public ValueFormat getXFormat() {
+        return xFormat;
+    }
+
+    public ValueFormat getYFormat() {
+        return yFormat;
+    }
+
+    /**
+     * Policy the file was converted with, which the {@link #getBadRowReport() report} applies to.
+     */
+    public CSVParser.BadRowPolicy getBadRowPolicy() {
+        return badRowPolicy;
+    }
+
+    /**
+     * Summary of the rows the conversion skipped or clamped, not to be modified.
+     */
+    public BadRowReport getBadRowReport() {
+        return badRowReport;
+    }
+
+    public long getRowsCount() {
+        return levelRowsCounts[0];
+    }
+
+    public long getFirstX() {
+        return pageFirstXs[0][0];
+    }
+
+    public long getLastX() {
+        return overview.getX(overview.size() - 1);
+    }
+
+    /**
+     * Smallest y over all columns and rows.
+     */
+    public long getMinY() {
+        return minY;
+    }
+
+    /**
+     * Largest y over all columns and rows.
+     */
+    public long getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * All rows of the top level, kept in the heap.
+     */
+    public PointSeries getOverview() {
+        return overview;
+    }
+
+    /**
+     * Range of the whole top level, the rows of {@link #getOverview()}.
+     */
+    public Range getOverviewRange() {
+        int level = levelRowsCounts.length - 1;
+        return new Range(level, 0, getPagesCount(level));
+    }
+
+    /**
+     * Pages holding the rows with x in [{@code minX}, {@code maxX}], of the finest level
+     * on which they span at most {@link #MAX_VISIBLE_PAGES} pages. Only reads the page
+     * index, so it is cheap enough to be called every frame.
+     */
+    public Range getVisibleRange(double minX, double maxX) {
+        for (int level = 0; level < levelRowsCounts.length - 1; level++) {
+            int fromPage = getPageContaining(level, minX);
+            int toPage = getPageContaining(level, maxX) + 1;
+            if (toPage - fromPage <= MAX_VISIBLE_PAGES) return new Range(level, fromPage, toPage);
+        }
+        return getOverviewRange();
+    }
+
+    /**
+     * {@code range} extended by its own length on both sides, so that panning by a screen
+     * stays within the loaded pages.
+     */
+    public Range extend(Range range) {
+        int length = range.toPage - range.fromPage;
+        return new Range(
+                range.level,
+                Math.max(range.fromPage - length, 0),
+                Math.min(range.toPage + length, getPagesCount(range.level))
+        );
+    }
+
+    /**
+     * Copies the rows of {@code range} into a new series, sorted by x.
+     */
+    public synchronized PointSeries read(Range range) throws IOException {
+        long firstRow = (long) range.fromPage * PAGE_ROWS;
+        int rowsCount = (int) (Math.min((long) range.toPage * PAGE_ROWS, levelRowsCounts[range.level]) - firstRow);
+        long[] xs = new long[rowsCount];
+        long[][] ys = new long[yColumnsCount][rowsCount];
+        for (int page = range.fromPage; page < range.toPage; page++) {
+            int offset = (page - range.fromPage) * PAGE_ROWS;
+            int pageRowsCount = Math.min(PAGE_ROWS, rowsCount - offset);
+            readPage(levelFirstPages[range.level] + page, pageRowsCount, xs, ys, offset);
+        }
+        PointSeries series = PointSeries.wrap(xs, ys);
+        series.setFormats(xFormat, yFormat);
+        return series;
+    }
+
+    private int getPagesCount(int level) {
+        return (int) ((levelRowsCounts[level] + PAGE_ROWS - 1) / PAGE_ROWS);
+    }
+
+    /**
+     * Index of the last page of {@code level} whose first x is at most {@code x}, 0 if
+     * there is none.
+     */
+    private int getPageContaining(int level, double x) {
+        long[] firstXs = pageFirstXs[level];
+        int low = 0;
+        int high = firstXs.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (firstXs[middle] <= x) low = middle + 1;
+            else high = middle;
+        }
+        return Math.max(low - 1, 0);
+    }
+
+    private PointSeries readPageIndexAndOverview() throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            long indexOffset = HEADER_SIZE + pagesCount * pageSize;
+            long indexSize = pagesCount * BYTES_PER_VALUE;
+            if (input.length() != indexOffset + indexSize) throw new IOException("Unexpected file size");
+            MappedByteBuffer index = input.getChannel().map(FileChannel.MapMode.READ_ONLY, indexOffset, indexSize);
+            LongBuffer values = index.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            for (int level = 0; level < levelRowsCounts.length; level++) {
+                pageFirstXs[level] = new long[getPagesCount(level)];
+                values.get(pageFirstXs[level]);
+            }
+        }
+        if (levelRowsCounts[0] == 0) throw new IOException("No rows");
+        return read(getOverviewRange());
+    }
+
+    private void readPage(long page, int rowsCount, long[] xs, long[][] ys, int offset) throws IOException {
+        long window = page / windowPages;
+        ByteBuffer buffer = getWindow(window).duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int pageStart = (int) ((page - window * windowPages) * pageSize);
+        for (int column = 0; column <= yColumnsCount; column++) {
+            buffer.position(pageStart + column * PAGE_ROWS * BYTES_PER_VALUE);
+            buffer.asLongBuffer().get(column == 0 ? xs : ys[column - 1], offset, rowsCount);
+        }
+    }
+
+    /**
+     * The channel is only open while a window is mapped, a mapping stays valid after its
+     * channel is closed.
+     */
+    private MappedByteBuffer getWindow(long window) throws IOException {
+        MappedByteBuffer buffer = windows.get(window);
+        if (buffer != null) return buffer;
+        long firstPage = window * windowPages;
+        long size = Math.min(windowPages, pagesCount - firstPage) * pageSize;
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + firstPage * pageSize, size);
+        }
+        windows.put(window, buffer);
+        return buffer;
+    }
+
+    /**
+     * Pages [{@link #fromPage}, {@link #toPage}) of a level.
+     */
+    public static final class Range {
+
+        public final int level;
+        public final int fromPage;
+        public final int toPage;
+
+        Range(int level, int fromPage, int toPage) {
+            this.level = level;
+            this.fromPage = fromPage;
+            this.toPage = toPage;
+        }
+
+        public boolean contains(Range other) {
+            return level == other.level && fromPage <= other.fromPage && other.toPage <= toPage;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Range range = (Range) o;
+            return level == range.level && fromPage == range.fromPage && toPage == range.toPage;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * level + fromPage) + toPage;
+        }
+    }
+
+}
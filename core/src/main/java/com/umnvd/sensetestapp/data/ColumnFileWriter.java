@@ -0,0 +1,347 @@
+package com.umnvd.sensetestapp.data;
+
+import com.umnvd.sensetestapp.models.PointSeries;
+import com.umnvd.sensetestapp.models.ValueFormat;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes rows sorted by x into a {@link ColumnFile} page by page, building its summary
+ * levels along the way, so that a series of any size is converted with a few pages of
+ * memory. Level 0 is written into the target file right away, the summary levels into
+ * temporary files which are appended to it by {@link #finish()}.
+ */
+public class ColumnFileWriter implements CSVParser.BatchListener, Closeable {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File file;
+    private final File tempFile;
+    private final int yColumnsCount;
+    private final ValueFormat xFormat;
+    private final ValueFormat yFormat;
+    private final long sourceSize;
+    private final long sourceLastModified;
+    private final int pageSize;
+
+    private final List<Level> levels = new ArrayList<>();
+    private final long[] rowYs;
+    private long minY = Long.MAX_VALUE;
+    private long maxY = Long.MIN_VALUE;
+    private long lastX = Long.MIN_VALUE;
+    private CSVParser.BadRowPolicy badRowPolicy = CSVParser.BadRowPolicy.FAIL;
+    private BadRowReport badRowReport = new BadRowReport();
+    private IOException error;
+    private boolean finished = false;
+
+    /**
+     * @param sourceSize         size of the file the rows come from, stored to validate the file later
+     * @param sourceLastModified modification time of the source file
+     */
+    public ColumnFileWriter(
+            File file,
+            int yColumnsCount,
+            ValueFormat xFormat,
+            ValueFormat yFormat,
+            long sourceSize,
+            long sourceLastModified
+    ) throws IOException {
+        this.file = file;
+        this.tempFile = new File(file.getPath() + TEMP_SUFFIX);
+        this.yColumnsCount = yColumnsCount;
+        this.xFormat = xFormat;
+        this.yFormat = yFormat;
+        this.sourceSize = sourceSize;
+        this.sourceLastModified = sourceLastModified;
+        this.pageSize = ColumnFile.PAGE_ROWS * ColumnFile.BYTES_PER_VALUE * (yColumnsCount + 1);
+        this.rowYs = new long[yColumnsCount];
+
+        FileChannel channel = new RandomAccessFile(tempFile, "rw").getChannel();
+        channel.truncate(0);
+        channel.position(ColumnFile.HEADER_SIZE);
+        levels.add(new Level(channel, null));
+    }
+
+    /**
+     * Stores the summary of {@code report} in the file once it is {@link #finish() finished},
+     * the report may still be filled by the parse until then.
+     */
+    public void setBadRowReport(CSVParser.BadRowPolicy policy, BadRowReport report) {
+        this.badRowPolicy = policy;
+        this.badRowReport = report;
+    }
+
+    /**
+     * Appends the batch, or remembers the error to be thrown by {@link #finish()} so that
+     * the writer can be a parser's listener.
+     */
+    @Override
+    public void onBatch(PointSeries batch) {
+        if (error != null) return;
+        try {
+            append(batch);
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    /**
+     * Whether {@link #onBatch(PointSeries)} failed, the parse may be stopped then.
+     */
+    public boolean hasFailed() {
+        return error != null;
+    }
+
+    /**
+     * @throws UnsortedException if a row has a smaller x than the row before it
+     * @throws FormatsWidenedException if the rows are in other formats than the written ones
+     */
+    public void append(PointSeries rows) throws IOException {
+        if (rows.getYColumnsCount() != yColumnsCount) throw new IllegalArgumentException("Unexpected y columns count");
+        if (!rows.getXFormat().equals(xFormat) || !rows.getYFormat().equals(yFormat)) {
+            throw new FormatsWidenedException(xFormat.widen(rows.getXFormat()), yFormat.widen(rows.getYFormat()));
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            long x = rows.getX(i);
+            if (x < lastX) throw new UnsortedException();
+            lastX = x;
+            for (int column = 0; column < yColumnsCount; column++) {
+                long y = rows.getY(column, i);
+                rowYs[column] = y;
+                if (y < minY) minY = y;
+                if (y > maxY) maxY = y;
+            }
+            levels.get(0).addRow(x, rowYs);
+            addBucket(1, x, x, rowYs, rowYs);
+        }
+    }
+
+    /**
+     * Completes the summary levels and the page index and moves the file in place.
+     */
+    public void finish() throws IOException {
+        if (error != null) throw error;
+        long rowsCount = levels.get(0).rowsCount;
+        if (rowsCount == 0) throw new IOException("No rows");
+
+        // Every bucket of a summary level is stored as two rows, its first x with the minimums
+        // and its last x with the maximums.
+        int topLevel = 0;
+        long bucketsCount = rowsCount;
+        long levelRowsCount = rowsCount;
+        while (levelRowsCount > ColumnFile.OVERVIEW_MAX_ROWS && topLevel < ColumnFile.MAX_LEVELS - 1) {
+            topLevel++;
+            bucketsCount = (bucketsCount + ColumnFile.LEVEL_BRANCHING - 1) / ColumnFile.LEVEL_BRANCHING;
+            levelRowsCount = 2 * bucketsCount;
+        }
+        for (int level = 1; level <= topLevel; level++) {
+            if (levels.get(level).bucketsCount > 0) emitBucket(level);
+        }
+        for (int level = 0; level <= topLevel; level++) levels.get(level).flushPage(true);
+
+        FileChannel channel = levels.get(0).channel;
+        for (int level = 1; level <= topLevel; level++) {
+            FileChannel levelChannel = levels.get(level).channel;
+            long size = levelChannel.size();
+            long position = 0;
+            while (position < size) position += levelChannel.transferTo(position, size - position, channel);
+            channel.position(channel.size());
+        }
+
+        ByteBuffer index = ByteBuffer.allocate(ColumnFile.PAGE_ROWS * ColumnFile.BYTES_PER_VALUE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (int level = 0; level <= topLevel; level++) {
+            Level source = levels.get(level);
+            for (int page = 0; page < source.pagesCount; page++) {
+                index.putLong(source.pageFirstXs[page]);
+                if (!index.hasRemaining()) writeFully(channel, index);
+            }
+        }
+        writeFully(channel, index);
+
+        ByteBuffer header = ByteBuffer.allocate(ColumnFile.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(ColumnFile.MAGIC);
+        header.putInt(ColumnFile.VERSION);
+        header.putLong(sourceSize);
+        header.putLong(sourceLastModified);
+        header.putInt(yColumnsCount);
+        header.putInt(ColumnFile.PAGE_ROWS);
+        header.putInt(xFormat.getType().ordinal());
+        header.putInt(xFormat.getScale());
+        header.putInt(yFormat.getType().ordinal());
+        header.putInt(yFormat.getScale());
+        header.putLong(minY);
+        header.putLong(maxY);
+        header.putInt(badRowPolicy.ordinal());
+        badRowReport.writeSummary(header);
+        header.putInt(topLevel + 1);
+        for (int level = 0; level <= topLevel; level++) header.putLong(levels.get(level).rowsCount);
+        header.position(ColumnFile.HEADER_SIZE);
+        channel.position(0);
+        writeFully(channel, header);
+        channel.force(false);
+
+        closeLevels();
+        if (!tempFile.renameTo(file)) throw new IOException("Can't move " + tempFile + " to " + file);
+        finished = true;
+    }
+
+    /**
+     * Closes and deletes the temporary files, the target file is only kept if
+     * {@link #finish()} succeeded.
+     */
+    @Override
+    public void close() throws IOException {
+        closeLevels();
+        if (!finished) tempFile.delete();
+    }
+
+    private void closeLevels() throws IOException {
+        for (Level level : levels) {
+            level.channel.close();
+            if (level.file != null) level.file.delete();
+        }
+        levels.clear();
+    }
+
+    /**
+     * Accumulates a bucket of the level below {@code level}, every {@link ColumnFile#LEVEL_BRANCHING}
+     * of them become a bucket of {@code level}.
+     */
+    private void addBucket(int level, long firstX, long lastX, long[] mins, long[] maxs) throws IOException {
+        if (level >= ColumnFile.MAX_LEVELS) return;
+        if (levels.size() == level) {
+            File levelFile = new File(file.getPath() + "." + level + TEMP_SUFFIX);
+            FileChannel channel = new RandomAccessFile(levelFile, "rw").getChannel();
+            channel.truncate(0);
+            levels.add(new Level(channel, levelFile));
+        }
+        Level target = levels.get(level);
+        if (target.bucketsCount == 0) {
+            target.firstX = firstX;
+            System.arraycopy(mins, 0, target.mins, 0, yColumnsCount);
+            System.arraycopy(maxs, 0, target.maxs, 0, yColumnsCount);
+        } else {
+            for (int column = 0; column < yColumnsCount; column++) {
+                if (mins[column] < target.mins[column]) target.mins[column] = mins[column];
+                if (maxs[column] > target.maxs[column]) target.maxs[column] = maxs[column];
+            }
+        }
+        target.lastX = lastX;
+        if (++target.bucketsCount == ColumnFile.LEVEL_BRANCHING) emitBucket(level);
+    }
+
+    private void emitBucket(int level) throws IOException {
+        Level source = levels.get(level);
+        source.addRow(source.firstX, source.mins);
+        source.addRow(source.lastX, source.maxs);
+        source.bucketsCount = 0;
+        addBucket(level + 1, source.firstX, source.lastX, source.mins, source.maxs);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Rows of a level buffered into its current page, and the bucket being accumulated
+     * for it from the level below.
+     */
+    private class Level {
+
+        private final FileChannel channel;
+        private final File file;
+        private final ByteBuffer page = ByteBuffer.allocateDirect(pageSize).order(ByteOrder.LITTLE_ENDIAN);
+        private int pageRowsCount = 0;
+        private long rowsCount = 0;
+        private long[] pageFirstXs = new long[16];
+        private int pagesCount = 0;
+
+        private int bucketsCount = 0;
+        private long firstX;
+        private long lastX;
+        private final long[] mins = new long[yColumnsCount];
+        private final long[] maxs = new long[yColumnsCount];
+
+        Level(FileChannel channel, File file) {
+            this.channel = channel;
+            this.file = file;
+        }
+
+        void addRow(long x, long[] ys) throws IOException {
+            if (pageRowsCount == 0) {
+                if (pagesCount == pageFirstXs.length) pageFirstXs = Arrays.copyOf(pageFirstXs, pagesCount * 2);
+                pageFirstXs[pagesCount++] = x;
+            }
+            int offset = pageRowsCount * ColumnFile.BYTES_PER_VALUE;
+            page.putLong(offset, x);
+            for (int column = 0; column < yColumnsCount; column++) {
+                int columnStart = (column + 1) * ColumnFile.PAGE_ROWS * ColumnFile.BYTES_PER_VALUE;
+                page.putLong(columnStart + offset, ys[column]);
+            }
+            rowsCount++;
+            if (++pageRowsCount == ColumnFile.PAGE_ROWS) flushPage(false);
+        }
+
+        /**
+         * @param isLast whether a partly filled page should be written too
+         */
+        void flushPage(boolean isLast) throws IOException {
+            if (pageRowsCount == 0 || (!isLast && pageRowsCount < ColumnFile.PAGE_ROWS)) return;
+            page.clear();
+            while (page.hasRemaining()) channel.write(page);
+            page.clear();
+            pageRowsCount = 0;
+        }
+    }
+
+    /**
+     * Thrown if the rows are not sorted by x, a column file can't be sorted in the heap.
+     */
+    public static class UnsortedException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public UnsortedException() {
+            super("Rows are not sorted by x");
+        }
+    }
+
+    /**
+     * The parser widened the formats of the rows after some of them were written, the file
+     * has to be written again in the wider formats.
+     */
+    public static class FormatsWidenedException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient ValueFormat xFormat;
+        private final transient ValueFormat yFormat;
+
+        public FormatsWidenedException(ValueFormat xFormat, ValueFormat yFormat) {
+            super("Rows widened to " + xFormat + ", " + yFormat);
+            this.xFormat = xFormat;
+            this.yFormat = yFormat;
+        }
+
+        public ValueFormat getXFormat() {
+            return xFormat;
+        }
+
+        public ValueFormat getYFormat() {
+            return yFormat;
+        }
+    }
+
+}
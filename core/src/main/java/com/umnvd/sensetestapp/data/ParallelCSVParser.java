@@ -0,0 +1,405 @@
+package com.umnvd.sensetestapp.data;
+
+import com.umnvd.sensetestapp.models.PointSeries;
+import com.umnvd.sensetestapp.models.ValueFormat;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public class ParallelCSVParser {
+
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+    private static final long MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int STREAMED_CHUNKS_PER_THREAD = 2;
+    private static final int ALIGNMENT_BUFFER_SIZE = 4 * 1024;
+
+    private final ForkJoinPool pool;
+
+    public ParallelCSVParser(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public PointSeries parse(FileChannel channel, long size, CSVSchema schema) throws IOException {
+        return parse(channel, size, schema, null);
+    }
+
+    public PointSeries parse(
+            FileChannel channel, long size, CSVSchema schema, CSVParser.BatchListener batchListener
+    ) throws IOException {
+        return parse(channel, size, schema, batchListener, null);
+    }
+
+    public PointSeries parse(
+            FileChannel channel,
+            long size,
+            CSVSchema schema,
+            CSVParser.BatchListener batchListener,
+            CSVParser.CancellationCheck cancellationCheck
+    ) throws IOException {
+        return parse(channel, size, schema, batchListener, cancellationCheck, CSVParser.BadRowPolicy.FAIL, null);
+    }
+
+    /**
+     * @param badRowReport receives the bad rows of all chunks in the file order, unless
+     *                     the policy is {@link CSVParser.BadRowPolicy#FAIL}
+     */
+    public PointSeries parse(
+            FileChannel channel,
+            long size,
+            CSVSchema schema,
+            CSVParser.BatchListener batchListener,
+            CSVParser.CancellationCheck cancellationCheck,
+            CSVParser.BadRowPolicy badRowPolicy,
+            BadRowReport badRowReport
+    ) throws IOException {
+        int chunksCount = pool.getParallelism() * CHUNKS_PER_THREAD;
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size / chunksCount));
+        List<Long> boundaries = splitIntoLines(channel, size, chunkSize);
+        List<ChunkTask> tasks = new ArrayList<>(boundaries.size() - 1);
+        List<Future<ChunkResult>> futures = new ArrayList<>(boundaries.size() - 1);
+        for (int i = 1; i < boundaries.size(); i++) {
+            ChunkTask task = createTask(channel, boundaries, i, schema, cancellationCheck, badRowPolicy);
+            tasks.add(task);
+            futures.add(pool.submit(task));
+        }
+        try {
+            return collectResults(tasks, futures, schema, batchListener, badRowReport);
+        } finally {
+            for (Future<ChunkResult> future : futures) future.cancel(false);
+        }
+    }
+
+    /**
+     * Parses the file in chunks like {@link #parse(FileChannel, long, CSVSchema)}, but passes
+     * the series of every chunk to {@code batchListener} in the file order without keeping it.
+     * Only {@link #STREAMED_CHUNKS_PER_THREAD} chunks per thread are parsed ahead of the
+     * listener, so the heap holds a bounded number of rows whatever the file size.
+     * <p>
+     * Every chunk comes in the formats its own rows were widened to, the listener has to
+     * reconcile them.
+     *
+     * @throws CancellationException if {@code cancellationCheck} is cancelled, it is also
+     *                               checked after every chunk is passed to the listener
+     */
+    public void parseStreaming(
+            FileChannel channel,
+            long size,
+            CSVSchema schema,
+            CSVParser.BatchListener batchListener,
+            CSVParser.CancellationCheck cancellationCheck,
+            CSVParser.BadRowPolicy badRowPolicy,
+            BadRowReport badRowReport
+    ) throws IOException {
+        List<Long> boundaries = splitIntoLines(channel, size, MIN_CHUNK_SIZE);
+        int maxPendingCount = pool.getParallelism() * STREAMED_CHUNKS_PER_THREAD;
+        Queue<Future<ChunkResult>> pending = new ArrayDeque<>(maxPendingCount);
+        int nextChunk = 1;
+        long linesBefore = 0;
+        try {
+            while (nextChunk < boundaries.size() || !pending.isEmpty()) {
+                while (nextChunk < boundaries.size() && pending.size() < maxPendingCount) {
+                    pending.add(pool.submit(
+                            createTask(channel, boundaries, nextChunk, schema, cancellationCheck, badRowPolicy)
+                    ));
+                    nextChunk++;
+                }
+                ChunkResult result = getResult(pending.remove());
+                if (result.error != null) {
+                    long lineNumber = linesBefore + result.error.getLineNumber();
+                    throw new CSVFormatException(lineNumber, result.error.getReason());
+                }
+                if (result.badRowReport != null) badRowReport.addAll(result.badRowReport, linesBefore);
+                linesBefore += result.lineCount;
+                batchListener.onBatch(result.series);
+                if (cancellationCheck != null && cancellationCheck.isCancelled()) throw new CancellationException();
+            }
+        } finally {
+            for (Future<ChunkResult> future : pending) future.cancel(false);
+        }
+    }
+
+    private ChunkTask createTask(
+            FileChannel channel,
+            List<Long> boundaries,
+            int chunk,
+            CSVSchema schema,
+            CSVParser.CancellationCheck cancellationCheck,
+            CSVParser.BadRowPolicy badRowPolicy
+    ) {
+        return new ChunkTask(
+                channel,
+                boundaries.get(chunk - 1),
+                boundaries.get(chunk),
+                chunk == 1 ? schema : schema.withoutHeader(),
+                cancellationCheck,
+                badRowPolicy,
+                null
+        );
+    }
+
+    /**
+     * Every chunk is parsed on its own from the schema formats, while a sequential parse
+     * would continue the formats and the bounds of the rows before it. Where that could
+     * make a difference, the chunk is parsed again continuing them, so that the result
+     * matches a sequential parse.
+     */
+    private PointSeries collectResults(
+            List<ChunkTask> tasks,
+            List<Future<ChunkResult>> futures,
+            CSVSchema schema,
+            CSVParser.BatchListener batchListener,
+            BadRowReport badRowReport
+    ) throws IOException {
+        List<ChunkResult> results = new ArrayList<>(futures.size());
+        ValueFormat xFormat = schema.getXFormat();
+        ValueFormat yFormat = schema.getYFormat();
+        Bounds bounds = new Bounds();
+        long linesBefore = 0;
+        int totalSize = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            ChunkResult result = getResult(futures.get(i));
+            if (i > 0 && !continues(result, schema, xFormat, yFormat, bounds)) {
+                result = tasks.get(i).continuing(xFormat, yFormat, bounds).call();
+            }
+            if (result.error != null) {
+                long lineNumber = linesBefore + result.error.getLineNumber();
+                throw new CSVFormatException(lineNumber, result.error.getReason());
+            }
+            ValueFormat chunkXFormat = xFormat.widen(result.series.getXFormat());
+            ValueFormat chunkYFormat = yFormat.widen(result.series.getYFormat());
+            bounds.rescale(xFormat.getRescaleFactor(chunkXFormat), yFormat.getRescaleFactor(chunkYFormat));
+            bounds.include(
+                    result.bounds,
+                    result.series.getXFormat().getRescaleFactor(chunkXFormat),
+                    result.series.getYFormat().getRescaleFactor(chunkYFormat)
+            );
+            xFormat = chunkXFormat;
+            yFormat = chunkYFormat;
+            if (result.badRowReport != null) badRowReport.addAll(result.badRowReport, linesBefore);
+            linesBefore += result.lineCount;
+            totalSize += result.series.size();
+            results.add(result);
+            // The chunks are merged without being changed, so the listener may keep them.
+            if (batchListener != null) batchListener.onBatch(result.series);
+        }
+
+        PointSeries series = new PointSeries(schema.getColumnsCount() - 1, totalSize);
+        series.setFormats(xFormat, yFormat);
+        for (ChunkResult result : results) series.addAll(result.series);
+        return series;
+    }
+
+    /**
+     * Whether the chunk parsed on its own got the rows a sequential parse would have after
+     * the rows of {@code bounds} in the given formats. Widening the formats is the same
+     * if the rows before the chunk fit its formats too. Rounding off and failing depend on
+     * the formats at the time, so they are only the same if the formats didn't change.
+     */
+    private static boolean continues(
+            ChunkResult result, CSVSchema schema, ValueFormat xFormat, ValueFormat yFormat, Bounds bounds
+    ) {
+        boolean isWidened = !xFormat.equals(schema.getXFormat()) || !yFormat.equals(schema.getYFormat());
+        if (result.error != null || (isWidened && result.hasRoundedValues)) return false;
+        ValueFormat chunkXFormat = xFormat.widen(result.series.getXFormat());
+        ValueFormat chunkYFormat = yFormat.widen(result.series.getYFormat());
+        return bounds.canRescale(xFormat.getRescaleFactor(chunkXFormat), yFormat.getRescaleFactor(chunkYFormat))
+                && result.bounds.canRescale(
+                result.series.getXFormat().getRescaleFactor(chunkXFormat),
+                result.series.getYFormat().getRescaleFactor(chunkYFormat)
+        );
+    }
+
+    private List<Long> splitIntoLines(FileChannel channel, long size, long chunkSize) throws IOException {
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        ByteBuffer buffer = ByteBuffer.allocate(ALIGNMENT_BUFFER_SIZE);
+        long position = chunkSize;
+        while (position < size) {
+            long boundary = findNextLineStart(channel, position, size, buffer);
+            if (boundary >= size) break;
+            boundaries.add(boundary);
+            position = boundary + chunkSize;
+        }
+        boundaries.add(size);
+        return boundaries;
+    }
+
+    private long findNextLineStart(
+            FileChannel channel, long position, long size, ByteBuffer buffer
+    ) throws IOException {
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) break;
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == '\n') return position + i + 1;
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private ChunkResult getResult(Future<ChunkResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private static class ChunkTask implements Callable<ChunkResult> {
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final CSVSchema schema;
+        private final CSVParser.CancellationCheck cancellationCheck;
+        private final CSVParser.BadRowPolicy badRowPolicy;
+        private final Bounds precedingBounds;
+
+        ChunkTask(
+                FileChannel channel,
+                long start,
+                long end,
+                CSVSchema schema,
+                CSVParser.CancellationCheck cancellationCheck,
+                CSVParser.BadRowPolicy badRowPolicy,
+                Bounds precedingBounds
+        ) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.schema = schema;
+            this.cancellationCheck = cancellationCheck;
+            this.badRowPolicy = badRowPolicy;
+            this.precedingBounds = precedingBounds;
+        }
+
+        /**
+         * The same chunk parsed as a sequential parse would after the rows of
+         * {@code precedingBounds} in the given formats.
+         */
+        ChunkTask continuing(ValueFormat xFormat, ValueFormat yFormat, Bounds precedingBounds) {
+            return new ChunkTask(
+                    channel,
+                    start,
+                    end,
+                    schema.withFormats(xFormat, yFormat),
+                    cancellationCheck,
+                    badRowPolicy,
+                    precedingBounds
+            );
+        }
+
+        @Override
+        public ChunkResult call() throws IOException {
+            CSVParser parser = new CSVParser(schema, 1, start);
+            BadRowReport badRowReport = badRowPolicy != CSVParser.BadRowPolicy.FAIL ? new BadRowReport() : null;
+            parser.setBadRowPolicy(badRowPolicy, badRowReport);
+            parser.setCancellationCheck(cancellationCheck);
+            if (precedingBounds != null) {
+                parser.setPrecedingBounds(
+                        precedingBounds.minX, precedingBounds.maxX, precedingBounds.minY, precedingBounds.maxY
+                );
+            }
+            try {
+                long position = start;
+                while (position < end) {
+                    long length = Math.min(MAX_CHUNK_SIZE, end - position);
+                    parser.parse(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+                    position += length;
+                }
+                parser.finish();
+            } catch (CSVFormatException e) {
+                return new ChunkResult(null, 0, null, null, false, e);
+            }
+            PointSeries series = parser.getSeries();
+            Bounds bounds = new Bounds();
+            bounds.minX = parser.getMinX();
+            bounds.maxX = parser.getMaxX();
+            bounds.minY = series.getMinY();
+            bounds.maxY = series.getMaxY();
+            return new ChunkResult(
+                    series, parser.getLineNumber() - 1, badRowReport, bounds, parser.hasRoundedValues(), null
+            );
+        }
+    }
+
+    private static class ChunkResult {
+
+        final PointSeries series;
+        final long lineCount;
+        final BadRowReport badRowReport;
+        final Bounds bounds;
+        final boolean hasRoundedValues;
+        final CSVFormatException error;
+
+        ChunkResult(
+                PointSeries series,
+                long lineCount,
+                BadRowReport badRowReport,
+                Bounds bounds,
+                boolean hasRoundedValues,
+                CSVFormatException error
+        ) {
+            this.series = series;
+            this.lineCount = lineCount;
+            this.badRowReport = badRowReport;
+            this.bounds = bounds;
+            this.hasRoundedValues = hasRoundedValues;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Bounds of the raw x and y values of some rows, which are empty if there are none.
+     */
+    private static class Bounds {
+
+        long minX = Long.MAX_VALUE;
+        long maxX = Long.MIN_VALUE;
+        long minY = Long.MAX_VALUE;
+        long maxY = Long.MIN_VALUE;
+
+        boolean canRescale(long xFactor, long yFactor) {
+            return minX > maxX || (ValueFormat.canRescale(minX, xFactor) && ValueFormat.canRescale(maxX, xFactor)
+                    && ValueFormat.canRescale(minY, yFactor) && ValueFormat.canRescale(maxY, yFactor));
+        }
+
+        void rescale(long xFactor, long yFactor) {
+            if (minX > maxX) return;
+            minX *= xFactor;
+            maxX *= xFactor;
+            minY *= yFactor;
+            maxY *= yFactor;
+        }
+
+        void include(Bounds other, long xFactor, long yFactor) {
+            if (other.minX > other.maxX) return;
+            minX = Math.min(minX, other.minX * xFactor);
+            maxX = Math.max(maxX, other.maxX * xFactor);
+            minY = Math.min(minY, other.minY * yFactor);
+            maxY = Math.max(maxY, other.maxY * yFactor);
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.umnvd.sensetestapp.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Inflates a gzip stream on a separate thread into a ring of {@link #BUFFERS_COUNT}
+ * reusable buffers, so that the consumer parses one buffer while the next ones are
+ * being inflated. Memory use is bounded by the ring, not by the inflated size.
+ * <p>
+ * The consumer {@link #take() takes} filled buffers in order and {@link #recycle(ByteBuffer)
+ * recycles} each of them once it is parsed. The inflater waits while all buffers are taken.
+ */
+public class PipelinedInflater implements Closeable {
+
+    public static final int BUFFER_SIZE = CSVSchema.SAMPLE_SIZE;
+    public static final int BUFFERS_COUNT = 4;
+
+    private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final InputStream input;
+    private final BlockingQueue<ByteBuffer> freeBuffers = new ArrayBlockingQueue<>(BUFFERS_COUNT);
+    private final BlockingQueue<ByteBuffer> filledBuffers = new ArrayBlockingQueue<>(BUFFERS_COUNT + 1);
+    private final Future<?> future;
+    private volatile Throwable error;
+    private volatile boolean closed = false;
+    private boolean ended = false;
+
+    /**
+     * Starts inflating {@code compressed} on {@code executor}. The stream is closed with
+     * this inflater.
+     */
+    public PipelinedInflater(InputStream compressed, ExecutorService executor) {
+        this.input = compressed;
+        for (int i = 0; i < BUFFERS_COUNT; i++) freeBuffers.add(ByteBuffer.allocate(BUFFER_SIZE));
+        future = executor.submit(this::inflate);
+    }
+
+    /**
+     * Whether {@code bytes} start with the gzip magic number.
+     */
+    public static boolean isGzip(byte[] bytes, int length) {
+        return length >= 2 && bytes[0] == (byte) 0x1f && bytes[1] == (byte) 0x8b;
+    }
+
+    /**
+     * Waits for the next inflated buffer. Every buffer is full except the last one.
+     *
+     * @return the buffer flipped for reading, or null once the whole stream is inflated
+     * @throws IOException if the stream can't be read or is not valid gzip, unchecked errors
+     *                     of the inflater thread are rethrown as they are
+     */
+    public ByteBuffer take() throws IOException {
+        if (ended) return null;
+        ByteBuffer buffer;
+        try {
+            buffer = filledBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        if (buffer != END) return buffer;
+        ended = true;
+        Throwable error = this.error;
+        if (error == null) return null;
+        if (error instanceof IOException) throw (IOException) error;
+        if (error instanceof RuntimeException) throw (RuntimeException) error;
+        if (error instanceof Error) throw (Error) error;
+        throw new IOException(error);
+    }
+
+    /**
+     * Returns a buffer obtained from {@link #take()} to the ring.
+     */
+    public void recycle(ByteBuffer buffer) {
+        buffer.clear();
+        freeBuffers.offer(buffer);
+    }
+
+    /**
+     * Stops inflating and closes the input, may be called before the stream is inflated.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        future.cancel(true);
+        input.close();
+    }
+
+    private void inflate() {
+        try (GZIPInputStream gzip = new GZIPInputStream(input, INPUT_BUFFER_SIZE)) {
+            boolean isEnd = false;
+            while (!isEnd && !closed) {
+                ByteBuffer buffer = freeBuffers.take();
+                byte[] bytes = buffer.array();
+                int position = 0;
+                while (position < bytes.length) {
+                    int read = gzip.read(bytes, position, bytes.length - position);
+                    if (read < 0) {
+                        isEnd = true;
+                        break;
+                    }
+                    position += read;
+                }
+                buffer.limit(position);
+                if (position > 0) filledBuffers.put(buffer);
+            }
+        } catch (InterruptedException e) {
+            // Closed by the consumer, which doesn't wait for the end marker.
+        } catch (Throwable e) {
+            error = e;
+        } finally {
+            // Whatever stopped the inflater, the consumer must not wait for more buffers.
+            // The queue has room for the marker on top of all buffers.
+            filledBuffers.offer(END);
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.umnvd.sensetestapp.data;
+
+/**
+ * Allocation-free parser of ISO-8601 timestamps: {@code yyyy-MM-dd}, optionally followed
+ * by {@code T} or a space, {@code HH:mm}, {@code :ss}, a fraction of a second and a zone
+ * offset ({@code Z}, {@code +HH}, {@code +HHmm} or {@code +HH:mm}, or the same with a minus).
+ * Timestamps without an offset are read as UTC.
+ */
+public final class TimestampParser {
+
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    private TimestampParser() {
+    }
+
+    /**
+     * @return milliseconds since the epoch, or {@link #INVALID} if the bytes in
+     * [{@code from}, {@code to}) are not a supported timestamp
+     */
+    public static long parse(byte[] bytes, int from, int to) {
+        if (to - from < 10) return INVALID;
+        int year = readNumber(bytes, from, 4);
+        int month = readNumber(bytes, from + 5, 2);
+        int day = readNumber(bytes, from + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > getMonthLength(year, month)) return INVALID;
+        if (bytes[from + 4] != '-' || bytes[from + 7] != '-') return INVALID;
+
+        long millis = daysFromCivil(year, month, day) * MILLIS_PER_DAY;
+        int position = from + 10;
+        if (position == to) return millis;
+
+        byte separator = bytes[position];
+        if ((separator != 'T' && separator != ' ') || to - position < 6) return INVALID;
+        int hour = readNumber(bytes, position + 1, 2);
+        int minute = readNumber(bytes, position + 4, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || bytes[position + 3] != ':') {
+            return INVALID;
+        }
+        millis += hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE;
+        position += 6;
+
+        if (position < to && bytes[position] == ':') {
+            if (position + 3 > to) return INVALID;
+            int second = readNumber(bytes, position + 1, 2);
+            if (second < 0 || second > 60) return INVALID;
+            millis += second * MILLIS_PER_SECOND;
+            position += 3;
+
+            if (position < to && (bytes[position] == '.' || bytes[position] == ',')) {
+                position++;
+                int fractionStart = position;
+                int fractionMillis = 0;
+                while (position < to && bytes[position] >= '0' && bytes[position] <= '9') {
+                    if (position - fractionStart < 3) fractionMillis = fractionMillis * 10 + bytes[position] - '0';
+                    position++;
+                }
+                int fractionDigits = position - fractionStart;
+                if (fractionDigits == 0 || fractionDigits > 9) return INVALID;
+                for (int i = fractionDigits; i < 3; i++) fractionMillis *= 10;
+                millis += fractionMillis;
+            }
+        }
+
+        if (position == to) return millis;
+        if (bytes[position] == 'Z') return position + 1 == to ? millis : INVALID;
+        if (bytes[position] != '+' && bytes[position] != '-') return INVALID;
+        long offset = readOffset(bytes, position + 1, to);
+        if (offset == INVALID) return INVALID;
+        return bytes[position] == '+' ? millis - offset : millis + offset;
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date.
+     */
+    public static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static int getMonthLength(int year, int month) {
+        if (month == 2) {
+            boolean isLeapYear = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+            return isLeapYear ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    private static long readOffset(byte[] bytes, int position, int to) {
+        int length = to - position;
+        if (length < 2) return INVALID;
+        int hours = readNumber(bytes, position, 2);
+        int minutes;
+        if (length == 2) minutes = 0;
+        else if (length == 4) minutes = readNumber(bytes, position + 2, 2);
+        else if (length == 5 && bytes[position + 2] == ':') minutes = readNumber(bytes, position + 3, 2);
+        else return INVALID;
+        if (hours < 0 || hours > 18 || minutes < 0 || minutes > 59) return INVALID;
+        return hours * MILLIS_PER_HOUR + minutes * MILLIS_PER_MINUTE;
+    }
+
+    /**
+     * @return the value of {@code length} decimal digits, or -1 if any of them isn't a digit
+     */
+    private static int readNumber(byte[] bytes, int position, int length) {
+        int value = 0;
+        for (int i = position; i < position + length; i++) {
+            byte b = bytes[i];
+            if (b < '0' || b > '9') return -1;
+            value = value * 10 + b - '0';
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.umnvd.sensetestapp.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic sum which may be increased from any thread.
+ */
+public final class Counter {
+
+    private final AtomicLong value = new AtomicLong();
+
+    Counter() {
+    }
+
+    public void increment() {
+        value.incrementAndGet();
+    }
+
+    public void add(long delta) {
+        value.addAndGet(delta);
+    }
+
+    public long get() {
+        return value.get();
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(value.get());
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.umnvd.sensetestapp.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of non-negative values, like durations in nanoseconds or counts per frame.
+ * Values are counted in buckets of a fixed layout: every power of two is split into
+ * {@link #SUB_BUCKETS} equal buckets, so percentiles are off by at most 1/16 of the
+ * value. Recording doesn't allocate and may happen from any thread.
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS_COUNT = (Long.SIZE - 1 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public Histogram() {
+    }
+
+    /**
+     * Negative values are counted as 0.
+     */
+    public void record(long value) {
+        long clamped = Math.max(value, 0);
+        counts.incrementAndGet(getBucket(clamped));
+        count.incrementAndGet();
+        sum.addAndGet(clamped);
+        long currentMax;
+        while (clamped > (currentMax = max.get()) && !max.compareAndSet(currentMax, clamped)) {
+            // Retry until this value is stored or a larger one is.
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = this.count.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return the middle of the bucket holding the value below which {@code percentile}
+     * percent of the recorded values are, 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long count = this.count.get();
+        if (count == 0) return 0;
+        long rank = Math.max((long) Math.ceil(count * Math.min(Math.max(percentile, 0), 100) / 100), 1);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS_COUNT; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) return Math.min(getBucketMiddle(bucket), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Forgets all values. Values recorded concurrently with the reset may be partly kept.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKETS_COUNT; bucket++) counts.set(bucket, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "{count=" + getCount()
+                + ", p50=" + getPercentile(50)
+                + ", p99=" + getPercentile(99)
+                + ", max=" + getMax() + "}";
+    }
+
+    private static int getBucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long getBucketMiddle(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowerBound + ((1L << shift) >> 1);
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.umnvd.sensetestapp.metrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Named counters and histograms of the loading and drawing work. Recording is cheap and
+ * thread-safe, the components which record call {@link #report()} when a unit of work
+ * is done, a load or a second of frames, and the listeners read the values then.
+ */
+public final class Metrics {
+
+    public static final String LOAD_BYTES_READ = "load.bytes_read";
+    public static final String LOAD_ROWS = "load.rows";
+    public static final String LOAD_BAD_ROWS = "load.bad_rows";
+    public static final String LOAD_MEMORY_CACHE_HITS = "load.memory_cache_hits";
+    public static final String LOAD_PARSE_CACHE_HITS = "load.parse_cache_hits";
+    public static final String LOAD_PARSE_CACHE_MISSES = "load.parse_cache_misses";
+    public static final String LOAD_READ_TIME_NANOS = "load.read_time_nanos";
+    public static final String LOAD_PARSE_TIME_NANOS = "load.parse_time_nanos";
+    public static final String LOAD_ROWS_PER_SECOND = "load.rows_per_second";
+    public static final String FRAME_SETUP_TIME_NANOS = "frame.setup_time_nanos";
+    public static final String FRAME_DRAW_TIME_NANOS = "frame.draw_time_nanos";
+    public static final String FRAME_SEGMENTS = "frame.segments";
+    public static final String FRAME_TRANSFORMED_POINTS = "frame.transformed_points";
+
+    private static final Metrics INSTANCE = new Metrics();
+
+    private final Map<String, Counter> counters = new TreeMap<>();
+    private final Map<String, Histogram> histograms = new TreeMap<>();
+    private final Object listenersLock = new Object();
+    private volatile Listener[] listeners = new Listener[0];
+
+    private Metrics() {
+    }
+
+    public static Metrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the counter named {@code name}, creating it on first use. Callers on hot
+     * paths should look the counter up once and keep it.
+     */
+    public Counter getCounter(String name) {
+        synchronized (counters) {
+            Counter counter = counters.get(name);
+            if (counter == null) {
+                counter = new Counter();
+                counters.put(name, counter);
+            }
+            return counter;
+        }
+    }
+
+    /**
+     * Returns the histogram named {@code name}, creating it on first use.
+     */
+    public Histogram getHistogram(String name) {
+        synchronized (histograms) {
+            Histogram histogram = histograms.get(name);
+            if (histogram == null) {
+                histogram = new Histogram();
+                histograms.put(name, histogram);
+            }
+            return histogram;
+        }
+    }
+
+    /**
+     * @return a sorted copy of the counters by name
+     */
+    public Map<String, Counter> getCounters() {
+        synchronized (counters) {
+            return Collections.unmodifiableMap(new TreeMap<>(counters));
+        }
+    }
+
+    /**
+     * @return a sorted copy of the histograms by name
+     */
+    public Map<String, Histogram> getHistograms() {
+        synchronized (histograms) {
+            return Collections.unmodifiableMap(new TreeMap<>(histograms));
+        }
+    }
+
+    /**
+     * Listeners are kept in an array which is copied on change, so that {@link #report()}
+     * iterates a snapshot without allocating.
+     */
+    public void addListener(Listener listener) {
+        synchronized (listenersLock) {
+            Listener[] listeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+            listeners[listeners.length - 1] = listener;
+            this.listeners = listeners;
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        synchronized (listenersLock) {
+            Listener[] listeners = this.listeners;
+            for (int i = 0; i < listeners.length; i++) {
+                if (!listeners[i].equals(listener)) continue;
+                Listener[] remaining = new Listener[listeners.length - 1];
+                System.arraycopy(listeners, 0, remaining, 0, i);
+                System.arraycopy(listeners, i + 1, remaining, i, remaining.length - i);
+                this.listeners = remaining;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Notifies the listeners on the calling thread, called every second of frames, so it
+     * doesn't allocate.
+     */
+    public void report() {
+        Listener[] listeners = this.listeners;
+        for (int i = 0; i < listeners.length; i++) listeners[i].onReport(this);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Counter> entry : getCounters().entrySet()) {
+            builder.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        for (Map.Entry<String, Histogram> entry : getHistograms().entrySet()) {
+            builder.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    public interface Listener { void onReport(Metrics metrics);}
+
+}
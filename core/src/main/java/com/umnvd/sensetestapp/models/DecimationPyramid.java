@@ -0,0 +1,161 @@
+package com.umnvd.sensetestapp.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Indices of the smallest and largest y of every block of {@link #BRANCHING}^level rows,
+ * kept for each y column. Blocks are defined by row indices only, so all columns share
+ * the same block layout and can be walked together.
+ */
+public class DecimationPyramid {
+
+    public static final int BRANCHING_SHIFT = 2;
+    public static final int BRANCHING = 1 << BRANCHING_SHIFT;
+
+    private final List<int[]> minIndices = new ArrayList<>();
+    private final List<int[]> maxIndices = new ArrayList<>();
+
+    private PointSeries series = new PointSeries(0);
+    private int columnsCount = 1;
+
+    public void build(PointSeries series) {
+        this.series = series;
+        this.columnsCount = series.getYColumnsCount();
+        minIndices.clear();
+        maxIndices.clear();
+        update(0);
+    }
+
+    public void update(int fromIndex) {
+        int size = series.size();
+        int level = 1;
+        while (getBlocksCount(level - 1) > 1) {
+            int blocksCount = getBlocksCount(level);
+            int entriesCount = blocksCount * columnsCount;
+            int firstBlock = Math.min(fromIndex, size - 1) >> (level * BRANCHING_SHIFT);
+            if (minIndices.size() < level) {
+                minIndices.add(new int[entriesCount]);
+                maxIndices.add(new int[entriesCount]);
+                firstBlock = 0;
+            } else if (minIndices.get(level - 1).length < entriesCount) {
+                int capacity = Math.max(entriesCount, minIndices.get(level - 1).length * 3 / 2);
+                minIndices.set(level - 1, Arrays.copyOf(minIndices.get(level - 1), capacity));
+                maxIndices.set(level - 1, Arrays.copyOf(maxIndices.get(level - 1), capacity));
+            }
+
+            for (int block = firstBlock; block < blocksCount; block++) {
+                for (int column = 0; column < columnsCount; column++) updateBlock(level, block, column);
+            }
+            level++;
+        }
+
+        while (minIndices.size() >= level) {
+            minIndices.remove(minIndices.size() - 1);
+            maxIndices.remove(maxIndices.size() - 1);
+        }
+    }
+
+    public PointSeries getSeries() {
+        return series;
+    }
+
+    public int getMaxLevel() {
+        return minIndices.size();
+    }
+
+    public int getLevelForDensity(float pointsPerPixel) {
+        int level = 0;
+        while (level < getMaxLevel() && getBlockSize(level + 1) <= pointsPerPixel) level++;
+        return level;
+    }
+
+    public int getBlocksCount(int level) {
+        if (series.size() == 0) return 0;
+        return ((series.size() - 1) >> (level * BRANCHING_SHIFT)) + 1;
+    }
+
+    public int getBlockSize(int level) {
+        return 1 << (level * BRANCHING_SHIFT);
+    }
+
+    public int getFirstIndex(int level, int block) {
+        return block << (level * BRANCHING_SHIFT);
+    }
+
+    public int getLastIndex(int level, int block) {
+        return Math.min(((block + 1) << (level * BRANCHING_SHIFT)), series.size()) - 1;
+    }
+
+    public int getMinIndex(int level, int block, int column) {
+        return level == 0 ? block : minIndices.get(level - 1)[block * columnsCount + column];
+    }
+
+    public int getMaxIndex(int level, int block, int column) {
+        return level == 0 ? block : maxIndices.get(level - 1)[block * columnsCount + column];
+    }
+
+    /**
+     * Index of the smallest y of {@code column} in [{@code fromIndex}, {@code toIndex}),
+     * or -1 if the range is empty. Takes O(log n) by combining at most
+     * {@code 2 * (BRANCHING - 1)} blocks per level.
+     */
+    public int getRangeMinIndex(int column, int fromIndex, int toIndex) {
+        return getRangeExtremumIndex(column, fromIndex, toIndex, true);
+    }
+
+    /**
+     * Index of the largest y of {@code column} in [{@code fromIndex}, {@code toIndex}),
+     * or -1 if the range is empty.
+     */
+    public int getRangeMaxIndex(int column, int fromIndex, int toIndex) {
+        return getRangeExtremumIndex(column, fromIndex, toIndex, false);
+    }
+
+    private int getRangeExtremumIndex(int column, int fromIndex, int toIndex, boolean isMin) {
+        int result = -1;
+        int from = Math.max(fromIndex, 0);
+        int to = Math.min(toIndex, series.size());
+        int level = 0;
+        while (from < to) {
+            if (level == getMaxLevel()) {
+                while (from < to) result = pickExtremum(result, column, level, from++, isMin);
+                break;
+            }
+            while (from < to && (from & (BRANCHING - 1)) != 0) {
+                result = pickExtremum(result, column, level, from++, isMin);
+            }
+            while (from < to && (to & (BRANCHING - 1)) != 0) {
+                result = pickExtremum(result, column, level, --to, isMin);
+            }
+            from >>= BRANCHING_SHIFT;
+            to >>= BRANCHING_SHIFT;
+            level++;
+        }
+        return result;
+    }
+
+    private int pickExtremum(int index, int column, int level, int block, boolean isMin) {
+        int candidate = isMin ? getMinIndex(level, block, column) : getMaxIndex(level, block, column);
+        if (index < 0) return candidate;
+        if (isMin) return series.getY(column, candidate) < series.getY(column, index) ? candidate : index;
+        return series.getY(column, candidate) > series.getY(column, index) ? candidate : index;
+    }
+
+    private void updateBlock(int level, int block, int column) {
+        int firstChild = block << BRANCHING_SHIFT;
+        int lastChild = Math.min(firstChild + BRANCHING, getBlocksCount(level - 1)) - 1;
+        int minIndex = getMinIndex(level - 1, firstChild, column);
+        int maxIndex = getMaxIndex(level - 1, firstChild, column);
+        for (int child = firstChild + 1; child <= lastChild; child++) {
+            int childMinIndex = getMinIndex(level - 1, child, column);
+            int childMaxIndex = getMaxIndex(level - 1, child, column);
+            if (series.getY(column, childMinIndex) < series.getY(column, minIndex)) minIndex = childMinIndex;
+            if (series.getY(column, childMaxIndex) > series.getY(column, maxIndex)) maxIndex = childMaxIndex;
+        }
+        minIndices.get(level - 1)[block * columnsCount + column] = minIndex;
+        maxIndices.get(level - 1)[block * columnsCount + column] = maxIndex;
+    }
+
+}
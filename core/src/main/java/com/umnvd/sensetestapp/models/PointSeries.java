@@ -0,0 +1,447 @@
+package com.umnvd.sensetestapp.models;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Rows of a single x column and one or more y columns, each y column is a separate
+ * series plotted against the shared x values.
+ */
+public class PointSeries {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    private long[] xs;
+    private long[][] ys;
+    private int size;
+    private boolean sortedByX = true;
+    private long minY = Long.MAX_VALUE;
+    private long maxY = Long.MIN_VALUE;
+    private ValueFormat xFormat = ValueFormat.INT;
+    private ValueFormat yFormat = ValueFormat.INT;
+
+    public PointSeries() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PointSeries(int capacity) {
+        this(1, capacity);
+    }
+
+    public PointSeries(int yColumnsCount, int capacity) {
+        if (yColumnsCount < 1) throw new IllegalArgumentException("No y columns");
+        xs = new long[Math.max(capacity, 1)];
+        ys = new long[yColumnsCount][Math.max(capacity, 1)];
+    }
+
+    public static PointSeries wrap(long[] xs, long[]... ys) {
+        for (long[] column : ys) {
+            if (xs.length != column.length) throw new IllegalArgumentException("Column sizes differ");
+        }
+        PointSeries series = new PointSeries(ys.length, 0);
+        if (xs.length > 0) {
+            series.xs = xs;
+            series.ys = ys;
+        }
+        series.size = xs.length;
+        series.sortedByX = series.isRangeSortedByX(0, series.size);
+        series.includeYBounds(0, series.size);
+        return series;
+    }
+
+    public void add(long x, long y) {
+        if (ys.length != 1) throw new IllegalArgumentException("Expected " + ys.length + " y values");
+        beginRow(x);
+        includeY(y);
+        ys[0][size++] = y;
+    }
+
+    /**
+     * Adds a row with the first {@link #getYColumnsCount()} values of {@code rowYs}.
+     */
+    public void addRow(long x, long[] rowYs) {
+        if (rowYs.length < ys.length) throw new IllegalArgumentException("Expected " + ys.length + " y values");
+        beginRow(x);
+        for (int column = 0; column < ys.length; column++) {
+            includeY(rowYs[column]);
+            ys[column][size] = rowYs[column];
+        }
+        size++;
+    }
+
+    /**
+     * Appends the rows of {@code other}. If its formats differ, both are read in formats
+     * wide enough for either, see {@link #widenFormats(ValueFormat, ValueFormat)}. The rows
+     * of {@code other} are rescaled as they are copied, {@code other} itself is not changed.
+     *
+     * @throws ArithmeticException if some value doesn't fit a long in the wider formats
+     */
+    public void addAll(PointSeries other) {
+        if (other.isEmpty()) return;
+        checkSameColumns(other);
+        widenToHold(other);
+        long xFactor = other.xFormat.getRescaleFactor(xFormat);
+        long yFactor = other.yFormat.getRescaleFactor(yFormat);
+        if (size + other.size > xs.length) grow(size + other.size);
+        sortedByX = sortedByX && other.sortedByX && (size == 0 || other.xs[0] * xFactor >= xs[size - 1]);
+        includeY(other.minY * yFactor);
+        includeY(other.maxY * yFactor);
+        copyRescaled(other.xs, xs, size, other.size, xFactor);
+        for (int column = 0; column < ys.length; column++) {
+            copyRescaled(other.ys[column], ys[column], size, other.size, yFactor);
+        }
+        size += other.size;
+    }
+
+    /**
+     * Merges {@code sorted} into this series, both must be sorted by x and have the same
+     * y columns. Rows with equal x keep the existing ones first. Formats are reconciled as
+     * in {@link #addAll(PointSeries)}.
+     *
+     * @return the index of the first row which was moved or added
+     */
+    public int merge(PointSeries sorted) {
+        if (sorted.isEmpty()) return size;
+        checkSameColumns(sorted);
+        sorted = adoptFormats(sorted);
+        int start = size;
+        if (size > 0 && sorted.xs[0] < xs[size - 1]) start = upperBoundX(sorted.xs[0]);
+        if (start == size) {
+            addAll(sorted);
+            return start;
+        }
+
+        int tailSize = size - start;
+        long[] tailXs = Arrays.copyOfRange(xs, start, size);
+        long[][] tailYs = new long[ys.length][];
+        for (int column = 0; column < ys.length; column++) {
+            tailYs[column] = Arrays.copyOfRange(ys[column], start, size);
+        }
+        if (size + sorted.size > xs.length) grow(size + sorted.size);
+        includeYBounds(sorted);
+
+        int i = 0, j = 0, k = start;
+        while (i < tailSize && j < sorted.size) {
+            if (sorted.xs[j] < tailXs[i]) {
+                for (int column = 0; column < ys.length; column++) ys[column][k] = sorted.ys[column][j];
+                xs[k++] = sorted.xs[j++];
+            } else {
+                for (int column = 0; column < ys.length; column++) ys[column][k] = tailYs[column][i];
+                xs[k++] = tailXs[i++];
+            }
+        }
+        System.arraycopy(tailXs, i, xs, k, tailSize - i);
+        for (int column = 0; column < ys.length; column++) {
+            System.arraycopy(tailYs[column], i, ys[column], k, tailSize - i);
+        }
+        k += tailSize - i;
+        System.arraycopy(sorted.xs, j, xs, k, sorted.size - j);
+        for (int column = 0; column < ys.length; column++) {
+            System.arraycopy(sorted.ys[column], j, ys[column], k, sorted.size - j);
+        }
+        size += sorted.size;
+        return start;
+    }
+
+    public long getX(int index) {
+        return xs[index];
+    }
+
+    public long getY(int column, int index) {
+        return ys[column][index];
+    }
+
+    public int getYColumnsCount() {
+        return ys.length;
+    }
+
+    public int lowerBoundX(long x) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (xs[middle] < x) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    public int upperBoundX(long x) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (xs[middle] <= x) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    public void putXs(LongBuffer target) {
+        target.put(xs, 0, size);
+    }
+
+    public void putYs(int column, LongBuffer target) {
+        target.put(ys[column], 0, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isSortedByX() {
+        return sortedByX;
+    }
+
+    /**
+     * Smallest y over all columns, {@link Long#MAX_VALUE} if the series is empty.
+     */
+    public long getMinY() {
+        return minY;
+    }
+
+    /**
+     * Largest y over all columns, {@link Long#MIN_VALUE} if the series is empty.
+     */
+    public long getMaxY() {
+        return maxY;
+    }
+
+    public ValueFormat getXFormat() {
+        return xFormat;
+    }
+
+    public ValueFormat getYFormat() {
+        return yFormat;
+    }
+
+    /**
+     * Sets how the raw x values and the raw values of all y columns are interpreted.
+     */
+    public void setFormats(ValueFormat xFormat, ValueFormat yFormat) {
+        this.xFormat = xFormat;
+        this.yFormat = yFormat;
+    }
+
+    /**
+     * Whether the raw values can be rescaled to {@code xFormat} and {@code yFormat}, which
+     * must be at least as wide as the current formats, without overflowing a long.
+     */
+    public boolean canWidenFormats(ValueFormat xFormat, ValueFormat yFormat) {
+        long xFactor = this.xFormat.getRescaleFactor(xFormat);
+        long yFactor = this.yFormat.getRescaleFactor(yFormat);
+        if (size == 0) return true;
+        if (!ValueFormat.canRescale(minY, yFactor) || !ValueFormat.canRescale(maxY, yFactor)) return false;
+        if (xFactor == 1) return true;
+        for (int i = 0; i < size; i++) {
+            if (!ValueFormat.canRescale(xs[i], xFactor)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Rescales the raw values to wider formats, in which they mean the same values, so that
+     * an integer column can take decimals or a decimal column more fraction digits.
+     *
+     * @return false, with the series unchanged, if some value doesn't fit a long in the
+     * wider formats
+     */
+    public boolean widenFormats(ValueFormat xFormat, ValueFormat yFormat) {
+        if (!canWidenFormats(xFormat, yFormat)) return false;
+        long xFactor = this.xFormat.getRescaleFactor(xFormat);
+        long yFactor = this.yFormat.getRescaleFactor(yFormat);
+        if (xFactor > 1) {
+            for (int i = 0; i < size; i++) xs[i] *= xFactor;
+        }
+        if (yFactor > 1 && size > 0) {
+            for (long[] column : ys) {
+                for (int i = 0; i < size; i++) column[i] *= yFactor;
+            }
+            minY *= yFactor;
+            maxY *= yFactor;
+        }
+        setFormats(xFormat, yFormat);
+        return true;
+    }
+
+    /**
+     * Removes all rows and keeps the capacity and the formats.
+     */
+    public void clear() {
+        size = 0;
+        sortedByX = true;
+        minY = Long.MAX_VALUE;
+        maxY = Long.MIN_VALUE;
+    }
+
+    public void trimToSize() {
+        if (size == xs.length || size == 0) return;
+        xs = Arrays.copyOf(xs, size);
+        for (int column = 0; column < ys.length; column++) ys[column] = Arrays.copyOf(ys[column], size);
+    }
+
+    public PointSeries copy() {
+        return copyRange(0, size);
+    }
+
+    public PointSeries copyRange(int from, int to) {
+        PointSeries copy = new PointSeries(ys.length, to - from);
+        System.arraycopy(xs, from, copy.xs, 0, to - from);
+        for (int column = 0; column < ys.length; column++) {
+            System.arraycopy(ys[column], from, copy.ys[column], 0, to - from);
+        }
+        copy.size = to - from;
+        copy.setFormats(xFormat, yFormat);
+        copy.sortedByX = sortedByX || copy.isRangeSortedByX(0, copy.size);
+        if (from == 0 && to == size) copy.includeYBounds(this);
+        else copy.includeYBounds(0, copy.size);
+        return copy;
+    }
+
+    /**
+     * Stable LSD radix sort by x, skipped if the rows are already in order. The passes
+     * move x along with the row indices, the y columns are permuted once at the end.
+     * Passes over bytes which are equal for all rows, like the high bytes of timestamps,
+     * are skipped.
+     */
+    public void sortByX() {
+        if (sortedByX) return;
+
+        long[] sourceXs = xs;
+        int[] sourceRows = new int[size];
+        for (int i = 0; i < size; i++) sourceRows[i] = i;
+        long[] targetXs = new long[size];
+        int[] targetRows = new int[size];
+        int[] offsets = new int[RADIX];
+        for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+            Arrays.fill(offsets, 0);
+            for (int i = 0; i < size; i++) offsets[getDigit(sourceXs[i], shift)]++;
+            if (offsets[getDigit(sourceXs[0], shift)] == size) continue;
+
+            int offset = 0;
+            for (int digit = 0; digit < RADIX; digit++) {
+                int count = offsets[digit];
+                offsets[digit] = offset;
+                offset += count;
+            }
+            for (int i = 0; i < size; i++) {
+                int target = offsets[getDigit(sourceXs[i], shift)]++;
+                targetXs[target] = sourceXs[i];
+                targetRows[target] = sourceRows[i];
+            }
+
+            long[] swapXs = sourceXs;
+            int[] swapRows = sourceRows;
+            sourceXs = targetXs;
+            sourceRows = targetRows;
+            targetXs = swapXs;
+            targetRows = swapRows;
+        }
+
+        xs = sourceXs;
+        long[] spare = targetXs;
+        for (int column = 0; column < ys.length; column++) {
+            long[] sortedYs = spare.length == xs.length ? spare : new long[xs.length];
+            for (int i = 0; i < size; i++) sortedYs[i] = ys[column][sourceRows[i]];
+            spare = ys[column];
+            ys[column] = sortedYs;
+        }
+        sortedByX = true;
+    }
+
+    private int getDigit(long x, int shift) {
+        return (int) ((x ^ Long.MIN_VALUE) >>> shift) & (RADIX - 1);
+    }
+
+    private void beginRow(long x) {
+        if (size == xs.length) grow(size + 1);
+        if (size > 0 && x < xs[size - 1]) sortedByX = false;
+        xs[size] = x;
+    }
+
+    private void includeY(long y) {
+        if (y < minY) minY = y;
+        if (y > maxY) maxY = y;
+    }
+
+    private void includeYBounds(PointSeries other) {
+        if (other.minY < minY) minY = other.minY;
+        if (other.maxY > maxY) maxY = other.maxY;
+    }
+
+    private void includeYBounds(int from, int to) {
+        for (long[] column : ys) {
+            for (int i = from; i < to; i++) includeY(column[i]);
+        }
+    }
+
+    private boolean isRangeSortedByX(int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            if (xs[i] < xs[i - 1]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Widens this series to formats which hold the values of both and returns the rows of
+     * {@code other} in them, copied if they have to be rescaled.
+     */
+    private PointSeries adoptFormats(PointSeries other) {
+        widenToHold(other);
+        if (other.xFormat.equals(xFormat) && other.yFormat.equals(yFormat)) return other;
+        PointSeries rescaled = other.copy();
+        rescaled.widenFormats(xFormat, yFormat);
+        return rescaled;
+    }
+
+    /**
+     * Widens this series to formats which hold the values of both, an empty series takes
+     * the formats of {@code other}.
+     *
+     * @throws ArithmeticException if some value of either doesn't fit a long in them, this
+     *                             series is then unchanged
+     */
+    private void widenToHold(PointSeries other) {
+        if (other.xFormat.equals(xFormat) && other.yFormat.equals(yFormat)) return;
+        ValueFormat xFormat = this.xFormat.widen(other.xFormat);
+        ValueFormat yFormat = this.yFormat.widen(other.yFormat);
+        if (size == 0) {
+            if (xFormat == null) xFormat = other.xFormat;
+            if (yFormat == null) yFormat = other.yFormat;
+        } else if (xFormat == null || yFormat == null) {
+            throw new IllegalArgumentException("Can't mix timestamp and numeric values");
+        }
+        if (!other.canWidenFormats(xFormat, yFormat) || (size > 0 && !canWidenFormats(xFormat, yFormat))) {
+            throw new ArithmeticException("Values out of range of " + xFormat + ", " + yFormat);
+        }
+        if (size == 0) setFormats(xFormat, yFormat);
+        else widenFormats(xFormat, yFormat);
+    }
+
+    private static void copyRescaled(long[] source, long[] destination, int offset, int length, long factor) {
+        if (factor == 1) {
+            System.arraycopy(source, 0, destination, offset, length);
+            return;
+        }
+        for (int i = 0; i < length; i++) destination[offset + i] = source[i] * factor;
+    }
+
+    private void checkSameColumns(PointSeries other) {
+        if (other.ys.length != ys.length) {
+            throw new IllegalArgumentException("Expected " + ys.length + " y columns, got " + other.ys.length);
+        }
+    }
+
+    private void grow(int minCapacity) {
+        int newCapacity = Math.max(xs.length + (xs.length >> 1), minCapacity);
+        xs = Arrays.copyOf(xs, newCapacity);
+        for (int column = 0; column < ys.length; column++) ys[column] = Arrays.copyOf(ys[column], newCapacity);
+    }
+
+}
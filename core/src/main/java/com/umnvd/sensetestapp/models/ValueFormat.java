@@ -0,0 +1,104 @@
+package com.umnvd.sensetestapp.models;
+
+import androidx.annotation.NonNull;
+
+import java.util.Objects;
+
+/**
+ * Meaning of the raw long values of a column. Decimals are stored as fixed-point values
+ * with {@link #getScale()} fraction digits, timestamps as milliseconds since the epoch.
+ */
+public final class ValueFormat {
+
+    public static final int MAX_SCALE = 9;
+
+    public static final ValueFormat INT = new ValueFormat(Type.INT, 0);
+    public static final ValueFormat LONG = new ValueFormat(Type.LONG, 0);
+    public static final ValueFormat TIMESTAMP = new ValueFormat(Type.TIMESTAMP, 0);
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+
+    private final Type type;
+    private final int scale;
+
+    private ValueFormat(Type type, int scale) {
+        this.type = type;
+        this.scale = scale;
+    }
+
+    public static ValueFormat decimal(int scale) {
+        if (scale < 0 || scale > MAX_SCALE) throw new IllegalArgumentException("Unsupported scale " + scale);
+        return new ValueFormat(Type.DECIMAL, scale);
+    }
+
+    public static ValueFormat of(int typeOrdinal, int scale) {
+        Type type = Type.values()[typeOrdinal];
+        return type == Type.DECIMAL ? decimal(scale) : new ValueFormat(type, 0);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public boolean isNumeric() {
+        return type != Type.TIMESTAMP;
+    }
+
+    /**
+     * The narrowest format which holds the values of both formats, or null if one is a
+     * timestamp and the other is not.
+     */
+    public ValueFormat widen(ValueFormat other) {
+        if (isNumeric() != other.isNumeric()) return null;
+        if (type == Type.DECIMAL || other.type == Type.DECIMAL) {
+            return decimal(Math.max(scale, other.scale));
+        }
+        return type.compareTo(other.type) >= 0 ? this : other;
+    }
+
+    /**
+     * Factor which turns raw values of this format into raw values of {@code wider}.
+     *
+     * @throws IllegalArgumentException if {@code wider} is not at least as wide as this format
+     */
+    public long getRescaleFactor(ValueFormat wider) {
+        if (!wider.equals(widen(wider))) throw new IllegalArgumentException(wider + " is narrower than " + this);
+        return POWERS_OF_TEN[wider.scale - scale];
+    }
+
+    /**
+     * Whether {@code value} multiplied by a {@link #getRescaleFactor(ValueFormat) factor}
+     * still fits a long.
+     */
+    public static boolean canRescale(long value, long factor) {
+        return value <= Long.MAX_VALUE / factor && value >= -(Long.MAX_VALUE / factor);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ValueFormat)) return false;
+        ValueFormat other = (ValueFormat) o;
+        return type == other.type && scale == other.scale;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, scale);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return type == Type.DECIMAL ? type + "(" + scale + ")" : type.toString();
+    }
+
+    public enum Type { INT, LONG, DECIMAL, TIMESTAMP }
+
+}
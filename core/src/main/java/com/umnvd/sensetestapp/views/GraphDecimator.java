@@ -0,0 +1,153 @@
+package com.umnvd.sensetestapp.views;
+
+import com.umnvd.sensetestapp.models.DecimationPyramid;
+import com.umnvd.sensetestapp.models.PointSeries;
+
+/**
+ * Reduces the polyline through the visible rows of a series to at most two segments per
+ * series and pixel column: one between the rows with the smallest and the largest y of the
+ * column, and one joining the last row of the previous column to the first row of this one.
+ * Within a column the polyline covers the pixels between its extremes, and the joining
+ * segments are the ones of the full polyline, so the segments cover the same pixels with at
+ * most twice as many segments as the plot is wide. The pyramid is walked from the coarsest
+ * level whose blocks fit in a pixel and blocks are split only where they cross a column
+ * boundary, so the cost depends on the plot width rather than on the visible rows count.
+ */
+public class GraphDecimator {
+
+    private final DecimationPyramid pyramid;
+
+    private PointSeries source;
+    private int seriesCount;
+    private long originX;
+    private int startIndex;
+    private int endIndex;
+    private double scaleX;
+    private double translateX;
+    private SegmentConsumer consumer;
+
+    private boolean hasColumn = false;
+    private int column;
+    private int columnFirstIndex;
+    private int columnLastIndex;
+    private int previousColumnLastIndex;
+    private int[] columnMinIndices = new int[0];
+    private int[] columnMaxIndices = new int[0];
+
+    public GraphDecimator(DecimationPyramid pyramid) {
+        this.pyramid = pyramid;
+    }
+
+    /**
+     * Passes the segments between the kept rows of [{@code startIndex}, {@code endIndex})
+     * to {@code consumer}, in ascending order for every series.
+     *
+     * @param originX x mapped to screen columns as {@code (x - originX) * scaleX + translateX},
+     *                the offset is kept exact however large the x values are
+     * @param width   width of the plot in pixels
+     */
+    public void decimate(
+            long originX,
+            int startIndex,
+            int endIndex,
+            float width,
+            double scaleX,
+            double translateX,
+            SegmentConsumer consumer
+    ) {
+        if (endIndex <= startIndex) return;
+        source = pyramid.getSeries();
+        this.seriesCount = source.getYColumnsCount();
+        if (columnMinIndices.length != seriesCount) {
+            columnMinIndices = new int[seriesCount];
+            columnMaxIndices = new int[seriesCount];
+        }
+        this.originX = originX;
+        this.startIndex = startIndex;
+        this.endIndex = endIndex;
+        this.scaleX = scaleX;
+        this.translateX = translateX;
+        this.consumer = consumer;
+
+        float pointsPerPixel = (endIndex - startIndex) / width;
+        int level = pyramid.getLevelForDensity(pointsPerPixel);
+        int shift = level * DecimationPyramid.BRANCHING_SHIFT;
+        hasColumn = false;
+        previousColumnLastIndex = -1;
+        for (int block = startIndex >> shift; block <= (endIndex - 1) >> shift; block++) {
+            accumulateBlock(level, block);
+        }
+        flushColumn();
+        this.consumer = null;
+    }
+
+    private void accumulateBlock(int level, int block) {
+        int firstIndex = pyramid.getFirstIndex(level, block);
+        int lastIndex = pyramid.getLastIndex(level, block);
+        if (lastIndex < startIndex || firstIndex >= endIndex) return;
+
+        boolean isPartlyVisible = firstIndex < startIndex || lastIndex >= endIndex;
+        int blockColumn = isPartlyVisible ? 0 : getColumn(firstIndex);
+        int lastColumn = isPartlyVisible ? 0 : getColumn(lastIndex);
+        if (level > 0 && (isPartlyVisible || blockColumn != lastColumn)) {
+            int firstChild = block << DecimationPyramid.BRANCHING_SHIFT;
+            int childrenEnd = Math.min(
+                    firstChild + DecimationPyramid.BRANCHING,
+                    pyramid.getBlocksCount(level - 1)
+            );
+            for (int child = firstChild; child < childrenEnd; child++) {
+                accumulateBlock(level - 1, child);
+            }
+            return;
+        }
+
+        boolean isSameColumn = hasColumn && blockColumn == column;
+        if (!isSameColumn) {
+            flushColumn();
+            hasColumn = true;
+            column = blockColumn;
+            columnFirstIndex = firstIndex;
+        }
+        columnLastIndex = lastIndex;
+        // The block walk above depends on x only and is shared, the extremes are per series.
+        for (int series = 0; series < seriesCount; series++) {
+            int minIndex = pyramid.getMinIndex(level, block, series);
+            int maxIndex = pyramid.getMaxIndex(level, block, series);
+            if (!isSameColumn) {
+                columnMinIndices[series] = minIndex;
+                columnMaxIndices[series] = maxIndex;
+                continue;
+            }
+            if (source.getY(series, minIndex) < source.getY(series, columnMinIndices[series])) {
+                columnMinIndices[series] = minIndex;
+            }
+            if (source.getY(series, maxIndex) > source.getY(series, columnMaxIndices[series])) {
+                columnMaxIndices[series] = maxIndex;
+            }
+        }
+    }
+
+    private int getColumn(int index) {
+        return (int) Math.floor((source.getX(index) - originX) * scaleX + translateX);
+    }
+
+    private void flushColumn() {
+        if (!hasColumn) return;
+        for (int series = 0; series < seriesCount; series++) {
+            if (previousColumnLastIndex >= 0) consumer.onSegment(series, previousColumnLastIndex, columnFirstIndex);
+            int fromIndex = Math.min(columnMinIndices[series], columnMaxIndices[series]);
+            int toIndex = Math.max(columnMinIndices[series], columnMaxIndices[series]);
+            // A flat column still spans from its first row to its last one.
+            if (fromIndex == toIndex) {
+                fromIndex = columnFirstIndex;
+                toIndex = columnLastIndex;
+            }
+            if (fromIndex != toIndex) consumer.onSegment(series, fromIndex, toIndex);
+        }
+        previousColumnLastIndex = columnLastIndex;
+        hasColumn = false;
+    }
+
+    public interface SegmentConsumer { void onSegment(int series, int fromIndex, int toIndex);}
+
+}
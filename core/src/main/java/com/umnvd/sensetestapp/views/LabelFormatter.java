@@ -0,0 +1,129 @@
+package com.umnvd.sensetestapp.views;
+
+import com.umnvd.sensetestapp.models.ValueFormat;
+
+/**
+ * Formats raw axis values into a reused char array. Decimals show as many fraction
+ * digits as the tick step needs, timestamps are shown in UTC with a precision that
+ * depends on the tick step.
+ */
+public class LabelFormatter {
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+    private ValueFormat format = ValueFormat.INT;
+    private long step = 1;
+
+    public void setFormat(ValueFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Sets the distance between the formatted values, 1 formats with the full precision.
+     */
+    public void setStep(long step) {
+        this.step = Math.max(step, 1);
+    }
+
+    /**
+     * Writes {@code value} to the end of {@code chars} and returns the index of its first char.
+     */
+    public int format(long value, char[] chars) {
+        switch (format.getType()) {
+            case DECIMAL:
+                return formatDecimal(value, format.getScale(), chars);
+            case TIMESTAMP:
+                return formatTimestamp(value, chars);
+            default:
+                return formatInteger(value, chars, chars.length);
+        }
+    }
+
+    private int formatDecimal(long value, int scale, char[] chars) {
+        int fractionDigits = scale;
+        long remainingStep = step;
+        while (fractionDigits > 0 && remainingStep % 10 == 0) {
+            fractionDigits--;
+            remainingStep /= 10;
+        }
+
+        int position = chars.length;
+        long remaining = value;
+        for (int i = 0; i < scale; i++) {
+            if (i >= scale - fractionDigits) chars[--position] = (char) ('0' + Math.abs(remaining % 10));
+            remaining /= 10;
+        }
+        if (fractionDigits > 0) chars[--position] = '.';
+        do {
+            chars[--position] = (char) ('0' + Math.abs(remaining % 10));
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) chars[--position] = '-';
+        return position;
+    }
+
+    private int formatInteger(long value, char[] chars, int end) {
+        int position = end;
+        long remaining = value;
+        do {
+            chars[--position] = (char) ('0' + Math.abs(remaining % 10));
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) chars[--position] = '-';
+        return position;
+    }
+
+    private int formatTimestamp(long millis, char[] chars) {
+        long days = millis / MILLIS_PER_DAY;
+        if (millis % MILLIS_PER_DAY < 0) days--;
+        long millisOfDay = millis - days * MILLIS_PER_DAY;
+        int position = chars.length;
+        if (step % MILLIS_PER_DAY == 0) return formatDate(days, chars, position);
+
+        if (step % MILLIS_PER_SECOND != 0) {
+            position = formatDigits(millisOfDay % MILLIS_PER_SECOND, 3, chars, position);
+            chars[--position] = '.';
+        }
+        if (step % MILLIS_PER_MINUTE != 0) {
+            position = formatDigits(millisOfDay / MILLIS_PER_SECOND % 60, 2, chars, position);
+            chars[--position] = ':';
+        }
+        position = formatDigits(millisOfDay / MILLIS_PER_MINUTE % 60, 2, chars, position);
+        chars[--position] = ':';
+        return formatDigits(millisOfDay / (60 * MILLIS_PER_MINUTE), 2, chars, position);
+    }
+
+    /**
+     * Writes {@code yyyy-MM-dd} of the proleptic Gregorian date {@code days} after 1970-01-01.
+     */
+    private int formatDate(long days, char[] chars, int end) {
+        long shifted = days + 719468;
+        long era = (shifted >= 0 ? shifted : shifted - 146096) / 146097;
+        long dayOfEra = shifted - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        int position = formatDigits(day, 2, chars, end);
+        chars[--position] = '-';
+        position = formatDigits(month, 2, chars, position);
+        chars[--position] = '-';
+        return year >= 0 ? formatDigits(year, 4, chars, position) : formatInteger(year, chars, position);
+    }
+
+    private int formatDigits(long value, int count, char[] chars, int end) {
+        int position = end;
+        long remaining = value;
+        for (int i = 0; i < count || remaining != 0; i++) {
+            chars[--position] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        return position;
+    }
+
+}
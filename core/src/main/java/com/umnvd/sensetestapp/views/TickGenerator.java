@@ -0,0 +1,85 @@
+package com.umnvd.sensetestapp.views;
+
+public class TickGenerator {
+
+    private static final int[] NICE_MULTIPLIERS = {1, 2, 5};
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+    private static final long MILLIS_PER_YEAR = 365 * MILLIS_PER_DAY;
+    private static final long[] TIME_STEPS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500,
+            1_000, 2_000, 5_000, 10_000, 15_000, 30_000,
+            60_000, 120_000, 300_000, 600_000, 900_000, 1_800_000,
+            3_600_000, 7_200_000, 10_800_000, 21_600_000, 43_200_000,
+            MILLIS_PER_DAY, 2 * MILLIS_PER_DAY, 7 * MILLIS_PER_DAY, 14 * MILLIS_PER_DAY,
+            30 * MILLIS_PER_DAY, 91 * MILLIS_PER_DAY, 182 * MILLIS_PER_DAY
+    };
+
+    private boolean isTime = false;
+    private long step = 1;
+    private long firstTick = 0;
+    private int count = 0;
+
+    public void update(
+            double visibleMin,
+            double visibleMax,
+            double pixelsPerUnit,
+            double minTickSpacing,
+            long minValue,
+            long maxValue
+    ) {
+        count = 0;
+        if (!(pixelsPerUnit > 0) || Double.isInfinite(pixelsPerUnit)) return;
+
+        step = getNiceStep(minTickSpacing / pixelsPerUnit);
+        double from = Math.max(visibleMin, minValue);
+        double to = Math.min(visibleMax, maxValue);
+        if (from > to) return;
+
+        firstTick = (long) Math.ceil(from / step) * step;
+        long lastTick = (long) Math.floor(to / step) * step;
+        if (lastTick >= firstTick) count = (int) ((lastTick - firstTick) / step) + 1;
+    }
+
+    /**
+     * Whether the values are milliseconds, ticks are placed at whole seconds, minutes,
+     * hours and days then.
+     */
+    public void setTime(boolean isTime) {
+        this.isTime = isTime;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getTick(int index) {
+        return firstTick + index * step;
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    private long getNiceStep(double minStep) {
+        if (isTime) {
+            for (long candidate : TIME_STEPS) {
+                if (candidate > minStep) return candidate;
+            }
+            return getNiceMultiple(minStep / MILLIS_PER_YEAR) * MILLIS_PER_YEAR;
+        }
+        return getNiceMultiple(minStep);
+    }
+
+    private long getNiceMultiple(double minStep) {
+        long magnitude = 1;
+        while (true) {
+            for (int multiplier : NICE_MULTIPLIERS) {
+                long candidate = multiplier * magnitude;
+                if (candidate > minStep) return candidate;
+            }
+            if (magnitude > Long.MAX_VALUE / 100) return magnitude * 10;
+            magnitude *= 10;
+        }
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.umnvd.sensetestapp.data;
+
+import com.umnvd.sensetestapp.models.PointSeries;
+import com.umnvd.sensetestapp.models.ValueFormat;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class CSVParserTest {
+
+    private static final String OVERFLOW_CSV = "1,10\n2,99999999999999999999\n3,-99999999999999999999\n4,40\n";
+
+    @Test
+    public void parsesSignedIntegers() {
+        PointSeries series = parse("1,10\n2,-20\n3,+30\n-4,0\n", CSVSchema.DEFAULT);
+
+        assertRows(series, new long[]{1, 2, 3, -4}, new long[]{10, -20, 30, 0});
+    }
+
+    @Test
+    public void parsesCrlfLineEndings() {
+        PointSeries series = parse("1,10\r\n2,20\r\n\r\n3,30\r\n", CSVSchema.DEFAULT);
+
+        assertRows(series, new long[]{1, 2, 3}, new long[]{10, 20, 30});
+    }
+
+    @Test
+    public void parsesRowsSplitBetweenBuffers() {
+        byte[] bytes = "1,10\r\n22,-25\n333,30".getBytes(StandardCharsets.US_ASCII);
+        CSVParser parser = new CSVParser(CSVSchema.DEFAULT);
+        for (byte b : bytes) parser.parse(new byte[]{b}, 0, 1);
+        parser.finish();
+
+        assertRows(parser.getSeries(), new long[]{1, 22, 333}, new long[]{10, -25, 30});
+    }
+
+    @Test
+    public void ignoresPaddingAndEnclosingQuotes() {
+        PointSeries series = parse(" 1 ,\"10\"\n\"2\", \" -20 \" \n3,\"\"30\n", CSVSchema.DEFAULT,
+                CSVParser.BadRowPolicy.SKIP, new BadRowReport());
+
+        assertRows(series, new long[]{1, 2}, new long[]{10, -20});
+    }
+
+    @Test
+    public void rejectsSpacesAndQuotesWithinNumbers() {
+        String[] rows = {"1,1 2", "1,1\"2", "1,- 2", "1,\"1\"2", "1 2,3", "1,\"12\" \""};
+        for (String row : rows) {
+            try {
+                parse("5,50\n" + row + "\n", CSVSchema.DEFAULT);
+                fail("Expected a CSVFormatException for " + row);
+            } catch (CSVFormatException e) {
+                assertEquals(row, 2, e.getLineNumber());
+                assertEquals(row, BadRowReport.Reason.UNEXPECTED_CHARACTER.getDescription(), e.getReason());
+            }
+        }
+    }
+
+    @Test
+    public void rejectsRowsWithWrongColumnsCount() {
+        for (String row : new String[]{"1", "1,2,3", "1,"}) {
+            try {
+                parse("5,50\n" + row + "\n", CSVSchema.DEFAULT);
+                fail("Expected a CSVFormatException for " + row);
+            } catch (CSVFormatException e) {
+                assertEquals(row, 2, e.getLineNumber());
+            }
+        }
+    }
+
+    @Test
+    public void skipsHeader() {
+        String csv = "time,value\n1,10\n2,20\n";
+        CSVSchema schema = infer(csv);
+
+        assertTrue(schema.hasHeader());
+        assertRows(parse(csv, schema), new long[]{1, 2}, new long[]{10, 20});
+    }
+
+    @Test
+    public void widensIntegerColumnToDecimals() {
+        PointSeries series = parse("1,10\n2,2.5\n3,0.125\n", CSVSchema.DEFAULT);
+
+        assertEquals(ValueFormat.decimal(3), series.getYFormat());
+        assertRows(series, new long[]{1, 2, 3}, new long[]{10_000, 2_500, 125});
+    }
+
+    @Test
+    public void roundsDigitsPastMaxScale() {
+        PointSeries series = parse("1,0.1234567894\n2,0.1234567895\n3,-0.1234567895\n", CSVSchema.DEFAULT);
+
+        assertEquals(ValueFormat.decimal(ValueFormat.MAX_SCALE), series.getYFormat());
+        assertRows(series, new long[]{1, 2, 3}, new long[]{123_456_789, 123_456_790, -123_456_790});
+    }
+
+    @Test
+    public void roundsDigitsWhichWouldOverflowWidenedRows() {
+        PointSeries series = parse("1,1000000000000000000\n2,1.25\n3,1.5\n4,-1.5\n", CSVSchema.DEFAULT);
+
+        assertEquals(ValueFormat.LONG, series.getYFormat());
+        assertRows(series, new long[]{1, 2, 3, 4}, new long[]{1_000_000_000_000_000_000L, 1, 2, -2});
+    }
+
+    @Test
+    public void parsesDecimalsSplitBetweenBuffers() {
+        byte[] bytes = "1,10\n22,2.5\n333,-0.25\n".getBytes(StandardCharsets.US_ASCII);
+        CSVParser parser = new CSVParser(CSVSchema.DEFAULT);
+        for (byte b : bytes) parser.parse(new byte[]{b}, 0, 1);
+        parser.finish();
+
+        assertRows(parser.getSeries(), new long[]{1, 22, 333}, new long[]{1000, 250, -25});
+    }
+
+    @Test
+    public void parsesTimestampColumn() {
+        CSVSchema schema = infer("2021-01-01T00:00:00Z,1\n2021-01-01 00:00:01.5,2\n");
+        PointSeries series = parse("2021-01-01T00:00:00Z,1\n\"2021-01-01 00:00:01.5\",2\n", schema);
+
+        assertEquals(ValueFormat.TIMESTAMP, series.getXFormat());
+        assertRows(series, new long[]{1_609_459_200_000L, 1_609_459_201_500L}, new long[]{1, 2});
+    }
+
+    @Test
+    public void reportsLinesAndOffsetsAfterCrlf() {
+        BadRowReport report = new BadRowReport();
+        CSVParser parser = new CSVParser(CSVSchema.DEFAULT);
+        parser.setBadRowPolicy(CSVParser.BadRowPolicy.SKIP, report);
+        parser.parse(toBuffer("1,10\r\n2,x\r\n3,30\r\n"));
+        parser.finish();
+
+        assertRows(parser.getSeries(), new long[]{1, 3}, new long[]{10, 30});
+        assertEquals(1, report.getSkippedRowsCount());
+        assertEquals(2, report.getLineNumber(0));
+        assertEquals(6, report.getByteOffset(0));
+        assertEquals(BadRowReport.Reason.UNEXPECTED_CHARACTER, report.getReason(0));
+        assertEquals(4, parser.getLineNumber());
+    }
+
+    @Test
+    public void failsOnOverflowWithFailPolicy() {
+        try {
+            parse(OVERFLOW_CSV, CSVSchema.DEFAULT);
+            fail("Expected a CSVFormatException");
+        } catch (CSVFormatException e) {
+            assertEquals(2, e.getLineNumber());
+        }
+    }
+
+    @Test
+    public void skipsOverflowWithSkipPolicy() {
+        BadRowReport report = new BadRowReport();
+        PointSeries series = parse(OVERFLOW_CSV, CSVSchema.DEFAULT, CSVParser.BadRowPolicy.SKIP, report);
+
+        assertRows(series, new long[]{1, 4}, new long[]{10, 40});
+        assertEquals(2, report.getSkippedRowsCount());
+        assertEquals(0, report.getClampedRowsCount());
+        assertEquals(2, report.getLineNumber(0));
+        assertEquals(3, report.getLineNumber(1));
+        assertEquals(BadRowReport.Reason.VALUE_OUT_OF_RANGE, report.getReason(0));
+        assertFalse(report.isClamped(0));
+    }
+
+    @Test
+    public void clampsOverflowWithClampPolicy() {
+        BadRowReport report = new BadRowReport();
+        PointSeries series = parse(OVERFLOW_CSV, CSVSchema.DEFAULT, CSVParser.BadRowPolicy.CLAMP, report);
+
+        assertRows(series, new long[]{1, 2, 3, 4}, new long[]{10, Long.MAX_VALUE, -Long.MAX_VALUE, 40});
+        assertEquals(0, report.getSkippedRowsCount());
+        assertEquals(2, report.getClampedRowsCount());
+        assertEquals(2, report.getLineNumber(0));
+        assertTrue(report.isClamped(0));
+    }
+
+    @Test
+    public void clampPolicySkipsRowsWhichCantBeClamped() {
+        BadRowReport report = new BadRowReport();
+        PointSeries series = parse("1,10\n2\n3,30,40\n4,\n5,50\n", CSVSchema.DEFAULT,
+                CSVParser.BadRowPolicy.CLAMP, report);
+
+        assertRows(series, new long[]{1, 5}, new long[]{10, 50});
+        assertEquals(3, report.getSkippedRowsCount());
+        assertEquals(BadRowReport.Reason.WRONG_COLUMNS_COUNT, report.getReason(0));
+        assertEquals(BadRowReport.Reason.WRONG_COLUMNS_COUNT, report.getReason(1));
+        assertEquals(BadRowReport.Reason.MISSING_VALUE, report.getReason(2));
+    }
+
+    static PointSeries parse(String csv, CSVSchema schema) {
+        return parse(csv, schema, CSVParser.BadRowPolicy.FAIL, null);
+    }
+
+    static PointSeries parse(String csv, CSVSchema schema, CSVParser.BadRowPolicy policy, BadRowReport report) {
+        CSVParser parser = new CSVParser(schema);
+        parser.setBadRowPolicy(policy, report);
+        parser.parse(toBuffer(csv));
+        parser.finish();
+        return parser.getSeries();
+    }
+
+    static CSVSchema infer(String csv) {
+        byte[] bytes = csv.getBytes(StandardCharsets.US_ASCII);
+        return CSVSchema.infer(bytes, bytes.length, true);
+    }
+
+    static ByteBuffer toBuffer(String csv) {
+        return ByteBuffer.wrap(csv.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static void assertRows(PointSeries series, long[] xs, long[] ys) {
+        assertEquals(xs.length, series.size());
+        for (int i = 0; i < xs.length; i++) {
+            assertEquals("x of row " + i, xs[i], series.getX(i));
+            assertEquals("y of row " + i, ys[i], series.getY(0, i));
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.umnvd.sensetestapp.data;
+
+import com.umnvd.sensetestapp.models.ValueFormat;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class CSVSchemaTest {
+
+    @Test
+    public void infersDelimiterHeaderAndFormats() {
+        CSVSchema schema = CSVParserTest.infer("t;a;b\n1;1.5;2\n2;2.25;3\n");
+
+        assertEquals(';', schema.getDelimiter());
+        assertTrue(schema.hasHeader());
+        assertEquals(3, schema.getColumnsCount());
+        assertEquals(ValueFormat.INT, schema.getXFormat());
+        assertEquals(ValueFormat.decimal(2), schema.getYFormat());
+        assertEquals(2, schema.getSampledRowsCount());
+    }
+
+    @Test
+    public void infersTimestampAndLongColumns() {
+        CSVSchema schema = CSVParserTest.infer(
+                "2021-01-01T00:00:00Z\t12345678901\n2021-01-01 00:00:01.5+02:00\t1\n"
+        );
+
+        assertEquals('\t', schema.getDelimiter());
+        assertFalse(schema.hasHeader());
+        assertEquals(ValueFormat.TIMESTAMP, schema.getXFormat());
+        assertEquals(ValueFormat.LONG, schema.getYFormat());
+    }
+
+    @Test
+    public void ignoresUnterminatedLastLineOfSample() {
+        byte[] sample = "1,2\r\n3,4.5".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(ValueFormat.INT, CSVSchema.infer(sample, sample.length, false).getYFormat());
+        assertEquals(1, CSVSchema.infer(sample, sample.length, false).getSampledRowsCount());
+        assertEquals(ValueFormat.decimal(1), CSVSchema.infer(sample, sample.length, true).getYFormat());
+    }
+
+    @Test
+    public void returnsDefaultForEmptySample() {
+        assertSame(CSVSchema.DEFAULT, CSVParserTest.infer("\n\n"));
+        assertEquals(0, CSVSchema.DEFAULT.getSampledRowsCount());
+    }
+
+    @Test(expected = CSVFormatException.class)
+    public void failsOnInconsistentColumns() {
+        CSVParserTest.infer("1,2\n3,4,5\n");
+    }
+
+    @Test
+    public void lenientInferenceIgnoresBadLines() {
+        byte[] sample = "1,2\n3,x\n4,5.5,6\n7,8\n9,10\n".getBytes(StandardCharsets.US_ASCII);
+        CSVSchema schema = CSVSchema.infer(sample, sample.length, true, true);
+
+        assertEquals(2, schema.getColumnsCount());
+        assertEquals(ValueFormat.INT, schema.getYFormat());
+        assertEquals(3, schema.getSampledRowsCount());
+    }
+
+    @Test(expected = CSVFormatException.class)
+    public void lenientInferenceFailsWhenMostLinesAreBad() {
+        byte[] sample = "1,2\n3,x\n4,y\n".getBytes(StandardCharsets.US_ASCII);
+        CSVSchema.infer(sample, sample.length, true, true);
+    }
+
+    @Test
+    public void withoutHeaderKeepsFormats() {
+        CSVSchema schema = CSVParserTest.infer("x,y\n1,2.5\n").withoutHeader();
+
+        assertFalse(schema.hasHeader());
+        assertEquals(ValueFormat.decimal(1), schema.getYFormat());
+    }
+
+}
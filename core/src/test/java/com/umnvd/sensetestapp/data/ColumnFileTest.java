@@ -0,0 +1,165 @@
+package com.umnvd.sensetestapp.data;
+
+import com.umnvd.sensetestapp.models.PointSeries;
+import com.umnvd.sensetestapp.models.ValueFormat;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ColumnFileTest {
+
+    private static final int ROWS_COUNT = 20 * ColumnFile.OVERVIEW_MAX_ROWS + 123;
+    private static final int BATCH_SIZE = 10_000;
+    private static final ValueFormat Y_FORMAT = ValueFormat.decimal(2);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsWrittenRows() throws IOException {
+        File file = new File(folder.getRoot(), "series.col");
+        try (ColumnFileWriter writer = new ColumnFileWriter(file, 2, ValueFormat.LONG, Y_FORMAT, 1234, 5678)) {
+            for (int from = 0; from < ROWS_COUNT; from += BATCH_SIZE) {
+                writer.onBatch(createRows(from, Math.min(from + BATCH_SIZE, ROWS_COUNT)));
+            }
+            writer.finish();
+        }
+
+        ColumnFile columnFile = ColumnFile.open(file);
+        assertEquals(1234, columnFile.getSourceSize());
+        assertEquals(5678, columnFile.getSourceLastModified());
+        assertEquals(2, columnFile.getYColumnsCount());
+        assertEquals(ValueFormat.LONG, columnFile.getXFormat());
+        assertEquals(Y_FORMAT, columnFile.getYFormat());
+        assertEquals(ROWS_COUNT, columnFile.getRowsCount());
+        assertEquals(getX(0), columnFile.getFirstX());
+        assertEquals(getX(ROWS_COUNT - 1), columnFile.getLastX());
+        assertEquals(getMinY(), columnFile.getMinY());
+        assertEquals(getMaxY(), columnFile.getMaxY());
+
+        PointSeries all = columnFile.read(new ColumnFile.Range(0, 0, (ROWS_COUNT - 1) / ColumnFile.PAGE_ROWS + 1));
+        assertEquals(ROWS_COUNT, all.size());
+        for (int i = 0; i < ROWS_COUNT; i++) {
+            assertEquals(getX(i), all.getX(i));
+            assertEquals(getY(0, i), all.getY(0, i));
+            assertEquals(getY(1, i), all.getY(1, i));
+        }
+
+        // The summary levels keep the extremes of the rows they cover.
+        PointSeries overview = columnFile.getOverview();
+        assertTrue(overview.size() <= ColumnFile.OVERVIEW_MAX_ROWS);
+        assertEquals(getX(0), overview.getX(0));
+        assertEquals(getX(ROWS_COUNT - 1), overview.getX(overview.size() - 1));
+        assertEquals(getMinY(), overview.getMinY());
+        assertEquals(getMaxY(), overview.getMaxY());
+    }
+
+    @Test
+    public void keepsBadRowPolicyAndReport() throws IOException {
+        File file = new File(folder.getRoot(), "series.col");
+        BadRowReport report = new BadRowReport();
+        report.add(7, 120, BadRowReport.Reason.MISSING_VALUE, false);
+        report.add(9, 180, BadRowReport.Reason.VALUE_OUT_OF_RANGE, true);
+        try (ColumnFileWriter writer = new ColumnFileWriter(file, 2, ValueFormat.LONG, Y_FORMAT, 0, 0)) {
+            writer.setBadRowReport(CSVParser.BadRowPolicy.CLAMP, report);
+            writer.onBatch(createRows(0, BATCH_SIZE));
+            writer.finish();
+        }
+
+        ColumnFile columnFile = ColumnFile.open(file);
+        assertEquals(BATCH_SIZE, columnFile.getRowsCount());
+        assertEquals(CSVParser.BadRowPolicy.CLAMP, columnFile.getBadRowPolicy());
+        assertEquals(report.toString(), columnFile.getBadRowReport().toString());
+    }
+
+    @Test
+    public void visibleRangeHoldsRequestedRows() throws IOException {
+        File file = new File(folder.getRoot(), "series.col");
+        try (ColumnFileWriter writer = new ColumnFileWriter(file, 2, ValueFormat.LONG, Y_FORMAT, 0, 0)) {
+            writer.append(createRows(0, ROWS_COUNT));
+            writer.finish();
+        }
+
+        ColumnFile columnFile = ColumnFile.open(file);
+        int from = ROWS_COUNT / 3;
+        int to = from + 3 * ColumnFile.PAGE_ROWS;
+        ColumnFile.Range range = columnFile.getVisibleRange(getX(from), getX(to));
+        assertEquals(0, range.level);
+        PointSeries rows = columnFile.read(range);
+        int offset = range.fromPage * ColumnFile.PAGE_ROWS;
+        assertTrue(offset <= from && offset + rows.size() > to);
+        for (int i = 0; i < rows.size(); i++) assertEquals(getX(offset + i), rows.getX(i));
+
+        ColumnFile.Range wide = columnFile.getVisibleRange(getX(0), getX(ROWS_COUNT - 1));
+        assertTrue(wide.level > 0);
+        assertTrue(columnFile.extend(range).contains(range));
+    }
+
+    @Test(expected = ColumnFileWriter.UnsortedException.class)
+    public void rejectsUnsortedRows() throws IOException {
+        File file = new File(folder.getRoot(), "series.col");
+        try (ColumnFileWriter writer = new ColumnFileWriter(file, 1, ValueFormat.INT, ValueFormat.INT, 0, 0)) {
+            writer.append(PointSeries.wrap(new long[]{1, 3, 2}, new long[]{1, 2, 3}));
+        }
+    }
+
+    @Test
+    public void reportsWidenedFormats() throws IOException {
+        File file = new File(folder.getRoot(), "series.col");
+        try (ColumnFileWriter writer = new ColumnFileWriter(file, 1, ValueFormat.INT, ValueFormat.INT, 0, 0)) {
+            PointSeries rows = PointSeries.wrap(new long[]{1, 2}, new long[]{15, 25});
+            rows.setFormats(ValueFormat.INT, ValueFormat.decimal(1));
+            writer.onBatch(rows);
+            assertTrue(writer.hasFailed());
+            try {
+                writer.finish();
+                fail("Expected a FormatsWidenedException");
+            } catch (ColumnFileWriter.FormatsWidenedException e) {
+                assertEquals(ValueFormat.INT, e.getXFormat());
+                assertEquals(ValueFormat.decimal(1), e.getYFormat());
+            }
+        }
+        assertFalse(file.exists());
+    }
+
+    private static PointSeries createRows(int from, int to) {
+        long[] xs = new long[to - from];
+        long[][] ys = new long[2][to - from];
+        for (int i = from; i < to; i++) {
+            xs[i - from] = getX(i);
+            ys[0][i - from] = getY(0, i);
+            ys[1][i - from] = getY(1, i);
+        }
+        PointSeries rows = PointSeries.wrap(xs, ys);
+        rows.setFormats(ValueFormat.LONG, Y_FORMAT);
+        return rows;
+    }
+
+    private static long getX(int row) {
+        return 1_600_000_000_000L + row * 3L;
+    }
+
+    private static long getY(int column, int row) {
+        long wave = (row * 7919L) % 1000;
+        return column == 0 ? -row * 10L + wave : row * 10L + wave;
+    }
+
+    private static long getMinY() {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < ROWS_COUNT; i++) min = Math.min(min, Math.min(getY(0, i), getY(1, i)));
+        return min;
+    }
+
+    private static long getMaxY() {
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < ROWS_COUNT; i++) max = Math.max(max, Math.max(getY(0, i), getY(1, i)));
+        return max;
+    }
+
+}
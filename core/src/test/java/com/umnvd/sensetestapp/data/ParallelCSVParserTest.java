@@ -0,0 +1,314 @@
+package com.umnvd.sensetestapp.data;
+
+import com.umnvd.sensetestapp.models.PointSeries;
+import com.umnvd.sensetestapp.models.ValueFormat;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+import static org.junit.Assert.*;
+
+/**
+ * Files of a few MB, so that they are split into several chunks.
+ */
+public class ParallelCSVParserTest {
+
+    private static final int ROWS_COUNT = 300_000;
+
+    private static ForkJoinPool pool;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void createPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void shutDownPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void matchesSequentialParse() throws IOException {
+        File file = writeFile(false);
+
+        PointSeries expected = parseSequentially(file, CSVParser.BadRowPolicy.FAIL, null);
+        PointSeries actual;
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            actual = new ParallelCSVParser(pool).parse(channel, channel.size(), inferSchema(file));
+        }
+
+        assertSameRows(expected, actual);
+    }
+
+    @Test
+    public void reportsSameBadRowsAsSequentialParse() throws IOException {
+        File file = writeFile(true);
+        for (CSVParser.BadRowPolicy policy : new CSVParser.BadRowPolicy[]{
+                CSVParser.BadRowPolicy.SKIP, CSVParser.BadRowPolicy.CLAMP
+        }) {
+            BadRowReport expectedReport = new BadRowReport();
+            PointSeries expected = parseSequentially(file, policy, expectedReport);
+            BadRowReport actualReport = new BadRowReport();
+            PointSeries actual;
+            try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+                FileChannel channel = input.getChannel();
+                actual = new ParallelCSVParser(pool).parse(
+                        channel, channel.size(), inferSchema(file), null, null, policy, actualReport
+                );
+            }
+
+            assertSameRows(expected, actual);
+            assertFalse(expectedReport.isEmpty());
+            assertEquals(expectedReport.toString(), actualReport.toString());
+        }
+    }
+
+    @Test
+    public void streamsSameRowsAsSequentialParse() throws IOException {
+        File file = writeFile(false);
+        PointSeries expected = parseSequentially(file, CSVParser.BadRowPolicy.FAIL, null);
+
+        CSVSchema schema = inferSchema(file);
+        PointSeries actual = new PointSeries(schema.getColumnsCount() - 1, ROWS_COUNT);
+        actual.setFormats(schema.getXFormat(), schema.getYFormat());
+        int[] batchesCount = {0};
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            new ParallelCSVParser(pool).parseStreaming(channel, channel.size(), schema, batch -> {
+                batchesCount[0]++;
+                actual.addAll(batch);
+            }, null, CSVParser.BadRowPolicy.FAIL, null);
+        }
+
+        assertTrue(batchesCount[0] > 1);
+        assertSameRows(expected, actual);
+    }
+
+    @Test
+    public void failsOnSameLineAsSequentialParse() throws IOException {
+        File file = writeFile(true);
+        long expectedLineNumber = -1;
+        try {
+            parseSequentially(file, CSVParser.BadRowPolicy.FAIL, null);
+        } catch (CSVFormatException e) {
+            expectedLineNumber = e.getLineNumber();
+        }
+        assertTrue(expectedLineNumber > ROWS_COUNT / 2);
+
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            new ParallelCSVParser(pool).parse(channel, channel.size(), inferSchema(file));
+            fail("Expected a CSVFormatException");
+        } catch (CSVFormatException e) {
+            assertEquals(expectedLineNumber, e.getLineNumber());
+        }
+    }
+
+    @Test
+    public void matchesSequentialParseWithHeaderAndLateDecimals() throws IOException {
+        File file = writeFile(true, i -> i > ROWS_COUNT / 2 && i % 1000 == 0 ? "12.25" : null);
+
+        PointSeries expected = parseSequentially(file, CSVParser.BadRowPolicy.FAIL, null);
+        PointSeries actual = parseInParallel(file, CSVParser.BadRowPolicy.FAIL, null, null);
+
+        assertEquals(ValueFormat.decimal(2), expected.getYFormat());
+        assertSameRows(expected, actual);
+    }
+
+    /**
+     * A large value, which can't be rescaled to decimals, and an overflowing one, which is
+     * skipped or clamped, come before the chunks with decimals, so those are rounded off.
+     */
+    @Test
+    public void matchesSequentialParseWhenLargeValuesPrecedeDecimals() throws IOException {
+        File file = writeFile(false, i -> {
+            if (i == 1000) return "1000000000000000000";
+            if (i == 2000) return "99999999999999999999";
+            return i > ROWS_COUNT / 2 && i % 1000 == 0 ? "0.5" : null;
+        });
+
+        for (CSVParser.BadRowPolicy policy : new CSVParser.BadRowPolicy[]{
+                CSVParser.BadRowPolicy.SKIP, CSVParser.BadRowPolicy.CLAMP
+        }) {
+            BadRowReport expectedReport = new BadRowReport();
+            PointSeries expected = parseSequentially(file, policy, expectedReport);
+            BadRowReport actualReport = new BadRowReport();
+            PointSeries actual = parseInParallel(file, policy, actualReport, null);
+
+            assertEquals(ValueFormat.LONG, expected.getYFormat());
+            assertSameRows(expected, actual);
+            assertEquals(expectedReport.toString(), actualReport.toString());
+        }
+    }
+
+    /**
+     * Values which later chunks parse as integers overflow the decimals of the first chunk.
+     */
+    @Test
+    public void matchesSequentialParseWhenDecimalsPrecedeLargeValues() throws IOException {
+        File file = writeFile(false, i -> {
+            if (i == 1000) return "0.25";
+            return i > ROWS_COUNT / 2 && i % 50_000 == 0 ? "100000000000000000" : null;
+        });
+
+        long expectedLineNumber = -1;
+        try {
+            parseSequentially(file, CSVParser.BadRowPolicy.FAIL, null);
+        } catch (CSVFormatException e) {
+            expectedLineNumber = e.getLineNumber();
+        }
+        assertTrue(expectedLineNumber > ROWS_COUNT / 2);
+        try {
+            parseInParallel(file, CSVParser.BadRowPolicy.FAIL, null, null);
+            fail("Expected a CSVFormatException");
+        } catch (CSVFormatException e) {
+            assertEquals(expectedLineNumber, e.getLineNumber());
+        }
+
+        for (CSVParser.BadRowPolicy policy : new CSVParser.BadRowPolicy[]{
+                CSVParser.BadRowPolicy.SKIP, CSVParser.BadRowPolicy.CLAMP
+        }) {
+            BadRowReport expectedReport = new BadRowReport();
+            PointSeries expected = parseSequentially(file, policy, expectedReport);
+            BadRowReport actualReport = new BadRowReport();
+            PointSeries actual = parseInParallel(file, policy, actualReport, null);
+
+            assertSameRows(expected, actual);
+            assertFalse(expectedReport.isEmpty());
+            assertEquals(expectedReport.toString(), actualReport.toString());
+        }
+    }
+
+    @Test
+    public void keepsPublishedChunksUnchanged() throws IOException {
+        File file = writeFile(true, i -> i > ROWS_COUNT / 2 && i % 1000 == 0 ? "12.25" : null);
+        List<PointSeries> batches = new ArrayList<>();
+        List<PointSeries> publishedBatches = new ArrayList<>();
+
+        PointSeries actual = parseInParallel(file, CSVParser.BadRowPolicy.FAIL, null, batch -> {
+            batches.add(batch);
+            publishedBatches.add(batch.copy());
+        });
+
+        assertTrue(batches.size() > 1);
+        PointSeries joined = new PointSeries(actual.getYColumnsCount(), actual.size());
+        for (int i = 0; i < batches.size(); i++) {
+            assertSameRows(publishedBatches.get(i), batches.get(i));
+            joined.addAll(batches.get(i));
+        }
+        assertSameRows(actual, joined);
+    }
+
+    /**
+     * Two y columns with mixed line endings. Bad rows have an extra column and come past
+     * the first chunks.
+     */
+    private File writeFile(boolean hasBadRows) throws IOException {
+        File file = folder.newFile("data.csv");
+        Random random = new Random(42);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.US_ASCII))) {
+            for (int i = 0; i < ROWS_COUNT; i++) {
+                writer.write(Integer.toString(i * 10));
+                writer.write(',');
+                writer.write(Integer.toString(random.nextInt(2_000_000) - 1_000_000));
+                writer.write(',');
+                writer.write(Integer.toString(random.nextInt(1000)));
+                if (hasBadRows && i > ROWS_COUNT / 2 && i % 25_000 == 12_345) writer.write(",1");
+                writer.write(i % 2 == 0 ? "\n" : "\r\n");
+            }
+        }
+        return file;
+    }
+
+    /**
+     * One y column of integers, or of the values {@code specialValues} returns for some rows.
+     */
+    private File writeFile(boolean hasHeader, IntFunction<String> specialValues) throws IOException {
+        File file = folder.newFile("data.csv");
+        Random random = new Random(42);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.US_ASCII))) {
+            if (hasHeader) writer.write("time,value\n");
+            for (int i = 0; i < ROWS_COUNT; i++) {
+                writer.write(Integer.toString(i * 10));
+                writer.write(',');
+                String value = specialValues.apply(i);
+                writer.write(value != null ? value : Integer.toString(random.nextInt(2_000_000) - 1_000_000));
+                writer.write('\n');
+            }
+        }
+        return file;
+    }
+
+    private static CSVSchema inferSchema(File file) throws IOException {
+        byte[] sample = new byte[CSVSchema.SAMPLE_SIZE];
+        int length;
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            length = input.read(sample);
+        }
+        return CSVSchema.infer(sample, length, false);
+    }
+
+    private static PointSeries parseSequentially(
+            File file, CSVParser.BadRowPolicy policy, BadRowReport report
+    ) throws IOException {
+        CSVParser parser = new CSVParser(inferSchema(file));
+        parser.setBadRowPolicy(policy, report);
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            parser.parse(buffer);
+        }
+        parser.finish();
+        return parser.getSeries();
+    }
+
+    private static PointSeries parseInParallel(
+            File file, CSVParser.BadRowPolicy policy, BadRowReport report, CSVParser.BatchListener batchListener
+    ) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            return new ParallelCSVParser(pool).parse(
+                    channel, channel.size(), inferSchema(file), batchListener, null, policy, report
+            );
+        }
+    }
+
+    private static void assertSameRows(PointSeries expected, PointSeries actual) {
+        assertEquals(expected.getXFormat(), actual.getXFormat());
+        assertEquals(expected.getYFormat(), actual.getYFormat());
+        assertEquals(expected.getYColumnsCount(), actual.getYColumnsCount());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getX(i), actual.getX(i));
+            for (int column = 0; column < expected.getYColumnsCount(); column++) {
+                assertEquals(expected.getY(column, i), actual.getY(column, i));
+            }
+        }
+    }
+
+}
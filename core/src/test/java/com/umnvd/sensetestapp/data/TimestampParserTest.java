@@ -0,0 +1,75 @@
+package com.umnvd.sensetestapp.data;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+
+import static org.junit.Assert.*;
+
+public class TimestampParserTest {
+
+    @Test
+    public void parsesDate() {
+        assertEquals(0, parse("1970-01-01"));
+        assertEquals(epochMillis("2024-02-29T00:00:00Z"), parse("2024-02-29"));
+        assertEquals(epochMillis("1969-12-31T00:00:00Z"), parse("1969-12-31"));
+    }
+
+    @Test
+    public void parsesTimeWithSecondsAndFraction() {
+        assertEquals(epochMillis("2021-03-04T05:06:00Z"), parse("2021-03-04T05:06"));
+        assertEquals(epochMillis("2021-03-04T05:06:07Z"), parse("2021-03-04 05:06:07"));
+        assertEquals(epochMillis("2021-03-04T05:06:07.5Z"), parse("2021-03-04T05:06:07.5"));
+        assertEquals(epochMillis("2021-03-04T05:06:07.123Z"), parse("2021-03-04T05:06:07,123456789"));
+    }
+
+    @Test
+    public void parsesZoneOffsets() {
+        assertEquals(epochMillis("2021-03-04T05:06:07Z"), parse("2021-03-04T05:06:07Z"));
+        assertEquals(epochMillis("2021-03-04T05:06:07+02:00"), parse("2021-03-04T05:06:07+02"));
+        assertEquals(epochMillis("2021-03-04T05:06:07-05:30"), parse("2021-03-04T05:06:07-0530"));
+        assertEquals(epochMillis("2021-03-04T05:06:07.250+01:00"), parse("2021-03-04T05:06:07.25+01:00"));
+    }
+
+    @Test
+    public void rejectsInvalidTimestamps() {
+        String[] invalid = {
+                "", "2021-03-0", "2021/03/04", "2021-13-01", "2021-02-29", "2021-03-04X05:06",
+                "2021-03-04T24:00", "2021-03-04T05:60", "2021-03-04T05:06:07.", "2021-03-04T05:06:07ZZ",
+                "2021-03-04T05:06:07+2", "abcd-ef-gh"
+        };
+        for (String value : invalid) {
+            assertEquals(value, TimestampParser.INVALID, parse(value));
+        }
+    }
+
+    @Test
+    public void parsesRangeOfArray() {
+        byte[] bytes = "x,2021-03-04,y".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(epochMillis("2021-03-04T00:00:00Z"), TimestampParser.parse(bytes, 2, 12));
+    }
+
+    @Test
+    public void daysFromCivilMatchesEpochDays() {
+        for (int year = 1600; year <= 2400; year += 7) {
+            for (int month = 1; month <= 12; month++) {
+                LocalDate date = LocalDate.of(year, month, month == 2 ? 28 : 30);
+                assertEquals(date.toString(), date.toEpochDay(),
+                        TimestampParser.daysFromCivil(year, month, date.getDayOfMonth()));
+            }
+        }
+    }
+
+    private static long parse(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        return TimestampParser.parse(bytes, 0, bytes.length);
+    }
+
+    private static long epochMillis(String value) {
+        return OffsetDateTime.parse(value).toInstant().toEpochMilli();
+    }
+
+}
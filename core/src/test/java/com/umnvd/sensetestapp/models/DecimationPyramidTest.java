@@ -0,0 +1,156 @@
+package com.umnvd.sensetestapp.models;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DecimationPyramidTest {
+
+    @Test
+    public void blocksHoldExtremaOfTheirRows() {
+        PointSeries series = createSeries(new Random(3), 1000);
+        DecimationPyramid pyramid = new DecimationPyramid();
+        pyramid.build(series);
+
+        assertTrue(pyramid.getMaxLevel() > 1);
+        assertEquals(1, pyramid.getBlocksCount(pyramid.getMaxLevel()));
+        assertBlockExtrema(pyramid);
+    }
+
+    @Test
+    public void updateKeepsExtremaOfAppendedRows() {
+        Random random = new Random(5);
+        PointSeries series = createSeries(random, 100);
+        DecimationPyramid pyramid = new DecimationPyramid();
+        pyramid.build(series);
+
+        for (int i = 0; i < 500; i++) {
+            series.addRow(100 + i, new long[]{random.nextInt(10_000) - 5_000, random.nextInt(100)});
+        }
+        pyramid.update(100);
+
+        assertEquals(1, pyramid.getBlocksCount(pyramid.getMaxLevel()));
+        assertBlockExtrema(pyramid);
+    }
+
+    @Test
+    public void levelForDensityHasBlocksOfAtMostThatManyRows() {
+        DecimationPyramid pyramid = new DecimationPyramid();
+        pyramid.build(createSeries(new Random(1), 10_000));
+
+        assertEquals(0, pyramid.getLevelForDensity(0.5f));
+        assertEquals(0, pyramid.getLevelForDensity(3.9f));
+        assertEquals(1, pyramid.getLevelForDensity(4f));
+        assertEquals(2, pyramid.getLevelForDensity(20f));
+        assertEquals(pyramid.getMaxLevel(), pyramid.getLevelForDensity(1e9f));
+    }
+
+    @Test
+    public void rangeExtremaMatchLinearScan() {
+        Random random = new Random(3);
+        PointSeries series = createSeries(random, 1000);
+        DecimationPyramid pyramid = new DecimationPyramid();
+        pyramid.build(series);
+
+        assertTrue(pyramid.getMaxLevel() > 1);
+        for (int i = 0; i < 2000; i++) {
+            int from = random.nextInt(series.size() + 1);
+            int to = from + random.nextInt(series.size() - from + 1);
+            assertRangeExtrema(pyramid, from, to);
+        }
+        for (int from = 0; from <= 40; from++) {
+            for (int to = from; to <= 40; to++) assertRangeExtrema(pyramid, from, to);
+        }
+    }
+
+    @Test
+    public void rangeExtremaFollowAppendedRows() {
+        Random random = new Random(5);
+        PointSeries series = createSeries(random, 100);
+        DecimationPyramid pyramid = new DecimationPyramid();
+        pyramid.build(series);
+
+        int oldSize = series.size();
+        for (int i = 0; i < 500; i++) {
+            series.addRow(oldSize + i, new long[]{random.nextInt(10_000) - 5_000, random.nextInt(100)});
+        }
+        pyramid.update(oldSize);
+
+        assertRangeExtrema(pyramid, 0, series.size());
+        assertRangeExtrema(pyramid, oldSize - 3, series.size() - 7);
+        assertRangeExtrema(pyramid, 17, 433);
+    }
+
+    @Test
+    public void emptyRangeHasNoExtremum() {
+        DecimationPyramid pyramid = new DecimationPyramid();
+        pyramid.build(createSeries(new Random(1), 10));
+
+        assertEquals(-1, pyramid.getRangeMinIndex(0, 5, 5));
+        assertEquals(-1, pyramid.getRangeMaxIndex(1, 7, 3));
+        assertEquals(-1, pyramid.getRangeMinIndex(0, 10, 20));
+    }
+
+    static PointSeries createSeries(Random random, int size) {
+        PointSeries series = new PointSeries(2, size);
+        for (int i = 0; i < size; i++) {
+            series.addRow(i, new long[]{random.nextInt(10_000) - 5_000, random.nextInt(100)});
+        }
+        return series;
+    }
+
+    private static void assertBlockExtrema(DecimationPyramid pyramid) {
+        PointSeries series = pyramid.getSeries();
+        for (int level = 1; level <= pyramid.getMaxLevel(); level++) {
+            for (int block = 0; block < pyramid.getBlocksCount(level); block++) {
+                int first = pyramid.getFirstIndex(level, block);
+                int last = pyramid.getLastIndex(level, block);
+                for (int column = 0; column < series.getYColumnsCount(); column++) {
+                    long min = Long.MAX_VALUE;
+                    long max = Long.MIN_VALUE;
+                    for (int i = first; i <= last; i++) {
+                        min = Math.min(min, series.getY(column, i));
+                        max = Math.max(max, series.getY(column, i));
+                    }
+                    int minIndex = pyramid.getMinIndex(level, block, column);
+                    int maxIndex = pyramid.getMaxIndex(level, block, column);
+                    String name = "block " + block + " of level " + level;
+                    assertTrue(name, minIndex >= first && minIndex <= last);
+                    assertTrue(name, maxIndex >= first && maxIndex <= last);
+                    assertEquals(name, min, series.getY(column, minIndex));
+                    assertEquals(name, max, series.getY(column, maxIndex));
+                }
+            }
+        }
+    }
+
+    /**
+     * Ties may resolve to any of the rows, so the values are compared rather than the indices.
+     */
+    private static void assertRangeExtrema(DecimationPyramid pyramid, int from, int to) {
+        PointSeries series = pyramid.getSeries();
+        for (int column = 0; column < series.getYColumnsCount(); column++) {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = from; i < to; i++) {
+                min = Math.min(min, series.getY(column, i));
+                max = Math.max(max, series.getY(column, i));
+            }
+            int minIndex = pyramid.getRangeMinIndex(column, from, to);
+            int maxIndex = pyramid.getRangeMaxIndex(column, from, to);
+            if (from >= to) {
+                assertEquals(-1, minIndex);
+                assertEquals(-1, maxIndex);
+                continue;
+            }
+            String range = "[" + from + ", " + to + ") of column " + column;
+            assertTrue(range, minIndex >= from && minIndex < to);
+            assertTrue(range, maxIndex >= from && maxIndex < to);
+            assertEquals(range, min, series.getY(column, minIndex));
+            assertEquals(range, max, series.getY(column, maxIndex));
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.umnvd.sensetestapp.models;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PointSeriesTest {
+
+    @Test
+    public void sortByXOrdersRowsStably() {
+        PointSeries series = PointSeries.wrap(
+                new long[]{5, -3, 5, Long.MIN_VALUE, 0, -3},
+                new long[]{50, 30, 51, 1, 0, 31}
+        );
+        assertFalse(series.isSortedByX());
+
+        series.sortByX();
+
+        assertTrue(series.isSortedByX());
+        assertArrayEquals(new long[]{Long.MIN_VALUE, -3, -3, 0, 5, 5}, getXs(series));
+        assertArrayEquals(new long[]{1, 30, 31, 0, 50, 51}, getYs(series));
+    }
+
+    @Test
+    public void sortByXMovesEveryColumn() {
+        PointSeries series = new PointSeries(2, 4);
+        long[][] rows = {{5, 50, 500}, {-3, 30, 300}, {5, 51, 501}, {Long.MIN_VALUE, 1, 2}, {0, 0, 0}, {-3, 31, 301}};
+        for (long[] row : rows) series.addRow(row[0], new long[]{row[1], row[2]});
+        assertFalse(series.isSortedByX());
+
+        series.sortByX();
+
+        assertTrue(series.isSortedByX());
+        long[][] expected = {{Long.MIN_VALUE, 1, 2}, {-3, 30, 300}, {-3, 31, 301}, {0, 0, 0}, {5, 50, 500}, {5, 51, 501}};
+        assertEquals(expected.length, series.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i][0], series.getX(i));
+            assertEquals(expected[i][1], series.getY(0, i));
+            assertEquals(expected[i][2], series.getY(1, i));
+        }
+    }
+
+    @Test
+    public void sortByXMatchesArraysSort() {
+        Random random = new Random(7);
+        int size = 10_000;
+        long[] xs = new long[size];
+        long[] ys = new long[size];
+        for (int i = 0; i < size; i++) {
+            // Shared high bytes, like timestamps, leave some of the radix passes out.
+            xs[i] = 1_600_000_000_000L + random.nextInt(1_000_000);
+            ys[i] = -xs[i];
+        }
+        PointSeries series = PointSeries.wrap(xs.clone(), ys);
+
+        series.sortByX();
+
+        Arrays.sort(xs);
+        for (int i = 0; i < size; i++) {
+            assertEquals(xs[i], series.getX(i));
+            assertEquals(-xs[i], series.getY(0, i));
+        }
+    }
+
+    @Test
+    public void mergeInterleavesRowsKeepingExistingFirst() {
+        PointSeries series = PointSeries.wrap(new long[]{1, 3, 5, 7}, new long[]{10, 30, 50, 70});
+        PointSeries sorted = PointSeries.wrap(new long[]{2, 5, 8}, new long[]{20, 51, 80});
+
+        int start = series.merge(sorted);
+
+        assertEquals(1, start);
+        assertArrayEquals(new long[]{1, 2, 3, 5, 5, 7, 8}, getXs(series));
+        assertArrayEquals(new long[]{10, 20, 30, 50, 51, 70, 80}, getYs(series));
+        assertTrue(series.isSortedByX());
+        assertEquals(10, series.getMinY());
+        assertEquals(80, series.getMaxY());
+    }
+
+    @Test
+    public void mergeAfterLastRowAppends() {
+        PointSeries series = PointSeries.wrap(new long[]{1, 2}, new long[]{10, 20});
+
+        assertEquals(2, series.merge(PointSeries.wrap(new long[]{2, 3}, new long[]{21, 30})));
+        assertArrayEquals(new long[]{1, 2, 2, 3}, getXs(series));
+        assertArrayEquals(new long[]{10, 20, 21, 30}, getYs(series));
+        assertEquals(4, series.merge(new PointSeries()));
+    }
+
+    @Test
+    public void mergeMovesEveryColumn() {
+        PointSeries series = PointSeries.wrap(new long[]{1, 4}, new long[]{10, 40}, new long[]{100, 400});
+        PointSeries sorted = PointSeries.wrap(new long[]{2, 4}, new long[]{20, 41}, new long[]{200, 410});
+
+        assertEquals(1, series.merge(sorted));
+
+        assertArrayEquals(new long[]{1, 2, 4, 4}, getXs(series));
+        assertArrayEquals(new long[]{10, 20, 40, 41}, getYs(series));
+        for (int i = 0; i < series.size(); i++) {
+            assertEquals(series.getY(0, i) * 10, series.getY(1, i));
+        }
+    }
+
+    @Test
+    public void mergeReconcilesFormats() {
+        PointSeries series = PointSeries.wrap(new long[]{1, 3}, new long[]{1, 3});
+        PointSeries sorted = PointSeries.wrap(new long[]{2}, new long[]{25});
+        sorted.setFormats(ValueFormat.INT, ValueFormat.decimal(1));
+
+        series.merge(sorted);
+
+        assertEquals(ValueFormat.decimal(1), series.getYFormat());
+        assertArrayEquals(new long[]{10, 25, 30}, getYs(series));
+    }
+
+    @Test
+    public void addAllRescalesRowsWithoutChangingOther() {
+        PointSeries series = PointSeries.wrap(new long[]{1}, new long[]{125});
+        series.setFormats(ValueFormat.INT, ValueFormat.decimal(2));
+        PointSeries other = PointSeries.wrap(new long[]{2, 3}, new long[]{-5, 7});
+        other.setFormats(ValueFormat.INT, ValueFormat.decimal(1));
+
+        series.addAll(other);
+
+        assertEquals(ValueFormat.decimal(2), series.getYFormat());
+        assertArrayEquals(new long[]{125, -50, 70}, getYs(series));
+        assertEquals(-50, series.getMinY());
+        assertEquals(125, series.getMaxY());
+        assertEquals(ValueFormat.decimal(1), other.getYFormat());
+        assertArrayEquals(new long[]{-5, 7}, getYs(other));
+    }
+
+    @Test
+    public void addAllLeavesSeriesUnchangedWhenRowsDontFit() {
+        PointSeries series = PointSeries.wrap(new long[]{1}, new long[]{Long.MAX_VALUE / 2});
+        PointSeries other = PointSeries.wrap(new long[]{2}, new long[]{5});
+        other.setFormats(ValueFormat.INT, ValueFormat.decimal(1));
+
+        try {
+            series.addAll(other);
+            fail("Expected an ArithmeticException");
+        } catch (ArithmeticException e) {
+            assertEquals(ValueFormat.INT, series.getYFormat());
+            assertArrayEquals(new long[]{Long.MAX_VALUE / 2}, getYs(series));
+        }
+    }
+
+    private static long[] getXs(PointSeries series) {
+        long[] xs = new long[series.size()];
+        for (int i = 0; i < xs.length; i++) xs[i] = series.getX(i);
+        return xs;
+    }
+
+    private static long[] getYs(PointSeries series) {
+        long[] ys = new long[series.size()];
+        for (int i = 0; i < ys.length; i++) ys[i] = series.getY(0, i);
+        return ys;
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.umnvd.sensetestapp.views;
+
+import com.umnvd.sensetestapp.models.DecimationPyramid;
+import com.umnvd.sensetestapp.models.PointSeries;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GraphDecimatorTest {
+
+    private static final int WIDTH = 300;
+
+    @Test
+    public void drawsAtMostTwoSegmentsPerColumn() {
+        PointSeries series = createSeries(1_000_000);
+        int[] counts = new int[series.getYColumnsCount()];
+
+        decimate(series, 0, series.size(), (column, fromIndex, toIndex) -> counts[column]++);
+
+        for (int count : counts) {
+            assertTrue("segments: " + count, count <= 2 * (WIDTH + 1));
+            assertTrue("segments: " + count, count >= WIDTH);
+        }
+    }
+
+    @Test
+    public void coversExtremaOfEveryColumn() {
+        PointSeries series = createSeries(50_000);
+        int startIndex = 1234;
+        int endIndex = 45_678;
+        long[] drawnMins = new long[WIDTH + 1];
+        long[] drawnMaxs = new long[WIDTH + 1];
+        Arrays.fill(drawnMins, Long.MAX_VALUE);
+        Arrays.fill(drawnMaxs, Long.MIN_VALUE);
+
+        GraphDecimator.SegmentConsumer consumer = (column, fromIndex, toIndex) -> {
+            assertEquals(0, column);
+            assertTrue(fromIndex < toIndex);
+            int fromColumn = getColumn(series, startIndex, endIndex, fromIndex);
+            int toColumn = getColumn(series, startIndex, endIndex, toIndex);
+            if (fromColumn != toColumn) {
+                // Columns are joined by the segments of the full polyline.
+                assertEquals(fromIndex + 1, toIndex);
+                return;
+            }
+            for (int index : new int[]{fromIndex, toIndex}) {
+                drawnMins[fromColumn] = Math.min(drawnMins[fromColumn], series.getY(0, index));
+                drawnMaxs[fromColumn] = Math.max(drawnMaxs[fromColumn], series.getY(0, index));
+            }
+        };
+        decimate(series, startIndex, endIndex, consumer);
+
+        long[] mins = new long[WIDTH + 1];
+        long[] maxs = new long[WIDTH + 1];
+        int[] counts = new int[WIDTH + 1];
+        Arrays.fill(mins, Long.MAX_VALUE);
+        Arrays.fill(maxs, Long.MIN_VALUE);
+        for (int i = startIndex; i < endIndex; i++) {
+            int column = getColumn(series, startIndex, endIndex, i);
+            mins[column] = Math.min(mins[column], series.getY(0, i));
+            maxs[column] = Math.max(maxs[column], series.getY(0, i));
+            counts[column]++;
+        }
+        for (int column = 0; column <= WIDTH; column++) {
+            if (counts[column] < 2) continue;
+            assertEquals("column " + column, mins[column], drawnMins[column]);
+            assertEquals("column " + column, maxs[column], drawnMaxs[column]);
+        }
+    }
+
+    @Test
+    public void keepsEveryRowWhenSparse() {
+        PointSeries series = createSeries(100);
+        int[] nextIndex = {0};
+
+        decimate(series, 0, series.size(), (column, fromIndex, toIndex) -> {
+            assertEquals(nextIndex[0], fromIndex);
+            assertEquals(fromIndex + 1, toIndex);
+            nextIndex[0] = toIndex;
+        });
+
+        assertEquals(series.size() - 1, nextIndex[0]);
+    }
+
+    private static PointSeries createSeries(int size) {
+        Random random = new Random(11);
+        PointSeries series = new PointSeries(1, size);
+        long y = 0;
+        for (int i = 0; i < size; i++) {
+            y += random.nextInt(201) - 100;
+            series.add(i, y);
+        }
+        return series;
+    }
+
+    private static void decimate(
+            PointSeries series, int startIndex, int endIndex, GraphDecimator.SegmentConsumer consumer
+    ) {
+        DecimationPyramid pyramid = new DecimationPyramid();
+        pyramid.build(series);
+        double scaleX = getScaleX(series, startIndex, endIndex);
+        double translateX = -series.getX(startIndex) * scaleX;
+        new GraphDecimator(pyramid).decimate(0L, startIndex, endIndex, WIDTH, scaleX, translateX, consumer);
+    }
+
+    private static double getScaleX(PointSeries series, int startIndex, int endIndex) {
+        return WIDTH / (double) (series.getX(endIndex - 1) - series.getX(startIndex));
+    }
+
+    private static int getColumn(PointSeries series, int startIndex, int endIndex, int index) {
+        double scaleX = getScaleX(series, startIndex, endIndex);
+        double translateX = -series.getX(startIndex) * scaleX;
+        return (int) Math.floor(series.getX(index) * scaleX + translateX);
+    }
+
+}